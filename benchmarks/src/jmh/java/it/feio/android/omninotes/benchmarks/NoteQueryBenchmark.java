@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.benchmarks;
+
+import it.feio.android.omninotes.db.NoteQuery;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+
+/**
+ * Building of search queries, where the searched pattern is escaped to be bound as LIKE argument
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NoteQueryBenchmark {
+
+  @Param({"meeting", "50% off_sale", "C:\\notes\\it's #work"})
+  public String pattern;
+
+
+  @Benchmark
+  public NoteQuery searchQuery() {
+    return new NoteQuery().trashed(false).containing(pattern);
+  }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.benchmarks;
+
+import static it.feio.android.checklistview.interfaces.Constants.CHECKED_SYM;
+import static it.feio.android.checklistview.interfaces.Constants.UNCHECKED_SYM;
+
+import it.feio.android.omninotes.models.Note;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Deterministic notes corpora resembling the contents found in real libraries, the same kind and
+ * size always produce the same notes.
+ */
+public final class NotesCorpus {
+
+  public enum Kind {
+    SHORT, LONG, CHECKLIST, CJK, TAGGED
+  }
+
+  private static final long SEED = 42;
+  private static final long FIRST_CREATION = 1_500_000_000_000L;
+
+  private static final String[] WORDS = {"the", "meeting", "call", "buy", "milk", "bread",
+      "project", "deadline", "remember", "to", "and", "with", "for", "tomorrow", "morning",
+      "evening", "idea", "book", "read", "write", "report", "check", "email", "send", "family",
+      "dinner", "recipe", "garden", "travel", "ticket", "hotel", "museum", "doctor", "appointment",
+      "birthday", "gift", "password", "server", "deploy", "review", "draft", "chapter", "quote",
+      "list", "weekend", "run", "kilometers", "music", "album", "concert", "movie", "watch",
+      "learn", "course", "lesson", "exercise", "plan", "budget", "invoice", "payment", "car",
+      "repair", "insurance", "renew", "https://omninotes.app", "e-mail:", "(draft)", "2020,"};
+  private static final String[] TAGS = {"#work", "#home", "#todo", "#ideas", "#shopping",
+      "#reading", "#travel", "#health", "#finance", "#family", "#music", "#movies", "#recipes",
+      "#projects", "#urgent", "#someday", "#2020", "#book-club", "#car", "#garden"};
+
+
+  private NotesCorpus() {
+  }
+
+
+  public static List<Note> create(Kind kind, int size) {
+    Random random = new Random(SEED + kind.ordinal());
+    List<Note> notes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      notes.add(createNote(kind, random, FIRST_CREATION + i * 60_000L));
+    }
+    return notes;
+  }
+
+
+  private static Note createNote(Kind kind, Random random, long creation) {
+    Note note = new Note();
+    note.setCreation(creation);
+    note.setLastModification(creation + random.nextInt(1_000_000));
+    switch (kind) {
+      case SHORT:
+        note.setTitle(words(random, 2, 5));
+        note.setContent(words(random, 5, 20));
+        break;
+      case LONG:
+        note.setTitle(words(random, 3, 8));
+        note.setContent(paragraphs(random, 10, 30, 0.01));
+        break;
+      case CHECKLIST:
+        note.setTitle(words(random, 1, 4));
+        note.setContent(checklist(random, 5, 30));
+        note.setChecklist(true);
+        break;
+      case CJK:
+        note.setTitle(ideograms(random, 4, 12));
+        note.setContent(ideograms(random, 100, 600));
+        break;
+      case TAGGED:
+        note.setTitle(words(random, 2, 6));
+        note.setContent(paragraphs(random, 2, 6, 0.3));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown corpus " + kind);
+    }
+    return note;
+  }
+
+
+  private static String words(Random random, int min, int max) {
+    return text(random, between(random, min, max), 0);
+  }
+
+
+  private static String text(Random random, int wordsNumber, double tagsRatio) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < wordsNumber; i++) {
+      if (i > 0) {
+        text.append(' ');
+      }
+      text.append(random.nextDouble() < tagsRatio ? TAGS[random.nextInt(TAGS.length)]
+          : WORDS[random.nextInt(WORDS.length)]);
+    }
+    return text.toString();
+  }
+
+
+  private static String paragraphs(Random random, int min, int max, double tagsRatio) {
+    StringBuilder text = new StringBuilder();
+    int paragraphsNumber = between(random, min, max);
+    for (int i = 0; i < paragraphsNumber; i++) {
+      if (i > 0) {
+        text.append("\n\n");
+      }
+      text.append(text(random, between(random, 30, 80), tagsRatio)).append('.');
+    }
+    return text.toString();
+  }
+
+
+  private static String checklist(Random random, int min, int max) {
+    StringBuilder text = new StringBuilder();
+    int itemsNumber = between(random, min, max);
+    for (int i = 0; i < itemsNumber; i++) {
+      if (i > 0) {
+        text.append('\n');
+      }
+      text.append(random.nextInt(3) == 0 ? CHECKED_SYM : UNCHECKED_SYM)
+          .append(words(random, 1, 6));
+    }
+    return text.toString();
+  }
+
+
+  /**
+   * Chinese ideograms and Japanese kana with punctuation and rare spaces, as typed in such notes
+   */
+  private static String ideograms(Random random, int min, int max) {
+    StringBuilder text = new StringBuilder();
+    int charsNumber = between(random, min, max);
+    for (int i = 0; i < charsNumber; i++) {
+      int pick = random.nextInt(100);
+      if (pick < 60) {
+        text.append((char) ('一' + random.nextInt(0x1000)));
+      } else if (pick < 90) {
+        text.append((char) ('ぁ' + random.nextInt(0x56)));
+      } else if (pick < 96) {
+        text.append(random.nextBoolean() ? '。' : '、');
+      } else if (pick < 98) {
+        text.append(' ');
+      } else {
+        text.append('\n');
+      }
+    }
+    return text.toString();
+  }
+
+
+  private static int between(Random random, int min, int max) {
+    return min + random.nextInt(max - min + 1);
+  }
+
+}
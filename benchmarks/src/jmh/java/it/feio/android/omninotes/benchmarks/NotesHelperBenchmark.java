@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.benchmarks;
+
+import it.feio.android.omninotes.benchmarks.NotesCorpus.Kind;
+import it.feio.android.omninotes.helpers.NotesHelper;
+import it.feio.android.omninotes.models.Note;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class NotesHelperBenchmark {
+
+  @Param({"SHORT", "LONG", "CHECKLIST", "CJK", "TAGGED"})
+  public Kind corpus;
+
+  @Param({"2", "20"})
+  public int mergedNotesNumber;
+
+  private List<Note> notes;
+
+
+  @Setup
+  public void setUp() {
+    notes = NotesCorpus.create(corpus, mergedNotesNumber);
+  }
+
+
+  @Benchmark
+  public Note mergeNotes() {
+    return NotesHelper.mergeNotes(notes, false);
+  }
+
+}
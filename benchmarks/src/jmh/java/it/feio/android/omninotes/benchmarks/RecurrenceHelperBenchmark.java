@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.benchmarks;
+
+import it.feio.android.omninotes.helpers.date.RecurrenceHelper;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+
+/**
+ * Next occurrence of recurring reminders, computed when they fire and when rescheduled on reboot
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RecurrenceHelperBenchmark {
+
+  private static final long CURRENT_TIME = 1_600_000_000_000L;
+
+  @Param({"FREQ=DAILY", "FREQ=WEEKLY;BYDAY=MO,WE,FR", "FREQ=MONTHLY;BYMONTHDAY=15",
+      "FREQ=YEARLY"})
+  public String recurrenceRule;
+
+  // Reminders last fired a while ago need more occurrences to be skipped
+  @Param({"1", "365"})
+  public int reminderAgeDays;
+
+
+  @Benchmark
+  public Long nextReminderFromRecurrenceRule() {
+    long reminder = CURRENT_TIME - TimeUnit.DAYS.toMillis(reminderAgeDays);
+    return RecurrenceHelper.nextReminderFromRecurrenceRule(reminder, CURRENT_TIME,
+        recurrenceRule);
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.benchmarks;
+
+import it.feio.android.omninotes.benchmarks.NotesCorpus.Kind;
+import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.utils.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * Locked notes contents are encrypted when saved and decrypted when listed
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SecurityBenchmark {
+
+  private static final int NOTES_NUMBER = 50;
+  private static final String PASSWORD = "benchmark password";
+
+  @Param({"SHORT", "LONG", "CHECKLIST", "CJK"})
+  public Kind corpus;
+
+  private final List<String> contents = new ArrayList<>();
+  private final List<String> encryptedContents = new ArrayList<>();
+
+
+  @Setup
+  public void setUp() {
+    for (Note note : NotesCorpus.create(corpus, NOTES_NUMBER)) {
+      contents.add(note.getContent());
+      encryptedContents.add(Security.encrypt(note.getContent(), PASSWORD));
+    }
+  }
+
+
+  @Benchmark
+  @OperationsPerInvocation(NOTES_NUMBER)
+  public void encrypt(Blackhole blackhole) {
+    for (String content : contents) {
+      blackhole.consume(Security.encrypt(content, PASSWORD));
+    }
+  }
+
+
+  @Benchmark
+  @OperationsPerInvocation(NOTES_NUMBER)
+  public void decrypt(Blackhole blackhole) {
+    for (String encryptedContent : encryptedContents) {
+      blackhole.consume(Security.decrypt(encryptedContent, PASSWORD));
+    }
+  }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.benchmarks;
+
+import it.feio.android.omninotes.benchmarks.NotesCorpus.Kind;
+import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.utils.TagsHelper;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TagsHelperBenchmark {
+
+  private static final int NOTES_NUMBER = 100;
+
+  @Param({"SHORT", "LONG", "CHECKLIST", "CJK", "TAGGED"})
+  public Kind corpus;
+
+  private List<Note> notes;
+
+
+  @Setup
+  public void setUp() {
+    notes = NotesCorpus.create(corpus, NOTES_NUMBER);
+  }
+
+
+  @Benchmark
+  @OperationsPerInvocation(NOTES_NUMBER)
+  public void retrieveTags(Blackhole blackhole) {
+    for (Note note : notes) {
+      blackhole.consume(TagsHelper.retrieveTags(note));
+    }
+  }
+
+}
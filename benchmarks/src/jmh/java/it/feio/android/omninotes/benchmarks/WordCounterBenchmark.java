@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.benchmarks;
+
+import it.feio.android.omninotes.benchmarks.NotesCorpus.Kind;
+import it.feio.android.omninotes.helpers.count.DefaultWordCounter;
+import it.feio.android.omninotes.helpers.count.IdeogramsWordCounter;
+import it.feio.android.omninotes.helpers.count.WordCounter;
+import it.feio.android.omninotes.models.Note;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WordCounterBenchmark {
+
+  private static final int NOTES_NUMBER = 100;
+
+  @Param({"SHORT", "LONG", "CHECKLIST", "CJK", "TAGGED"})
+  public Kind corpus;
+
+  private final WordCounter defaultWordCounter = new DefaultWordCounter();
+  private final WordCounter ideogramsWordCounter = new IdeogramsWordCounter();
+  private List<Note> notes;
+
+
+  @Setup
+  public void setUp() {
+    notes = NotesCorpus.create(corpus, NOTES_NUMBER);
+  }
+
+
+  @Benchmark
+  @OperationsPerInvocation(NOTES_NUMBER)
+  public void defaultCountWords(Blackhole blackhole) {
+    for (Note note : notes) {
+      blackhole.consume(defaultWordCounter.countWords(note));
+    }
+  }
+
+
+  @Benchmark
+  @OperationsPerInvocation(NOTES_NUMBER)
+  public void defaultCountChars(Blackhole blackhole) {
+    for (Note note : notes) {
+      blackhole.consume(defaultWordCounter.countChars(note));
+    }
+  }
+
+
+  /**
+   * Ideograms counter counts words as chars
+   */
+  @Benchmark
+  @OperationsPerInvocation(NOTES_NUMBER)
+  public void ideogramsCountChars(Blackhole blackhole) {
+    for (Note note : notes) {
+      blackhole.consume(ideogramsWordCounter.countChars(note));
+    }
+  }
+
+}
@@ -37,7 +37,6 @@ import androidx.test.rule.GrantPermissionRule;
 import de.greenrobot.event.EventBus;
 import it.feio.android.omninotes.async.bus.CategoriesUpdatedEvent;
 import it.feio.android.omninotes.async.bus.NotesDeletedEvent;
-import it.feio.android.omninotes.async.bus.NotesUpdatedEvent;
 import it.feio.android.omninotes.db.DbHelper;
 import it.feio.android.omninotes.exceptions.TestException;
 import it.feio.android.omninotes.models.Attachment;
@@ -53,7 +52,6 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import org.apache.commons.io.IOUtils;
@@ -121,7 +119,6 @@ public class BaseAndroidTestCase {
 
     dbHelper.updateNote(note, false);
 
-    EventBus.getDefault().post(new NotesUpdatedEvent(Collections.singletonList(note)));
     EventBus.getDefault().post(new CategoriesUpdatedEvent());
 
     return note;
@@ -142,14 +139,12 @@ public class BaseAndroidTestCase {
   protected void archiveNotes(List<Note> notes, boolean archive) {
     notes.forEach(n -> dbHelper.archiveNote(n, archive));
 
-    EventBus.getDefault().post(new NotesUpdatedEvent(notes));
     EventBus.getDefault().post(new CategoriesUpdatedEvent());
   }
 
   protected void trashNotes(List<Note> notes, boolean trash) {
     notes.forEach(n -> dbHelper.trashNote(n, trash));
 
-    EventBus.getDefault().post(new NotesUpdatedEvent(notes));
     EventBus.getDefault().post(new CategoriesUpdatedEvent());
   }
 
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.helpers.LogDelegate;
+import it.feio.android.omninotes.models.Note;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+
+/**
+ * Runs notes list queries from several threads while notes are written in bulk, measuring how long
+ * readers wait.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConcurrentAccessStressTest extends BaseAndroidTestCase {
+
+  private static final int READERS_NUMBER = 4;
+  private static final int NOTES_NUMBER = 500;
+  private static final int PAGE_SIZE = 50;
+
+
+  @Test
+  public void listQueriesDuringBulkWrites() throws InterruptedException {
+    List<Note> notes = new ArrayList<>();
+    for (long i = 1; i <= NOTES_NUMBER; i++) {
+      Note note = new Note();
+      note.setCreation(i);
+      note.setTitle("note " + i);
+      note.setContent("content of note " + i + " with #tag");
+      notes.add(dbHelper.updateNote(note, false));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(READERS_NUMBER);
+    AtomicBoolean writing = new AtomicBoolean(true);
+    ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+    ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+    CountDownLatch readersDone = new CountDownLatch(READERS_NUMBER);
+    for (int i = 0; i < READERS_NUMBER; i++) {
+      executor.execute(() -> {
+        try {
+          while (writing.get()) {
+            long start = System.nanoTime();
+            dbHelper.getAllNotesPage(PAGE_SIZE);
+            latencies.add(System.nanoTime() - start);
+          }
+        } catch (Throwable t) {
+          errors.add(t);
+        } finally {
+          readersDone.countDown();
+        }
+      });
+    }
+
+    try {
+      for (int i = 0; i < 10; i++) {
+        dbHelper.archiveNotes(notes, i % 2 == 0);
+        for (Note note : notes.subList(0, NOTES_NUMBER / 10)) {
+          dbHelper.updateNote(note, true);
+        }
+      }
+    } finally {
+      writing.set(false);
+    }
+    assertTrue(readersDone.await(30, TimeUnit.SECONDS));
+    executor.shutdown();
+
+    assertTrue(errors.toString(), errors.isEmpty());
+    assertFalse(latencies.isEmpty());
+    assertEquals(NOTES_NUMBER, dbHelper.getAllNotes(false).size());
+
+    List<Long> sortedLatencies = new ArrayList<>(latencies);
+    Collections.sort(sortedLatencies);
+    LogDelegate.i(String.format("%d list queries during bulk writes, p50 %.2f ms, p99 %.2f ms, "
+            + "max %.2f ms", sortedLatencies.size(), getPercentile(sortedLatencies, 50),
+        getPercentile(sortedLatencies, 99), getPercentile(sortedLatencies, 100)));
+  }
+
+
+  private double getPercentile(List<Long> sortedLatencies, int percentile) {
+    int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.size()) - 1;
+    return sortedLatencies.get(Math.max(index, 0)) / 1e6;
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static it.feio.android.omninotes.utils.ConstantsBase.DATABASE_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.models.Note;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMaintenanceTest extends BaseAndroidTestCase {
+
+  @Test
+  public void freePagesAreReleased() {
+    DatabaseMaintenance maintenance = getMaintenance();
+    maintenance.run();
+    createAndDeleteNotes();
+
+    DatabaseMaintenance.Metrics metrics = maintenance.run();
+
+    assertEquals(0, metrics.getFreePages());
+    assertEquals(0, metrics.getWalSize());
+    assertTrue(metrics.getFileSize() > 0);
+  }
+
+  @Test
+  public void existingDatabaseIsConvertedToIncrementalVacuum() {
+    SQLiteDatabase db = dbHelper.getDatabase(true);
+    db.execSQL("PRAGMA auto_vacuum = NONE");
+    db.execSQL("VACUUM");
+    assertEquals(0, getAutoVacuum());
+    createAndDeleteNotes();
+
+    DatabaseMaintenance.Metrics metrics = getMaintenance().run();
+
+    assertEquals(2, getAutoVacuum());
+    assertEquals(0, metrics.getFreePages());
+  }
+
+  private DatabaseMaintenance getMaintenance() {
+    return new DatabaseMaintenance(dbHelper, testContext.getDatabasePath(DATABASE_NAME));
+  }
+
+  private void createAndDeleteNotes() {
+    List<Note> notes = new ArrayList<>();
+    for (long i = 1; i <= 200; i++) {
+      Note note = new Note();
+      note.setCreation(i);
+      note.setTitle("note " + i);
+      note.setContent(StringUtils.repeat("content ", 500));
+      notes.add(dbHelper.updateNote(note, false));
+    }
+    dbHelper.deleteNotes(notes, false);
+  }
+
+  private long getAutoVacuum() {
+    return DatabaseUtils.longForQuery(dbHelper.getDatabase(), "PRAGMA auto_vacuum", null);
+  }
+
+}
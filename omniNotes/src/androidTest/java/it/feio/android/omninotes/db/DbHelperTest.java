@@ -17,11 +17,34 @@
 
 package it.feio.android.omninotes.db;
 
+import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_FILES;
+import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_IMAGE;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_SORTING_COLUMN;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import android.database.DatabaseUtils;
+import android.net.Uri;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.async.upgrade.UpgradeProcessor;
+import it.feio.android.omninotes.helpers.NotesHelper;
+import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.models.Category;
 import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.models.NotesPage;
+import it.feio.android.omninotes.models.Stats;
+import it.feio.android.omninotes.models.Tag;
+import it.feio.android.omninotes.utils.date.DateUtils;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -47,6 +70,299 @@ public class DbHelperTest extends BaseAndroidTestCase {
     assertEquals(1, dbHelper.getNotesByTag("#tagged").size());
   }
 
+  @Test
+  public void getNotesByTagsMatchesAllTags() {
+    Note note1 = new Note();
+    note1.setTitle("#work #urgent");
+    note1.setContent("");
+    dbHelper.updateNote(note1, true);
+    Note note2 = new Note();
+    note2.setCreation(note1.getCreation() + 1);
+    note2.setTitle("only #work");
+    note2.setContent("");
+    dbHelper.updateNote(note2, true);
+
+    assertEquals(2, dbHelper.getNotesByTag("#work").size());
+    assertEquals(1, dbHelper.getNotesByTag("#work,#urgent").size());
+
+    note1.setTitle("not urgent anymore #work");
+    dbHelper.updateNote(note1, true);
+    assertEquals(0, dbHelper.getNotesByTag("#work,#urgent").size());
+  }
+
+  @Test
+  public void getTagsCountsTaggedNotes() {
+    Note note1 = new Note();
+    note1.setTitle("#work");
+    note1.setContent("#work again and #home");
+    dbHelper.updateNote(note1, true);
+    Note note2 = new Note();
+    note2.setCreation(note1.getCreation() + 1);
+    note2.setTitle("#work");
+    note2.setContent("");
+    dbHelper.updateNote(note2, true);
+
+    List<Tag> tags = dbHelper.getTags();
+    assertEquals(2, tags.size());
+    assertEquals("#home", tags.get(0).getText());
+    assertEquals(1, (int) tags.get(0).getCount());
+    assertEquals("#work", tags.get(1).getText());
+    assertEquals(2, (int) tags.get(1).getCount());
+
+    dbHelper.deleteNote(note2);
+    assertEquals(1, (int) dbHelper.getTags().get(1).getCount());
+  }
+
+  @Test
+  public void getNotesByPatternMatchesWordsPrefixes() {
+    Note note1 = new Note();
+    note1.setTitle("shopping list");
+    note1.setContent("apples and oranges");
+    dbHelper.updateNote(note1, true);
+    Note note2 = new Note();
+    note2.setCreation(note1.getCreation() + 1);
+    note2.setTitle("locked note about apples");
+    note2.setContent("oranges");
+    note2.setLocked(true);
+    dbHelper.updateNote(note2, true);
+
+    assertEquals(2, dbHelper.getNotesByPattern("APPL").size());
+    assertEquals(1, dbHelper.getNotesByPattern("orange").size());
+    assertEquals(1, dbHelper.getNotesByPattern("shop appl").size());
+    assertEquals(0, dbHelper.getNotesByPattern("pples").size());
+  }
+
+  @Test
+  public void getNotesByPatternFoldsCaseAndDiacritics() {
+    Note note = new Note();
+    note.setTitle("Crème brûlée");
+    note.setContent("Œufs, sucre—vanille");
+    dbHelper.updateNote(note, true);
+
+    assertEquals(1, dbHelper.getNotesByPattern("creme").size());
+    assertEquals(1, dbHelper.getNotesByPattern("BRÛL").size());
+    assertEquals(1, dbHelper.getNotesByPattern("sucre vanil").size());
+  }
+
+  @Test
+  public void getNotesAttachmentsBoundToTheirNotes() {
+    Note noteWithAttachments = createNoteWithAttachments(1L, 2);
+    Note noteWithoutAttachments = createNoteWithAttachments(2L, 0);
+    Note anotherNoteWithAttachments = createNoteWithAttachments(3L, 1);
+
+    List<Note> notes = dbHelper.getNotesActive();
+
+    assertEquals(3, notes.size());
+    for (Note note : notes) {
+      if (note.get_id().equals(noteWithAttachments.get_id())) {
+        assertEquals(2, note.getAttachmentsList().size());
+      } else if (note.get_id().equals(noteWithoutAttachments.get_id())) {
+        assertEquals(0, note.getAttachmentsList().size());
+      } else if (note.get_id().equals(anotherNoteWithAttachments.get_id())) {
+        assertEquals(1, note.getAttachmentsList().size());
+      }
+    }
+  }
+
+  @Test
+  public void notesAttachmentsAreLoadedWithOneQuery() {
+    for (long i = 1; i <= 10; i++) {
+      createNoteWithAttachments(i, 2);
+    }
+    QueryProfiler queryProfiler = dbHelper.getQueryProfiler();
+    queryProfiler.reset();
+
+    List<Note> notes = dbHelper.getNotesActive();
+
+    assertEquals(10, notes.size());
+    assertEquals(1, queryProfiler.getOperationsCount(
+        "FROM " + DbHelper.TABLE_ATTACHMENTS + " WHERE " + DbHelper.KEY_ATTACHMENT_NOTE_ID));
+  }
+
+  @Test
+  public void getNotesPagesMatchFullList() {
+    for (String sortColumn : new String[]{DbHelper.KEY_TITLE, DbHelper.KEY_CREATION,
+        DbHelper.KEY_LAST_MODIFICATION}) {
+      prefs.edit().putString(PREF_SORTING_COLUMN, sortColumn).commit();
+      for (long i = 1; i <= 7; i++) {
+        Note note = new Note();
+        note.setCreation(i);
+        note.setLastModification(i % 3);
+        note.setTitle(i % 2 == 0 ? "same title" : "title " + i);
+        note.setContent("content");
+        dbHelper.updateNote(note, false);
+      }
+
+      Set<Long> ids = new HashSet<>();
+      for (Note note : dbHelper.getNotesActive()) {
+        ids.add(note.get_id());
+      }
+      List<Long> pagedIds = new ArrayList<>();
+      NotesPage page = dbHelper.getAllNotesPage(3);
+      while (true) {
+        for (Note note : page.getNotes()) {
+          pagedIds.add(note.get_id());
+        }
+        if (page.isLast()) {
+          break;
+        }
+        page = dbHelper.getNextNotesPage(page, 3);
+      }
+
+      assertEquals(ids.size(), pagedIds.size());
+      assertEquals(ids, new HashSet<>(pagedIds));
+    }
+  }
+
+  @Test
+  public void getNotesPositionsMatchPagesOrder() {
+    for (long i = 1; i <= 7; i++) {
+      Note note = new Note();
+      note.setCreation(i);
+      note.setLastModification(i % 3);
+      note.setTitle(i % 2 == 0 ? "same title" : "title " + i);
+      note.setContent("content");
+      if (i % 3 != 0) {
+        note.setAlarm(100 - i % 4);
+      }
+      note.setArchived(i == 7);
+      dbHelper.updateNote(note, false);
+    }
+    List<Long> noteIds = new ArrayList<>();
+    for (long i = 1; i <= 7; i++) {
+      noteIds.add(i);
+    }
+
+    for (String sortColumn : new String[]{DbHelper.KEY_TITLE, DbHelper.KEY_CREATION,
+        DbHelper.KEY_LAST_MODIFICATION, DbHelper.KEY_REMINDER}) {
+      NoteQuery query = new NoteQuery().archived(false).trashed(false);
+      List<Note> notes = dbHelper.getNotesPage(new NoteQuery(query).sortBy(sortColumn), 0)
+          .getNotes();
+
+      SortedMap<Integer, Long> positions = dbHelper.getNotesPositions(query, sortColumn, noteIds);
+
+      assertEquals(notes.size(), positions.size());
+      for (Map.Entry<Integer, Long> entry : positions.entrySet()) {
+        assertEquals(notes.get(entry.getKey()).get_id(), entry.getValue());
+      }
+    }
+  }
+
+  @Test
+  public void notesPageIsHydratedWithFullContentAndAttachments() {
+    Note note = createNoteWithAttachments(1, 3);
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < DbHelper.LIST_CONTENT_LENGTH; i++) {
+      content.append("content ");
+    }
+    note.setContent(content.toString());
+    dbHelper.updateNote(note, false);
+
+    Note listNote = dbHelper.getAllNotesPage(10).getNotes().get(0);
+    assertTrue(listNote.isPartial());
+    assertEquals(DbHelper.LIST_CONTENT_LENGTH, listNote.getContent().length());
+    assertEquals(1, listNote.getAttachmentsList().size());
+    assertEquals(3, listNote.getAttachmentsCount());
+
+    dbHelper.hydrateNote(listNote);
+    assertFalse(listNote.isPartial());
+    assertEquals(content.toString(), listNote.getContent());
+    assertEquals(3, listNote.getAttachmentsList().size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void partialNotesCannotBeSaved() {
+    createNoteWithAttachments(1, 2);
+    Note listNote = dbHelper.getAllNotesPage(10).getNotes().get(0);
+
+    dbHelper.updateNote(listNote, false);
+  }
+
+  @Test
+  public void bulkOperationsUpdateAllNotes() {
+    List<Note> notes = new ArrayList<>();
+    for (long i = 1; i <= 3; i++) {
+      notes.add(createNoteWithAttachments(i, 1));
+    }
+
+    dbHelper.archiveNotes(notes.subList(0, 2), true);
+    assertEquals(2, dbHelper.getNotesArchived().size());
+
+    dbHelper.trashNotes(notes, true);
+    assertEquals(3, dbHelper.getNotesTrashed().size());
+    assertEquals(0, dbHelper.getNotesArchived().size());
+
+    dbHelper.deleteNotes(notes.subList(1, 3), false);
+    assertEquals(1, dbHelper.getAllNotes(false).size());
+    assertEquals(1, dbHelper.getAllAttachments().size());
+  }
+
+  @Test
+  public void emptyTrashDeletesTrashedNotesOnly() {
+    Note note1 = createNoteWithAttachments(1, 2);
+    createNoteWithAttachments(2, 1);
+    dbHelper.trashNotes(Collections.singletonList(note1), true);
+
+    assertEquals(2, dbHelper.emptyTrash());
+
+    assertEquals(0, dbHelper.getNotesTrashed().size());
+    assertEquals(1, dbHelper.getAllNotes(false).size());
+    assertEquals(1, dbHelper.getAllAttachments().size());
+    assertEquals(2, dbHelper.getDeletedAttachments(0, 10).size());
+  }
+
+  @Test
+  public void deletedAttachmentsAreRetrievedInBatches() {
+    Note note = createNoteWithAttachments(1, 3);
+    dbHelper.trashNotes(Collections.singletonList(note), true);
+    dbHelper.emptyTrash();
+
+    SortedMap<Long, String> batch = dbHelper.getDeletedAttachments(0, 2);
+    assertEquals(2, batch.size());
+    assertEquals("file:///attachment1_0", batch.get(batch.firstKey()));
+    dbHelper.removeDeletedAttachments(batch.lastKey());
+    batch = dbHelper.getDeletedAttachments(batch.lastKey(), 2);
+    assertEquals(1, batch.size());
+    assertEquals("file:///attachment1_2", batch.get(batch.firstKey()));
+    dbHelper.removeDeletedAttachments(batch.lastKey());
+    assertTrue(dbHelper.getDeletedAttachments(0, 2).isEmpty());
+  }
+
+  @Test
+  public void getStatsAggregatesNotesAndAttachments() {
+    Note note1 = createNoteWithAttachments(1, 2);
+    Note note2 = new Note();
+    note2.setCreation(2L);
+    note2.setTitle("two words");
+    note2.setContent("#tag");
+    dbHelper.updateNote(note2, true);
+    dbHelper.trashNotes(Collections.singletonList(note1), true);
+
+    Stats stats = dbHelper.getStats();
+
+    assertEquals(1, stats.getNotesActive());
+    assertEquals(1, stats.getNotesTrashed());
+    assertEquals(1, stats.getTags());
+    assertEquals(2, stats.getFiles());
+    assertEquals(2, stats.getAttachments());
+    assertEquals(NotesHelper.getWords(note1) + NotesHelper.getWords(note2), stats.getWords());
+    assertEquals(Math.max(NotesHelper.getChars(note1), NotesHelper.getChars(note2)),
+        stats.getCharsMax());
+  }
+
+  private Note createNoteWithAttachments(long creation, int attachmentsNumber) {
+    Note note = new Note();
+    note.setCreation(creation);
+    note.setTitle("note " + creation);
+    note.setContent("content");
+    for (int i = 0; i < attachmentsNumber; i++) {
+      note.addAttachment(new Attachment(creation * 100 + i,
+          Uri.parse("file:///attachment" + creation + "_" + i), "attachment" + i, 0, 0L,
+          MIME_TYPE_FILES));
+    }
+    return dbHelper.updateNote(note, true);
+  }
+
   @Test
   public void getNotesByPatternEscaped() {
     Note note1 = new Note();
@@ -65,4 +381,189 @@ public class DbHelperTest extends BaseAndroidTestCase {
     assertEquals(1, dbHelper.getNotesByPattern("%").size());
   }
 
+  @Test
+  public void getUpcomingRemindersInWindow() {
+    long now = Calendar.getInstance().getTimeInMillis();
+    long tomorrow = DateUtils.getStartOfDay(now, 1);
+    createNoteWithReminder(1L, tomorrow - 1, false);
+    createNoteWithReminder(2L, tomorrow, false);
+    createNoteWithReminder(3L, tomorrow + 1, true);
+    createNoteWithReminder(4L, null, false);
+
+    List<Note> reminders = dbHelper.getUpcomingReminders(tomorrow, DateUtils.getStartOfDay(now, 2));
+    assertEquals(1, reminders.size());
+    assertEquals(2L, (long) reminders.get(0).get_id());
+    assertEquals(2, dbHelper.getNotesWithReminderNotFired().size());
+    assertEquals(3, dbHelper.getNotesWithReminder(false).size());
+  }
+
+  @Test
+  public void categoryCountsFollowNotesChanges() {
+    Category work = dbHelper.updateCategory(new Category(1L, "work", "", "0"));
+    Category home = dbHelper.updateCategory(new Category(2L, "home", "", "0"));
+    List<Note> notes = new ArrayList<>();
+    for (long i = 1; i <= 3; i++) {
+      Note note = new Note();
+      note.setCreation(i);
+      note.setTitle("note " + i);
+      note.setContent("content");
+      note.setCategory(work);
+      notes.add(dbHelper.updateNote(note, false));
+    }
+    assertCategoryCounts(3, 0);
+
+    dbHelper.trashNotes(notes.subList(0, 1), true);
+    assertCategoryCounts(2, 0);
+    dbHelper.trashNotes(notes.subList(0, 1), false);
+    assertCategoryCounts(3, 0);
+
+    dbHelper.categorizeNotes(notes.subList(1, 3), home);
+    assertCategoryCounts(1, 2);
+
+    dbHelper.deleteNote(notes.get(2));
+    assertCategoryCounts(1, 1);
+
+    dbHelper.rebuildCategoryCounts();
+    assertCategoryCounts(1, 1);
+  }
+
+  @Test
+  public void notesAreRebuiltByBatches() {
+    for (long creation = 1; creation <= 5; creation++) {
+      createNoteWithReminder(creation, null, false);
+    }
+
+    assertEquals(2, dbHelper.rebuildSortKeys(0, 2));
+    assertEquals(5, dbHelper.rebuildSortKeys(2, 10));
+    assertEquals(5, dbHelper.rebuildSortKeys(5, 10));
+    assertEquals(3, dbHelper.getNotesCountAfter(2));
+  }
+
+  @Test
+  public void pendingUpgradesAreCompletedInBackground() {
+    for (long creation = 1; creation <= 5; creation++) {
+      createNoteWithReminder(creation, null, false);
+    }
+    dbHelper.getDatabase(true).execSQL("UPDATE " + DbHelper.TABLE_NOTES + " SET "
+        + DbHelper.KEY_TITLE_SORT_KEY + " = NULL");
+    dbHelper.addPendingUpgrade(565);
+    dbHelper.setPendingUpgradeCheckpoint(565, 2);
+
+    UpgradeProcessor.processInBackground();
+
+    assertTrue(dbHelper.getPendingUpgrades().isEmpty());
+    assertEquals(2, DatabaseUtils.queryNumEntries(dbHelper.getDatabase(), DbHelper.TABLE_NOTES,
+        DbHelper.KEY_TITLE_SORT_KEY + " IS NULL"));
+  }
+
+  @Test
+  public void titleSortingComputesKeysWhileUpgradePending() {
+    String[] titles = {"b", "C", "a"};
+    for (int i = 0; i < titles.length; i++) {
+      Note note = new Note();
+      note.setCreation(i + 1L);
+      note.setTitle(titles[i]);
+      note.setContent("");
+      dbHelper.updateNote(note, true);
+    }
+    dbHelper.getDatabase(true).execSQL("UPDATE " + DbHelper.TABLE_NOTES + " SET "
+        + DbHelper.KEY_TITLE_SORT_KEY + " = ''");
+    dbHelper.addPendingUpgrade(565);
+
+    List<Note> notes = dbHelper.getNotes(new NoteQuery().sortBy(DbHelper.KEY_TITLE));
+    assertEquals("a", notes.get(0).getTitle());
+    assertEquals("b", notes.get(1).getTitle());
+    assertEquals("C", notes.get(2).getTitle());
+
+    UpgradeProcessor.processInBackground();
+
+    assertFalse(dbHelper.isUpgradePending(565));
+    notes = dbHelper.getNotes(new NoteQuery().sortBy(DbHelper.KEY_TITLE));
+    assertEquals("a", notes.get(0).getTitle());
+    assertEquals("C", notes.get(2).getTitle());
+  }
+
+  @Test
+  public void tagsAreParsedFromNotesWhileUpgradePending() {
+    Note note1 = new Note();
+    note1.setTitle("#work #urgent");
+    note1.setContent("");
+    dbHelper.updateNote(note1, true);
+    Note note2 = new Note();
+    note2.setCreation(note1.getCreation() + 1);
+    note2.setTitle("only #work");
+    note2.setContent("");
+    dbHelper.updateNote(note2, true);
+    dbHelper.getDatabase(true).execSQL("DELETE FROM " + DbHelper.TABLE_NOTE_TAGS);
+    dbHelper.addPendingUpgrade(563);
+
+    List<Tag> tags = dbHelper.getTags();
+    assertEquals(2, tags.size());
+    assertEquals("#work", tags.get(1).getText());
+    assertEquals(2, (int) tags.get(1).getCount());
+    assertEquals(1, dbHelper.getNotesByTag("#work,#urgent").size());
+    assertEquals(3, dbHelper.getStats().getTags());
+
+    UpgradeProcessor.processInBackground();
+
+    assertFalse(dbHelper.isUpgradePending(563));
+    assertEquals(2, dbHelper.getTags().size());
+    assertEquals(1, dbHelper.getNotesByTag("#work,#urgent").size());
+  }
+
+  @Test
+  public void statsAreComputedFromNotesWhileUpgradePending() {
+    Note note1 = createNoteWithAttachments(1, 0);
+    Note note2 = new Note();
+    note2.setCreation(2L);
+    note2.setTitle("two words");
+    note2.setContent("and three more");
+    dbHelper.updateNote(note2, true);
+    dbHelper.getDatabase(true).execSQL("DELETE FROM " + DbHelper.TABLE_NOTE_METRICS);
+    dbHelper.addPendingUpgrade(564);
+
+    int words = NotesHelper.getWords(note1) + NotesHelper.getWords(note2);
+    assertEquals(words, dbHelper.getStats().getWords());
+
+    UpgradeProcessor.processInBackground();
+
+    assertFalse(dbHelper.isUpgradePending(564));
+    assertEquals(words, dbHelper.getStats().getWords());
+  }
+
+  @Test
+  public void attachmentsMimeTypesAreUpgradedInBackground() {
+    Note note = new Note();
+    note.setTitle("note");
+    note.setContent("");
+    note.addAttachment(new Attachment(Uri.parse("file:///picture.jpg"), MIME_TYPE_FILES));
+    dbHelper.updateNote(note, true);
+    dbHelper.getDatabase(true).execSQL("UPDATE " + DbHelper.TABLE_ATTACHMENTS + " SET "
+        + DbHelper.KEY_ATTACHMENT_MIME_TYPE + " = NULL");
+    dbHelper.addPendingUpgrade(476);
+
+    UpgradeProcessor.processInBackground();
+
+    assertTrue(dbHelper.getPendingUpgrades().isEmpty());
+    assertEquals(MIME_TYPE_IMAGE, dbHelper.getAllAttachments().get(0).getMime_type());
+  }
+
+  private void assertCategoryCounts(int workNotes, int homeNotes) {
+    List<Category> categories = dbHelper.getCategories();
+    assertEquals(homeNotes, (int) categories.get(0).getCount());
+    assertEquals(workNotes, (int) categories.get(1).getCount());
+  }
+
+  private void createNoteWithReminder(long creation, Long reminder, boolean fired) {
+    Note note = new Note();
+    note.setCreation(creation);
+    note.setTitle("note " + creation);
+    note.setContent("content");
+    if (reminder != null) {
+      note.setAlarm(reminder);
+    }
+    note.setReminderFired(fired);
+    dbHelper.updateNote(note, true);
+  }
+
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static it.feio.android.omninotes.utils.ConstantsBase.DATABASE_NAME;
+import static org.junit.Assert.assertEquals;
+
+import android.database.sqlite.SQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.models.Note;
+import java.util.Calendar;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+
+@RunWith(AndroidJUnit4.class)
+public class DbHelperUpgradeTest extends BaseAndroidTestCase {
+
+  @Test
+  public void upgradeFromVersion481() {
+    long now = Calendar.getInstance().getTimeInMillis();
+    dbHelper.close();
+    testContext.deleteDatabase(DATABASE_NAME);
+    SQLiteDatabase db = SQLiteDatabase
+        .openOrCreateDatabase(testContext.getDatabasePath(DATABASE_NAME), null);
+    db.execSQL("CREATE TABLE categories (category_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+        + " name TEXT, description TEXT, color TEXT)");
+    db.execSQL("CREATE TABLE notes (note_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+        + " creation INTEGER, last_modification INTEGER, title TEXT, content TEXT,"
+        + " archived INTEGER, trashed INTEGER, alarm INTEGER DEFAULT null, recurrence_rule TEXT,"
+        + " latitude REAL, longitude REAL, address TEXT, category_id INTEGER DEFAULT null,"
+        + " locked INTEGER, checklist INTEGER)");
+    db.execSQL("CREATE TABLE attachments (attachment_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+        + " uri TEXT, name TEXT, size INTEGER, length INTEGER, mime_type TEXT, note_id INTEGER)");
+    db.execSQL("INSERT INTO notes (creation, last_modification, title, content, archived, trashed,"
+            + " alarm, locked, checklist) VALUES (1, 1, 'later', '', 0, 0, ?, 0, 0),"
+            + " (2, 2, 'sooner', '', 0, 0, ?, 0, 0), (3, 3, 'no reminder', '', 0, 0, null, 0, 0)",
+        new Object[]{now + 2 * 86400000L, now + 86400000L});
+    db.setVersion(481);
+    db.close();
+
+    dbHelper = DbHelper.getInstance(true);
+    List<Note> reminders = dbHelper.getNotesWithReminderNotFired();
+
+    assertEquals(3, dbHelper.getAllNotes(false).size());
+    assertEquals(2, reminders.size());
+    assertEquals("sooner", reminders.get(0).getTitle());
+  }
+
+}
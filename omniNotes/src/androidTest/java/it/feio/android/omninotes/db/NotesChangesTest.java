@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import de.greenrobot.event.EventBus;
+import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.async.bus.NotesChangedEvent;
+import it.feio.android.omninotes.models.Category;
+import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.models.NoteChange;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+
+@RunWith(AndroidJUnit4.class)
+public class NotesChangesTest extends BaseAndroidTestCase {
+
+  private final List<NoteChange> changes = new ArrayList<>();
+
+
+  @Before
+  public void setUp() {
+    EventBus.getDefault().register(this);
+  }
+
+
+  @After
+  public void tearDown() {
+    EventBus.getDefault().unregister(this);
+  }
+
+
+  public void onEvent(NotesChangedEvent event) {
+    changes.addAll(event.getChanges());
+  }
+
+
+  @Test
+  public void insertionAndUpdate() {
+    Note note = createNote(1L);
+    note.setTitle("changed");
+    dbHelper.updateNote(note, true);
+
+    assertEquals(2, changes.size());
+    assertEquals(NoteChange.Type.INSERTED, changes.get(0).getType());
+    assertNull(changes.get(0).getPreviousValues());
+    assertEquals(NoteChange.Type.UPDATED, changes.get(1).getType());
+    assertEquals(note.get_id().longValue(), changes.get(1).getNoteId());
+    assertEquals("changed", changes.get(1).getNote().getTitle());
+  }
+
+
+  @Test
+  public void columnsUpdate() {
+    Note note = createNote(1L);
+    changes.clear();
+
+    dbHelper.archiveNotes(Collections.singletonList(note), true);
+
+    assertEquals(1, changes.size());
+    NoteChange change = changes.get(0);
+    assertNull(change.getNote());
+    assertEquals(Collections.singleton(DbHelper.KEY_ARCHIVED), change.getChangedColumns());
+    assertFalse(change.getPreviousValues().getAsBoolean(DbHelper.KEY_ARCHIVED));
+    assertTrue(change.getValues().getAsBoolean(DbHelper.KEY_ARCHIVED));
+  }
+
+
+  @Test
+  public void categoryDeletion() {
+    Category category = new Category();
+    category.setId(10L);
+    category.setName("category");
+    dbHelper.updateCategory(category);
+    Note note = new Note();
+    note.setCreation(1L);
+    note.setCategory(category);
+    dbHelper.updateNote(note, false);
+    changes.clear();
+
+    dbHelper.deleteCategory(category);
+
+    assertEquals(1, changes.size());
+    assertEquals(10L, changes.get(0).getPreviousValues().get(DbHelper.KEY_CATEGORY));
+    assertNull(changes.get(0).getValues().get(DbHelper.KEY_CATEGORY));
+  }
+
+
+  @Test
+  public void deletions() {
+    Note note = createNote(1L);
+    Note trashedNote = createNote(2L);
+    dbHelper.trashNotes(Collections.singletonList(trashedNote), true);
+    changes.clear();
+
+    dbHelper.deleteNote(note);
+    dbHelper.emptyTrash();
+
+    assertEquals(2, changes.size());
+    assertEquals(NoteChange.Type.DELETED, changes.get(0).getType());
+    assertEquals(NoteChange.Type.DELETED, changes.get(1).getType());
+    assertEquals(trashedNote.get_id().longValue(), changes.get(1).getNoteId());
+    assertTrue(changes.get(1).getPreviousValues().getAsBoolean(DbHelper.KEY_TRASHED));
+    assertNull(changes.get(1).getValues());
+  }
+
+
+  private Note createNote(long creation) {
+    Note note = new Note();
+    note.setCreation(creation);
+    note.setTitle("title");
+    note.setContent("content");
+    return dbHelper.updateNote(note, false);
+  }
+
+}
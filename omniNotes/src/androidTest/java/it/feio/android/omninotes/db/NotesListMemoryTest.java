@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.helpers.LogDelegate;
+import it.feio.android.omninotes.models.Note;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+
+/**
+ * Compares the heap retained by notes list used for rendering with the one of the same notes kept
+ * as {@link Note} objects.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NotesListMemoryTest extends BaseAndroidTestCase {
+
+  @Test
+  public void notesListMemory10k() {
+    measureNotesListMemory(10_000);
+  }
+
+
+  @Test
+  public void notesListMemory100k() {
+    measureNotesListMemory(100_000);
+  }
+
+
+  private void measureNotesListMemory(int notesNumber) {
+    insertNotes(notesNumber);
+
+    long before = getUsedMemory();
+    List<Note> compactNotes = dbHelper.getAllNotesPage(0).getNotes();
+    long compactBytes = getUsedMemory() - before;
+    assertEquals(notesNumber, compactNotes.size());
+    compactNotes = null;
+
+    before = getUsedMemory();
+    List<Note> notes = new ArrayList<>(dbHelper.getAllNotesPage(0).getNotes());
+    long notesBytes = getUsedMemory() - before;
+    assertEquals(notesNumber, notes.size());
+
+    LogDelegate.i(String.format("%d notes list retains %d KB, as Note objects %d KB",
+        notesNumber, compactBytes / 1024, notesBytes / 1024));
+    assertTrue(compactBytes < notesBytes);
+  }
+
+
+  private void insertNotes(int notesNumber) {
+    SQLiteDatabase db = dbHelper.getDatabase(true);
+    db.beginTransaction();
+    try (SQLiteStatement statement = db.compileStatement("INSERT INTO " + DbHelper.TABLE_NOTES
+        + " (" + DbHelper.KEY_CREATION + "," + DbHelper.KEY_LAST_MODIFICATION + ","
+        + DbHelper.KEY_TITLE + "," + DbHelper.KEY_CONTENT + "," + DbHelper.KEY_ARCHIVED + ","
+        + DbHelper.KEY_TRASHED + "," + DbHelper.KEY_LOCKED + "," + DbHelper.KEY_CHECKLIST
+        + ") VALUES (?, ?, ?, ?, 0, 0, 0, 0)")) {
+      for (long i = 1; i <= notesNumber; i++) {
+        statement.bindLong(1, i);
+        statement.bindLong(2, i);
+        statement.bindString(3, "note " + i);
+        statement.bindString(4, "content of note " + i + " spanning a couple of lines\nwith #tag");
+        statement.executeInsert();
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+  }
+
+
+  private long getUsedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      System.runFinalization();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+}
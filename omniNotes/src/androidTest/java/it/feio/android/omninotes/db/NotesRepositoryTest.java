@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_NAVIGATION;
+import static org.junit.Assert.assertEquals;
+
+import android.content.ContentValues;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.models.Category;
+import it.feio.android.omninotes.models.Note;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+
+@RunWith(AndroidJUnit4.class)
+public class NotesRepositoryTest extends BaseAndroidTestCase {
+
+  private NotesRepository repository;
+
+
+  @Before
+  public void setUp() {
+    repository = NotesRepository.getInstance();
+    repository.clear();
+  }
+
+
+  @Test
+  public void warmPageIsRetrievedFromCache() {
+    Note note = createNote(1L, "cached title", false);
+    assertEquals("cached title", repository.getAllNotesPage(10).getNotes().get(0).getTitle());
+
+    // Changed bypassing DbHelper, so cache doesn't know it
+    changeTitleSilently(note, "changed title");
+
+    assertEquals("cached title", repository.getAllNotesPage(10).getNotes().get(0).getTitle());
+  }
+
+
+  @Test
+  public void savedNoteIsWrittenThrough() {
+    Note note = createNote(1L, "title", false);
+    repository.getAllNotesPage(10);
+
+    note.setTitle("new title");
+    dbHelper.updateNote(note, true);
+
+    assertEquals("new title", repository.getAllNotesPage(10).getNotes().get(0).getTitle());
+    assertEquals("new title", repository.getNote(note.get_id()).getTitle());
+  }
+
+
+  @Test
+  public void changesInvalidateOnlyAffectedQueries() {
+    Note activeNote = createNote(1L, "active", false);
+    Note archivedNote = createNote(2L, "archived", true);
+    repository.getAllNotesPage(10);
+    prefs.edit().putString(PREF_NAVIGATION, "Archive").commit();
+    repository.getAllNotesPage(10);
+
+    changeTitleSilently(archivedNote, "silently changed");
+    activeNote.setTitle("changed");
+    dbHelper.updateNote(activeNote, true);
+
+    // Archive list doesn't contain the changed note and is still cached
+    assertEquals("archived", repository.getAllNotesPage(10).getNotes().get(0).getTitle());
+
+    // Once archived the note matches it and it's retrieved again
+    dbHelper.archiveNotes(Collections.singletonList(activeNote), true);
+    List<Note> archivedNotes = repository.getAllNotesPage(10).getNotes();
+    assertEquals(2, archivedNotes.size());
+    assertEquals(activeNote.get_id(), archivedNotes.get(0).get_id());
+  }
+
+
+  @Test
+  public void deletedNotesAreRemoved() {
+    Note note = createNote(1L, "title", false);
+    createNote(2L, "other title", false);
+    repository.getAllNotesPage(10);
+
+    dbHelper.deleteNote(note);
+
+    List<Note> notes = repository.getAllNotesPage(10).getNotes();
+    assertEquals(1, notes.size());
+    assertEquals("other title", notes.get(0).getTitle());
+  }
+
+
+  @Test
+  public void cachedPagesAreNotChangedByCallers() {
+    createNote(1L, "title", false);
+    List<Note> notes = repository.getAllNotesPage(10).getNotes();
+    notes.get(0).setTitle("modified");
+    notes.add(new Note());
+
+    notes = repository.getAllNotesPage(10).getNotes();
+    assertEquals(1, notes.size());
+    assertEquals("title", notes.get(0).getTitle());
+  }
+
+
+  @Test
+  public void cachedPagesGetUpdatedCategory() {
+    Category category = dbHelper.updateCategory(new Category(1L, "name", "", "0"));
+    Note note = createNote(1L, "title", false);
+    dbHelper.categorizeNotes(Collections.singletonList(note), category);
+    repository.getAllNotesPage(10);
+
+    category.setName("new name");
+    dbHelper.updateCategory(category);
+
+    assertEquals("new name",
+        repository.getAllNotesPage(10).getNotes().get(0).getCategory().getName());
+  }
+
+
+  @Test
+  public void returnedNotesAreCopies() {
+    Note note = createNote(1L, "title", false);
+    repository.getNote(note.get_id()).setTitle("modified");
+
+    assertEquals("title", repository.getNote(note.get_id()).getTitle());
+  }
+
+
+  private Note createNote(long creation, String title, boolean archived) {
+    Note note = new Note();
+    note.setCreation(creation);
+    note.setTitle(title);
+    note.setContent("content");
+    note.setArchived(archived);
+    return dbHelper.updateNote(note, false);
+  }
+
+
+  private void changeTitleSilently(Note note, String title) {
+    ContentValues values = new ContentValues();
+    values.put(DbHelper.KEY_TITLE, title);
+    dbHelper.getDatabase(true).update(DbHelper.TABLE_NOTES, values, DbHelper.KEY_ID + " = ?",
+        new String[]{String.valueOf(note.get_id())});
+  }
+
+}
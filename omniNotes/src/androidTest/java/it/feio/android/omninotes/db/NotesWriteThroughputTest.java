@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_FILES;
+import static org.junit.Assert.assertEquals;
+
+import android.net.Uri;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import it.feio.android.omninotes.BaseAndroidTestCase;
+import it.feio.android.omninotes.helpers.LogDelegate;
+import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.models.Note;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+
+/**
+ * Measures how many notes per second can be saved, like it happens when restoring a backup or
+ * importing notes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NotesWriteThroughputTest extends BaseAndroidTestCase {
+
+  private static final int NOTES_NUMBER = 1000;
+  private static final int ATTACHMENTS_PER_NOTE = 2;
+
+
+  @Test
+  public void updateNoteThroughput() {
+    long creation = System.currentTimeMillis();
+
+    long start = System.nanoTime();
+    for (int i = 0; i < NOTES_NUMBER; i++) {
+      dbHelper.updateNote(createNote(creation + i), false);
+    }
+    long elapsed = System.nanoTime() - start;
+
+    LogDelegate.i(String.format("Saved %d notes with %d attachments each at %.1f notes/s",
+        NOTES_NUMBER, ATTACHMENTS_PER_NOTE, NOTES_NUMBER * 1e9 / elapsed));
+    assertEquals(NOTES_NUMBER, dbHelper.getAllNotes(false).size());
+    assertEquals(NOTES_NUMBER * ATTACHMENTS_PER_NOTE, dbHelper.getAllAttachments().size());
+  }
+
+
+  private Note createNote(long creation) {
+    Note note = new Note();
+    note.setCreation(creation);
+    note.setLastModification(creation);
+    note.setTitle("note " + creation);
+    note.setContent("content of note " + creation + " with #tag");
+    for (int i = 0; i < ATTACHMENTS_PER_NOTE; i++) {
+      Attachment attachment = new Attachment(creation * ATTACHMENTS_PER_NOTE + i,
+          Uri.parse("content://attachment/" + creation + "/" + i), "attachment" + i, 0, 0L,
+          MIME_TYPE_FILES);
+      note.addAttachment(attachment);
+    }
+    return note;
+  }
+
+}
@@ -41,12 +41,11 @@ import androidx.test.filters.LargeTest;
 import androidx.test.platform.app.InstrumentationRegistry;
 import de.greenrobot.event.EventBus;
 import it.feio.android.omninotes.R;
-import it.feio.android.omninotes.async.bus.NotesUpdatedEvent;
+import it.feio.android.omninotes.async.bus.NotesChangedEvent;
 import it.feio.android.omninotes.models.Note;
 import it.feio.android.omninotes.utils.Constants;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import rx.Observable;
 
 
 @LargeTest
@@ -90,8 +89,8 @@ public class FabCameraNoteTest extends BaseEspressoTest {
 
   }
 
-  public void onEvent(NotesUpdatedEvent notesUpdatedEvent) {
-    Note updatedNote = Observable.from(notesUpdatedEvent.getNotes()).toBlocking().first();
+  public void onEvent(NotesChangedEvent notesChangedEvent) {
+    Note updatedNote = notesChangedEvent.getChanges().get(0).getNote();
 
     assertEquals(0, updatedNote.getAttachmentsList().size());
     assertEquals(Constants.MIME_TYPE_IMAGE, updatedNote.getAttachmentsList().get(0).getMime_type());
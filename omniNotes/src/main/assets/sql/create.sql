@@ -16,7 +16,9 @@ CREATE
 		address TEXT,
 		category_id INTEGER DEFAULT null,
 		locked INTEGER,  
-		checklist  INTEGER
+		checklist  INTEGER,
+		title_sort_key TEXT DEFAULT '',
+		reminder_sort_key INTEGER DEFAULT 9223372036854775807
 	);
 	
 
@@ -45,3 +47,105 @@ CREATE
 		description TEXT,
 		color TEXT
 	);
+
+
+
+-- Indexes for NOTES
+CREATE INDEX notes_trashed_archived_creation_idx ON notes(trashed, archived, creation);
+CREATE INDEX notes_trashed_archived_last_modification_idx ON notes(trashed, archived, last_modification);
+CREATE INDEX notes_trashed_archived_alarm_idx ON notes(trashed, archived, alarm);
+CREATE INDEX notes_category_idx ON notes(category_id, trashed);
+CREATE INDEX notes_alarm_idx ON notes(alarm);
+CREATE INDEX notes_trashed_archived_title_sort_key_idx ON notes(trashed, archived, title_sort_key);
+CREATE INDEX notes_trashed_archived_reminder_sort_key_idx ON notes(trashed, archived, reminder_sort_key);
+
+
+
+-- Indexes for ATTACHMENTS
+CREATE INDEX attachments_note_id_idx ON attachments(note_id);
+
+
+
+-- Full-text index for NOTES, locked notes content is encrypted so only their title is indexed
+-- Unicode tokenizer needs SQLite 3.7.13, on older ones the second table is created instead
+CREATE VIRTUAL TABLE IF NOT EXISTS notes_fts USING fts4(title, content, tokenize=unicode61, prefix="2,3");
+CREATE VIRTUAL TABLE IF NOT EXISTS notes_fts USING fts4(title, content, prefix="2,3");
+
+-- Notes are saved with INSERT OR REPLACE, which doesn't fire delete triggers
+CREATE TRIGGER notes_fts_after_insert AFTER INSERT ON notes
+BEGIN
+	DELETE FROM notes_fts WHERE docid = new.creation;
+	INSERT INTO notes_fts(docid, title, content)
+	VALUES (new.creation, new.title, CASE WHEN new.locked = 1 THEN NULL ELSE new.content END);
+END;
+
+CREATE TRIGGER notes_fts_after_update AFTER UPDATE OF creation, title, content, locked ON notes
+BEGIN
+	DELETE FROM notes_fts WHERE docid = old.creation;
+	INSERT INTO notes_fts(docid, title, content)
+	VALUES (new.creation, new.title, CASE WHEN new.locked = 1 THEN NULL ELSE new.content END);
+END;
+
+CREATE TRIGGER notes_fts_after_delete AFTER DELETE ON notes
+BEGIN
+	DELETE FROM notes_fts WHERE docid = old.creation;
+END;
+
+
+
+-- Tags index for NOTES, kept updated by the application when notes are saved
+CREATE TABLE note_tags (
+	note_id INTEGER NOT NULL,
+	tag TEXT NOT NULL,
+	PRIMARY KEY (note_id, tag)
+);
+
+CREATE INDEX note_tags_tag_idx ON note_tags (tag, note_id);
+
+CREATE TRIGGER note_tags_after_delete AFTER DELETE ON notes
+BEGIN
+	DELETE FROM note_tags WHERE note_id = old.creation;
+END;
+
+
+
+-- Text metrics of NOTES, kept updated by the application when notes are saved
+CREATE TABLE note_metrics (
+	note_id INTEGER PRIMARY KEY,
+	words INTEGER,
+	chars INTEGER
+);
+
+CREATE TRIGGER note_metrics_after_delete AFTER DELETE ON notes
+BEGIN
+	DELETE FROM note_metrics WHERE note_id = old.creation;
+END;
+
+
+
+-- Not trashed NOTES number of each category, kept updated by the application when notes change
+CREATE TABLE category_counts (
+	category_id INTEGER PRIMARY KEY,
+	notes INTEGER NOT NULL DEFAULT 0
+);
+
+CREATE TRIGGER category_counts_after_delete AFTER DELETE ON categories
+BEGIN
+	DELETE FROM category_counts WHERE category_id = old.category_id;
+END;
+
+
+
+-- Data upgrades run in background after the schema one, with the last note each one processed
+CREATE TABLE pending_upgrades (
+	version INTEGER PRIMARY KEY,
+	checkpoint INTEGER NOT NULL DEFAULT 0
+);
+
+
+
+-- Files of deleted ATTACHMENTS still to be removed from storage, in deletion order
+CREATE TABLE deleted_attachments (
+	id INTEGER PRIMARY KEY,
+	uri TEXT NOT NULL
+);
@@ -0,0 +1,24 @@
+/*
+ * Normalizes flags and uncategorized encoding, then adds secondary indexes on the columns used
+ * to filter and sort notes lists
+ */
+
+-- Flags are always written as 0/1 by the app but older schemas may have left NULLs
+UPDATE notes SET archived = 0 WHERE archived IS NULL;
+UPDATE notes SET trashed = 0 WHERE trashed IS NULL;
+UPDATE notes SET locked = 0 WHERE locked IS NULL;
+UPDATE notes SET checklist = 0 WHERE checklist IS NULL;
+UPDATE notes SET reminder_fired = 0 WHERE reminder_fired IS NULL;
+
+-- Uncategorized notes were stored as NULL, 0 or empty string
+UPDATE notes SET category_id = NULL WHERE category_id = 0 OR category_id = '';
+
+-- Indexes for NOTES
+CREATE INDEX IF NOT EXISTS notes_trashed_archived_creation_idx ON notes(trashed, archived, creation);
+CREATE INDEX IF NOT EXISTS notes_trashed_archived_last_modification_idx ON notes(trashed, archived, last_modification);
+CREATE INDEX IF NOT EXISTS notes_trashed_archived_alarm_idx ON notes(trashed, archived, alarm);
+CREATE INDEX IF NOT EXISTS notes_category_idx ON notes(category_id, trashed);
+CREATE INDEX IF NOT EXISTS notes_alarm_idx ON notes(alarm);
+
+-- Indexes for ATTACHMENTS
+CREATE INDEX IF NOT EXISTS attachments_note_id_idx ON attachments(note_id);
@@ -0,0 +1,34 @@
+/*
+ * Adds a full-text index on notes title and content kept in sync by triggers.
+ * Locked notes content is encrypted, so only their title gets indexed.
+ */
+
+-- Tokenizer folding case and diacritics of any script, with prefix indexes for the short prefixes
+-- typed while searching. It needs SQLite 3.7.13, on older ones the second table is created instead.
+CREATE VIRTUAL TABLE IF NOT EXISTS notes_fts USING fts4(title, content, tokenize=unicode61, prefix="2,3");
+CREATE VIRTUAL TABLE IF NOT EXISTS notes_fts USING fts4(title, content, prefix="2,3");
+
+-- Notes are saved with INSERT OR REPLACE, which doesn't fire delete triggers
+CREATE TRIGGER notes_fts_after_insert AFTER INSERT ON notes
+BEGIN
+	DELETE FROM notes_fts WHERE docid = new.creation;
+	INSERT INTO notes_fts(docid, title, content)
+	VALUES (new.creation, new.title, CASE WHEN new.locked = 1 THEN NULL ELSE new.content END);
+END;
+
+CREATE TRIGGER notes_fts_after_update AFTER UPDATE OF creation, title, content, locked ON notes
+BEGIN
+	DELETE FROM notes_fts WHERE docid = old.creation;
+	INSERT INTO notes_fts(docid, title, content)
+	VALUES (new.creation, new.title, CASE WHEN new.locked = 1 THEN NULL ELSE new.content END);
+END;
+
+CREATE TRIGGER notes_fts_after_delete AFTER DELETE ON notes
+BEGIN
+	DELETE FROM notes_fts WHERE docid = old.creation;
+END;
+
+-- Backfill of existing notes
+INSERT INTO notes_fts(docid, title, content)
+SELECT creation, title, CASE WHEN locked = 1 THEN NULL ELSE content END
+FROM notes;
@@ -0,0 +1,17 @@
+/*
+ * Adds a normalized tags index kept updated when notes are saved.
+ * Its content is filled by the application after the upgrade since tags parsing can't be done in SQL.
+ */
+
+CREATE TABLE IF NOT EXISTS note_tags (
+	note_id INTEGER NOT NULL,
+	tag TEXT NOT NULL,
+	PRIMARY KEY (note_id, tag)
+);
+
+CREATE INDEX IF NOT EXISTS note_tags_tag_idx ON note_tags (tag, note_id);
+
+CREATE TRIGGER note_tags_after_delete AFTER DELETE ON notes
+BEGIN
+	DELETE FROM note_tags WHERE note_id = old.creation;
+END;
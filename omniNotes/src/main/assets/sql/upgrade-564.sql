@@ -0,0 +1,15 @@
+/*
+ * Adds per-note text metrics kept updated when notes are saved, used to compute statistics.
+ * Its content is filled by the application after the upgrade since counting depends on the locale.
+ */
+
+CREATE TABLE IF NOT EXISTS note_metrics (
+	note_id INTEGER PRIMARY KEY,
+	words INTEGER,
+	chars INTEGER
+);
+
+CREATE TRIGGER note_metrics_after_delete AFTER DELETE ON notes
+BEGIN
+	DELETE FROM note_metrics WHERE note_id = old.creation;
+END;
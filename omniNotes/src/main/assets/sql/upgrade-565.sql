@@ -0,0 +1,12 @@
+/*
+ * Adds normalized sort keys used to read title and reminder sorted lists in index order.
+ * Title keys are filled by the application after the upgrade since case folding is done in Java.
+ */
+
+ALTER TABLE notes ADD COLUMN title_sort_key TEXT DEFAULT '';
+ALTER TABLE notes ADD COLUMN reminder_sort_key INTEGER DEFAULT 9223372036854775807;
+
+UPDATE notes SET reminder_sort_key = alarm WHERE alarm IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS notes_trashed_archived_title_sort_key_idx ON notes(trashed, archived, title_sort_key);
+CREATE INDEX IF NOT EXISTS notes_trashed_archived_reminder_sort_key_idx ON notes(trashed, archived, reminder_sort_key);
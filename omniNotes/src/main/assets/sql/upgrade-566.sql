@@ -0,0 +1,17 @@
+/*
+ * Adds per-category counters of not trashed notes, used to build the navigation drawer without
+ * counting notes each time. Counters are kept updated by the application when notes change.
+ */
+
+CREATE TABLE IF NOT EXISTS category_counts (
+	category_id INTEGER PRIMARY KEY,
+	notes INTEGER NOT NULL DEFAULT 0
+);
+
+CREATE TRIGGER category_counts_after_delete AFTER DELETE ON categories
+BEGIN
+	DELETE FROM category_counts WHERE category_id = old.category_id;
+END;
+
+INSERT OR REPLACE INTO category_counts (category_id, notes)
+SELECT category_id, COUNT(*) FROM notes WHERE category_id IS NOT NULL AND trashed = 0 GROUP BY category_id;
@@ -0,0 +1,9 @@
+/*
+ * Adds the table of data upgrades run in background after the schema one, each with the last note
+ * it processed to resume from there if interrupted.
+ */
+
+CREATE TABLE IF NOT EXISTS pending_upgrades (
+	version INTEGER PRIMARY KEY,
+	checkpoint INTEGER NOT NULL DEFAULT 0
+);
@@ -0,0 +1,9 @@
+/*
+ * Adds the table of deleted attachments files still to be removed from storage, filled when trash
+ * is emptied and drained in batches by a background task.
+ */
+
+CREATE TABLE IF NOT EXISTS deleted_attachments (
+	id INTEGER PRIMARY KEY,
+	uri TEXT NOT NULL
+);
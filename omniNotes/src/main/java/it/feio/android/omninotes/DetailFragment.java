@@ -126,13 +126,13 @@ import it.feio.android.checklistview.models.CheckListView;
 import it.feio.android.checklistview.models.CheckListViewItem;
 import it.feio.android.checklistview.models.ChecklistManager;
 import it.feio.android.omninotes.async.AttachmentTask;
-import it.feio.android.omninotes.async.bus.NotesUpdatedEvent;
 import it.feio.android.omninotes.async.bus.PushbulletReplyEvent;
 import it.feio.android.omninotes.async.bus.SwitchFragmentEvent;
 import it.feio.android.omninotes.async.notes.NoteProcessorDelete;
 import it.feio.android.omninotes.async.notes.SaveNoteTask;
 import it.feio.android.omninotes.databinding.FragmentDetailBinding;
 import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.db.NotesRepository;
 import it.feio.android.omninotes.helpers.AttachmentsHelper;
 import it.feio.android.omninotes.helpers.IntentHelper;
 import it.feio.android.omninotes.helpers.LogDelegate;
@@ -180,7 +180,6 @@ import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import org.apache.commons.collections4.CollectionUtils;
@@ -489,7 +488,7 @@ public class DetailFragment extends BaseFragment implements OnReminderPickedList
     // Action called from home shortcut
     if (IntentChecker.checkAction(i, ACTION_SHORTCUT, ACTION_NOTIFICATION_CLICK)) {
       afterSavedReturnsToList = false;
-      noteOriginal = DbHelper.getInstance().getNote(i.getLongExtra(INTENT_KEY, 0));
+      noteOriginal = NotesRepository.getInstance().getNote(i.getLongExtra(INTENT_KEY, 0));
       // Checks if the note pointed from the shortcut has been deleted
       try {
         note = new Note(noteOriginal);
@@ -1628,7 +1627,6 @@ public class DetailFragment extends BaseFragment implements OnReminderPickedList
   @Override
   public void onNoteSaved(Note noteSaved) {
     if (!activityPausing) {
-      EventBus.getDefault().post(new NotesUpdatedEvent(Collections.singletonList(noteSaved)));
       deleteMergedNotes(mergedNotesIds);
       if (noteTmp.getAlarm() != null && !noteTmp.getAlarm().equals(note.getAlarm())) {
         ReminderHelper.showReminderMessage(String.valueOf(noteTmp.getAlarm()));
@@ -85,26 +85,36 @@ import de.keyboardsurfer.android.widget.crouton.Crouton;
 import de.keyboardsurfer.android.widget.crouton.Style;
 import it.feio.android.omninotes.async.bus.CategoriesUpdatedEvent;
 import it.feio.android.omninotes.async.bus.NavigationUpdatedNavDrawerClosedEvent;
+import it.feio.android.omninotes.async.bus.NotesDeletedEvent;
 import it.feio.android.omninotes.async.bus.NotesLoadedEvent;
+import it.feio.android.omninotes.async.bus.NotesChangedEvent;
 import it.feio.android.omninotes.async.bus.NotesMergeEvent;
+import it.feio.android.omninotes.async.bus.NotesPageLoadedEvent;
 import it.feio.android.omninotes.async.bus.PasswordRemovedEvent;
+import it.feio.android.omninotes.async.notes.EmptyTrashTask;
 import it.feio.android.omninotes.async.notes.NoteLoaderTask;
 import it.feio.android.omninotes.async.notes.NoteProcessorArchive;
 import it.feio.android.omninotes.async.notes.NoteProcessorCategorize;
 import it.feio.android.omninotes.async.notes.NoteProcessorDelete;
 import it.feio.android.omninotes.async.notes.NoteProcessorTrash;
+import it.feio.android.omninotes.async.notes.NotesHydrationTask;
+import it.feio.android.omninotes.async.notes.NotesPageLoaderTask;
 import it.feio.android.omninotes.databinding.FragmentListBinding;
 import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.db.NotesRepository;
 import it.feio.android.omninotes.helpers.LogDelegate;
 import it.feio.android.omninotes.helpers.NotesHelper;
 import it.feio.android.omninotes.models.Category;
 import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.models.NoteChange;
+import it.feio.android.omninotes.models.NotesPage;
 import it.feio.android.omninotes.models.ONStyle;
 import it.feio.android.omninotes.models.PasswordValidator;
 import it.feio.android.omninotes.models.Tag;
 import it.feio.android.omninotes.models.UndoBarController;
 import it.feio.android.omninotes.models.adapters.CategoryRecyclerViewAdapter;
 import it.feio.android.omninotes.models.adapters.NoteAdapter;
+import it.feio.android.omninotes.models.listeners.OnTrashEmptiedListener;
 import it.feio.android.omninotes.models.listeners.OnViewTouchedListener;
 import it.feio.android.omninotes.models.listeners.RecyclerViewItemClickSupport;
 import it.feio.android.omninotes.models.views.Fab;
@@ -121,8 +131,10 @@ import it.feio.android.simplegallery.util.BitmapUtils;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import org.apache.commons.collections4.CollectionUtils;
@@ -137,6 +149,7 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
   private static final int REQUEST_CODE_ADD_ALARMS = 3;
   public static final String LIST_VIEW_POSITION = "listViewPosition";
   public static final String LIST_VIEW_POSITION_OFFSET = "listViewPositionOffset";
+  private static final int NOTES_PAGE_SIZE = 50;
 
   private FragmentListBinding binding;
 
@@ -173,6 +186,11 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
   private boolean searchLabelActive = false;
 
   private NoteAdapter listAdapter;
+  // Paged loading of notes
+  private NotesPage notesPage;
+  private NotesPageLoaderTask notesPageLoaderTask;
+  private boolean selectAllPending = false;
+
   private UndoBarController ubc;
   private Fab fab;
   private MainActivity mainActivity;
@@ -387,6 +405,8 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
     super.onResume();
     if (mainActivity.prefsChanged) {
       mainActivity.prefsChanged = false;
+      // Notes are shown anew to apply changed settings
+      listAdapter = null;
       init();
     } else if (Intent.ACTION_SEARCH.equals(mainActivity.getIntent().getAction())) {
       initNotesList(mainActivity.getIntent());
@@ -424,7 +444,8 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
       selectedNotes.clear();
       listAdapter.clearSelectedItems();
 //      list.clearChoices();
-      listAdapter.notifyDataSetChanged();
+      listAdapter.notifyItemRangeChanged(0, listAdapter.getItemCount(),
+          NoteAdapter.PAYLOAD_BACKGROUND);
 
       fab.setAllowed(isFabAllowed(true));
       if (undoNotesMap.size() == 0) {
@@ -519,6 +540,19 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
     });
 
     binding.listRoot.setOnViewTouchedListener(this);
+
+    // Further notes pages are loaded while approaching the end of the list
+    binding.list.addOnScrollListener(new RecyclerView.OnScrollListener() {
+      @Override
+      public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        if (listAdapter != null && layoutManager != null
+            && layoutManager.findLastVisibleItemPosition()
+            >= listAdapter.getItemCount() - NOTES_PAGE_SIZE / 2) {
+          loadNextNotesPage(NOTES_PAGE_SIZE);
+        }
+      }
+    });
   }
 
 
@@ -906,11 +940,17 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
 
 
   private void addReminders() {
-    Intent intent = new Intent(OmniNotes.getAppContext(), SnoozeActivity.class);
-    intent.setAction(ACTION_POSTPONE);
-    intent.putExtra(INTENT_NOTE, selectedNotes.toArray(new Note[selectedNotes.size()]));
-    intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-    startActivityForResult(intent, REQUEST_CODE_ADD_ALARMS);
+    // Notes will be saved again with the new reminder
+    NotesHydrationTask.hydrate(new ArrayList<>(selectedNotes), notes -> {
+      if (!isAdded()) {
+        return;
+      }
+      Intent intent = new Intent(OmniNotes.getAppContext(), SnoozeActivity.class);
+      intent.setAction(ACTION_POSTPONE);
+      intent.putExtra(INTENT_NOTE, notes.toArray(new Note[notes.size()]));
+      intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+      startActivityForResult(intent, REQUEST_CODE_ADD_ALARMS);
+    });
   }
 
 
@@ -1035,25 +1075,42 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
         .content(R.string.empty_trash_confirmation)
         .positiveText(R.string.ok)
         .onPositive((dialog, which) -> {
-          boolean mustDeleteLockedNotes = false;
+          List<Note> trashedNotes = new ArrayList<>();
           for (int i = 0; i < listAdapter.getItemCount(); i++) {
-            selectedNotes.add(listAdapter.getItem(i));
-            mustDeleteLockedNotes = mustDeleteLockedNotes || listAdapter.getItem(i).isLocked();
-          }
-          if (mustDeleteLockedNotes) {
-            mainActivity.requestPassword(mainActivity, getSelectedNotes(),
-                passwordConfirmed -> {
-                  if (passwordConfirmed.equals(PasswordValidator.Result.SUCCEED)) {
-                    deleteNotesExecute();
-                  }
-                });
-          } else {
-            deleteNotesExecute();
+            trashedNotes.add(listAdapter.getItem(i));
           }
+          // Password is requested only if some of the notes is locked
+          mainActivity.requestPassword(mainActivity, trashedNotes,
+              passwordConfirmed -> {
+                if (passwordConfirmed.equals(PasswordValidator.Result.SUCCEED)) {
+                  emptyTrashExecute(trashedNotes);
+                }
+              });
         }).build().show();
   }
 
 
+  /**
+   * Performs trash emptying after confirmation by the user, without loading again trashed notes
+   */
+  private void emptyTrashExecute(List<Note> trashedNotes) {
+    listAdapter.remove(trashedNotes);
+    finishActionMode();
+    new EmptyTrashTask(new OnTrashEmptiedListener() {
+      @Override
+      public void onAttachmentsDeletionProgress(int deleted, int total) {
+        LogDelegate.d("Emptying trash: " + deleted + "/" + total + " attachments files deleted");
+      }
+
+      @Override
+      public void onTrashEmptied() {
+        EventBus.getDefault().post(new NotesDeletedEvent(trashedNotes));
+      }
+    }).executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    mainActivity.showMessage(R.string.note_deleted, ONStyle.ALERT);
+  }
+
+
   /**
    * Notes list adapter initialization and association to view
    *
@@ -1065,6 +1122,8 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
     binding.progressWheel.setAlpha(1);
     binding.list.setAlpha(0);
 
+    cancelNotesPageLoading();
+
     // Search for a tag
     // A workaround to simplify it's to simulate normal search
     if (Intent.ACTION_VIEW.equals(intent.getAction()) && intent.getCategories() != null
@@ -1127,18 +1186,54 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
           NoteLoaderTask.getInstance().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR,
               "getNotesByCategory", categoryId);
         } else {
-          NoteLoaderTask.getInstance()
-              .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, "getAllNotes", true);
+          loadFirstNotesPage();
         }
 
       } else {
-        NoteLoaderTask.getInstance()
-            .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, "getAllNotes", true);
+        loadFirstNotesPage();
       }
     }
   }
 
 
+  /**
+   * Starts loading the current navigation notes with a first small page to show them as soon as
+   * possible. Trash and reminders are loaded entirely as emptying trash and scrolling to the
+   * closest reminder need all of them.
+   */
+  private void loadFirstNotesPage() {
+    int pageSize = Navigation.checkNavigation(new Integer[]{Navigation.TRASH, Navigation.REMINDERS})
+        ? 0
+        : Math.max(NOTES_PAGE_SIZE, listViewPosition + NOTES_PAGE_SIZE);
+    notesPageLoaderTask = new NotesPageLoaderTask(null, pageSize);
+    notesPageLoaderTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+  }
+
+
+  /**
+   * Loads the page following the last one shown, if any
+   *
+   * @param pageSize Maximum number of notes to load, 0 to load all the remaining ones
+   */
+  private void loadNextNotesPage(int pageSize) {
+    if (notesPage == null || notesPage.isLast() || notesPageLoaderTask != null) {
+      return;
+    }
+    notesPageLoaderTask = new NotesPageLoaderTask(notesPage, pageSize);
+    notesPageLoaderTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+  }
+
+
+  private void cancelNotesPageLoading() {
+    if (notesPageLoaderTask != null) {
+      notesPageLoaderTask.cancel(true);
+      notesPageLoaderTask = null;
+    }
+    notesPage = null;
+    selectAllPending = false;
+  }
+
+
   public void toggleSearchLabel(boolean activate) {
     if (activate) {
       binding.searchQuery
@@ -1179,21 +1274,135 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
   }
 
 
-  public void onEvent(CategoriesUpdatedEvent categoriesUpdatedEvent) {
-    initNotesList(mainActivity.getIntent());
+  /**
+   * Shown notes get updated categories in place, the list is reloaded only if the shown category
+   * doesn't exist anymore
+   */
+  public void onEventAsync(CategoriesUpdatedEvent categoriesUpdatedEvent) {
+    Map<Long, Category> categories = new HashMap<>();
+    for (Category category : DbHelper.getInstance().getCategories()) {
+      categories.put(category.getId(), category);
+    }
+    new Handler(Looper.getMainLooper()).post(() -> {
+      if (listAdapter == null || !isAdded()) {
+        return;
+      }
+      if (Navigation.checkNavigation(Navigation.CATEGORY)
+          && !categories.containsKey(Navigation.getCategory())) {
+        initNotesList(mainActivity.getIntent());
+        return;
+      }
+      List<Note> notes = listAdapter.getNotes();
+      for (int i = 0; i < notes.size(); i++) {
+        Note note = notes.get(i);
+        if (note.getCategory() != null) {
+          note.setCategory(categories.get(note.getCategory().getId()));
+          listAdapter.notifyItemChanged(i, NoteAdapter.PAYLOAD_BACKGROUND);
+        }
+      }
+    });
+  }
+
+
+  /**
+   * Places changed notes into the shown navigation list instead of reloading it. Other lists, like
+   * search results, are left as they are.
+   */
+  public void onEventAsync(NotesChangedEvent notesChangedEvent) {
+    NotesPage page = notesPage;
+    if (page == null || listAdapter == null) {
+      return;
+    }
+    Set<Long> changedIds = new HashSet<>();
+    List<Long> existingIds = new ArrayList<>();
+    for (NoteChange change : notesChangedEvent.getChanges()) {
+      changedIds.add(change.getNoteId());
+      if (change.getType() != NoteChange.Type.DELETED) {
+        existingIds.add(change.getNoteId());
+      }
+    }
+    SortedMap<Integer, Note> positions = NotesRepository.getInstance()
+        .getNotesPositions(page.getQuery(), page.getSortColumn(), existingIds);
+
+    new Handler(Looper.getMainLooper()).post(() -> {
+      // List reloaded meanwhile or being changed by the user, who'll commit changes on its own
+      if (notesPage == null || notesPage.getQuery() != page.getQuery()
+          || getActionMode() != null || !undoNotesMap.isEmpty()) {
+        return;
+      }
+      listAdapter.removeAll(changedIds);
+      for (Map.Entry<Integer, Note> entry : positions.entrySet()) {
+        // Notes following the loaded ones will be retrieved with next pages
+        if (entry.getKey() < listAdapter.getItemCount() || notesPage.isLast()) {
+          listAdapter.add(Math.min(entry.getKey(), listAdapter.getItemCount()), entry.getValue());
+        }
+      }
+    });
   }
 
 
   public void onEvent(NotesLoadedEvent notesLoadedEvent) {
-    listAdapter = new NoteAdapter(mainActivity, prefs.getBoolean(PREF_EXPANDED_VIEW, true),
-        notesLoadedEvent.getNotes());
+    cancelNotesPageLoading();
+    onNotesLoaded(notesLoadedEvent.getNotes(), () -> {
+    });
+  }
+
+
+  public void onEvent(NotesPageLoadedEvent notesPageLoadedEvent) {
+    notesPageLoaderTask = null;
+    NotesPage page = notesPageLoadedEvent.getNotesPage();
+    if (page.isFirst()) {
+      // Further pages are loaded once the first one is shown
+      onNotesLoaded(page.getNotes(), () -> onNotesPageShown(page));
+    } else {
+      listAdapter.addAll(page.getNotes());
+      onNotesPageShown(page);
+    }
+  }
+
+
+  private void onNotesPageShown(NotesPage page) {
+    notesPage = page;
+    if (selectAllPending) {
+      if (notesPage.isLast()) {
+        selectAllPending = false;
+        selectAllNotes();
+      } else {
+        loadNextNotesPage(0);
+      }
+    }
+  }
+
+
+  /**
+   * The same adapter is kept while possible, so only notes differing from the shown ones are
+   * rebound
+   */
+  private void onNotesLoaded(List<Note> notes, Runnable onShown) {
+    boolean expandedView = prefs.getBoolean(PREF_EXPANDED_VIEW, true);
+    if (listAdapter == null || !listAdapter.isCompatible(mainActivity, expandedView)) {
+      listAdapter = new NoteAdapter(mainActivity, expandedView, notes);
+      showNotesList();
+      onShown.run();
+    } else {
+      listAdapter.submitNotes(notes, () -> {
+        if (isAdded()) {
+          showNotesList();
+          onShown.run();
+        }
+      });
+    }
+  }
 
-    initSwipeGesture();
 
-    binding.list.setAdapter(listAdapter);
+  private void showNotesList() {
+    if (binding.list.getAdapter() != listAdapter) {
+      initSwipeGesture();
+      binding.list.setAdapter(listAdapter);
+    }
 
     // Restores listview position when turning back to list or when navigating reminders
-    if (!notesLoadedEvent.getNotes().isEmpty()) {
+    if (listAdapter.getItemCount() > 0) {
       if (Navigation.checkNavigation(Navigation.REMINDERS)) {
         listViewPosition = listAdapter.getClosestNotePosition();
       }
@@ -1319,7 +1528,6 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
       trashNote(getSelectedNotes(), false);
     }
 
-    listAdapter.notifyDataSetChanged();
     finishActionMode();
 
     // Advice to user
@@ -1364,6 +1572,12 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
    * Selects all notes in list
    */
   private void selectAllNotes() {
+    // Notes not loaded yet must be retrieved before selecting them all
+    if (notesPage != null && !notesPage.isLast()) {
+      selectAllPending = true;
+      loadNextNotesPage(0);
+      return;
+    }
     for (int i = 0; i < binding.list.getChildCount(); i++) {
       LinearLayout v = binding.list.getChildAt(i).findViewById(R.id.card_layout);
       v.setBackgroundColor(getResources().getColor(R.color.list_bg_selected));
@@ -1442,7 +1656,6 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
       }
     }
 
-    listAdapter.notifyDataSetChanged();
     finishActionMode();
 
     // Advice to user
@@ -1589,22 +1802,29 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
       return;
     }
 
-    final Integer[] preSelectedTags = TagsHelper.getPreselectedTagsArray(selectedNotes, tags);
-
-    new MaterialDialog.Builder(mainActivity)
-        .title(R.string.select_tags)
-        .items(TagsHelper.getTagsArray(tags))
-        .positiveText(R.string.ok)
-        .itemsCallbackMultiChoice(preSelectedTags, (dialog, which, text) -> {
-          dialog.dismiss();
-          tagNotesExecute(tags, which, preSelectedTags);
-          return false;
-        }).build().show();
+    // Tags are looked for and added into the whole text of notes
+    NotesHydrationTask.hydrate(new ArrayList<>(selectedNotes), notes -> {
+      if (!isAdded()) {
+        return;
+      }
+      final Integer[] preSelectedTags = TagsHelper.getPreselectedTagsArray(notes, tags);
+
+      new MaterialDialog.Builder(mainActivity)
+          .title(R.string.select_tags)
+          .items(TagsHelper.getTagsArray(tags))
+          .positiveText(R.string.ok)
+          .itemsCallbackMultiChoice(preSelectedTags, (dialog, which, text) -> {
+            dialog.dismiss();
+            tagNotesExecute(notes, tags, which, preSelectedTags);
+            return false;
+          }).build().show();
+    });
   }
 
 
-  private void tagNotesExecute(List<Tag> tags, Integer[] selectedTags, Integer[] preSelectedTags) {
-    for (Note note : getSelectedNotes()) {
+  private void tagNotesExecute(List<Note> notes, List<Tag> tags, Integer[] selectedTags,
+      Integer[] preSelectedTags) {
+    for (Note note : notes) {
       tagNote(tags, selectedTags, note);
     }
 
@@ -1675,8 +1895,6 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
       }
     }
 
-    listAdapter.notifyDataSetChanged();
-
     selectedNotes.clear();
     undoNotesMap.clear();
 
@@ -1756,6 +1974,7 @@ public class ListFragment extends BaseFragment implements OnViewTouchedListener,
    */
   public void onEventAsync(NotesMergeEvent notesMergeEvent) {
 
+    DbHelper.getInstance().hydrateNotes(getSelectedNotes());
     final Note finalMergedNote = NotesHelper
         .mergeNotes(getSelectedNotes(), notesMergeEvent.keepMergedNotes);
     new Handler(Looper.getMainLooper()).post(() -> {
@@ -54,8 +54,10 @@ import it.feio.android.omninotes.async.UpdateWidgetsTask;
 import it.feio.android.omninotes.async.bus.PasswordRemovedEvent;
 import it.feio.android.omninotes.async.bus.SwitchFragmentEvent;
 import it.feio.android.omninotes.async.notes.NoteProcessorDelete;
+import it.feio.android.omninotes.async.notes.NotesHydrationTask;
 import it.feio.android.omninotes.databinding.ActivityMainBinding;
 import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.db.NotesRepository;
 import it.feio.android.omninotes.helpers.LogDelegate;
 import it.feio.android.omninotes.helpers.NotesHelper;
 import it.feio.android.omninotes.intro.IntroActivity;
@@ -373,7 +375,7 @@ public class MainActivity extends BaseActivity implements
     if (receivedIntent(i)) {
       Note note = i.getParcelableExtra(INTENT_NOTE);
       if (note == null) {
-        note = DbHelper.getInstance().getNote(i.getIntExtra(INTENT_KEY, 0));
+        note = NotesRepository.getInstance().getNote(i.getIntExtra(INTENT_KEY, 0));
       }
       // Checks if the same note is already opened to avoid to open again
       if (note != null && noteAlreadyOpened(note)) {
@@ -402,7 +404,7 @@ public class MainActivity extends BaseActivity implements
     // Home launcher shortcut widget
     if (Intent.ACTION_VIEW.equals(i.getAction()) && i.getData() != null) {
       Long id = Long.valueOf(Uri.parse(i.getDataString()).getQueryParameter("id"));
-      Note note = DbHelper.getInstance().getNote(id);
+      Note note = NotesRepository.getInstance().getNote(id);
       if (note == null) {
         showMessage(R.string.note_doesnt_exist, ONStyle.ALERT);
         return;
@@ -467,6 +469,16 @@ public class MainActivity extends BaseActivity implements
 
 
   public void switchToDetail(Note note) {
+    // Notes retrieved for list rendering are completed before being edited
+    NotesHydrationTask.hydrate(Collections.singletonList(note), notes -> {
+      if (!isFinishing() && !isDestroyed()) {
+        showDetail(note);
+      }
+    });
+  }
+
+
+  private void showDetail(Note note) {
     FragmentTransaction transaction = getFragmentManagerInstance().beginTransaction();
     animateTransition(transaction, TRANSITION_HORIZONTAL);
     DetailFragment mDetailFragment = new DetailFragment();
@@ -490,7 +502,15 @@ public class MainActivity extends BaseActivity implements
    * Notes sharing
    */
   public void shareNote(Note note) {
+    NotesHydrationTask.hydrate(Collections.singletonList(note), notes -> {
+      if (!isFinishing() && !isDestroyed()) {
+        shareHydratedNote(note);
+      }
+    });
+  }
+
 
+  private void shareHydratedNote(Note note) {
     String titleText = note.getTitle();
 
     String contentText = titleText
@@ -38,8 +38,8 @@ import it.feio.android.omninotes.async.bus.CategoriesUpdatedEvent;
 import it.feio.android.omninotes.async.bus.DynamicNavigationReadyEvent;
 import it.feio.android.omninotes.async.bus.NavigationUpdatedEvent;
 import it.feio.android.omninotes.async.bus.NavigationUpdatedNavDrawerClosedEvent;
+import it.feio.android.omninotes.async.bus.NotesChangedEvent;
 import it.feio.android.omninotes.async.bus.NotesLoadedEvent;
-import it.feio.android.omninotes.async.bus.NotesUpdatedEvent;
 import it.feio.android.omninotes.async.bus.SwitchFragmentEvent;
 import it.feio.android.omninotes.helpers.LogDelegate;
 import it.feio.android.omninotes.models.Category;
@@ -113,7 +113,7 @@ public class NavigationDrawerFragment extends Fragment {
   }
 
 
-  public void onEventAsync(NotesUpdatedEvent event) {
+  public void onEvent(NotesChangedEvent event) {
     alreadyInitialized = false;
   }
 
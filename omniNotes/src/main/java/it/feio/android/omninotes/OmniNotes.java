@@ -25,6 +25,7 @@ import static it.feio.android.omninotes.utils.ConstantsBase.PROPERTIES_PARAMS_SE
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.res.Configuration;
+import android.os.Build;
 import android.os.StrictMode;
 import androidx.multidex.MultiDexApplication;
 import it.feio.android.analitica.AnalyticsHelper;
@@ -32,6 +33,7 @@ import it.feio.android.analitica.AnalyticsHelperFactory;
 import it.feio.android.analitica.MockAnalyticsHelper;
 import it.feio.android.analitica.exceptions.AnalyticsInstantiationException;
 import it.feio.android.analitica.exceptions.InvalidIdentifierException;
+import it.feio.android.omninotes.async.DatabaseMaintenanceJobService;
 import it.feio.android.omninotes.helpers.LanguageHelper;
 import it.feio.android.omninotes.helpers.notifications.NotificationsHelper;
 //import org.acra.ACRA;
@@ -85,6 +87,10 @@ public class OmniNotes extends MultiDexApplication {
     enableStrictMode();
 
     new NotificationsHelper(this).initNotificationChannels();
+
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+      DatabaseMaintenanceJobService.schedule(this);
+    }
   }
 
   private void enableStrictMode() {
@@ -32,6 +32,7 @@ import static it.feio.android.omninotes.utils.ConstantsBase.PREF_OPENPGP_PROVIDE
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_OPENPGP_KEY;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_SHOW_UNCATEGORIZED;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_SLOW_QUERY_THRESHOLD;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_SNOOZE_DEFAULT;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_TOUR_COMPLETE;
 import static java.util.Arrays.asList;
@@ -71,6 +72,8 @@ import com.afollestad.materialdialogs.folderselector.FolderChooserDialog;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import it.feio.android.analitica.AnalyticsHelper;
 import it.feio.android.omninotes.async.DataBackupIntentService;
+import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.db.QueryProfiler;
 import it.feio.android.omninotes.helpers.AppVersionHelper;
 import it.feio.android.omninotes.helpers.BackupHelper;
 import it.feio.android.omninotes.helpers.LanguageHelper;
@@ -89,10 +92,12 @@ import it.feio.android.omninotes.utils.SystemHelper;
 import it.feio.android.omninotes.widget.LongClickableSwitchPreference;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.openintents.openpgp.IOpenPgpService2;
 import org.openintents.openpgp.OpenPgpError;
 import org.openintents.openpgp.util.OpenPgpApi;
@@ -626,8 +631,8 @@ public class SettingsFragment extends PreferenceFragmentCompat {
             .positiveText(R.string.confirm)
             .onPositive((dialog, which) -> {
               prefs.edit().clear().apply();
-              File db = getActivity().getDatabasePath(DATABASE_NAME);
-              StorageHelper.delete(getActivity(), db.getAbsolutePath());
+              DbHelper.getInstance().close();
+              getActivity().deleteDatabase(DATABASE_NAME);
               File attachmentsDir = StorageHelper.getAttachmentDir();
               StorageHelper.delete(getActivity(), attachmentsDir.getAbsolutePath());
               File cacheDir = StorageHelper.getCacheDir(getActivity());
@@ -774,6 +779,35 @@ public class SettingsFragment extends PreferenceFragmentCompat {
       });
     }
 
+    // Threshold over which database operations are logged
+    final EditTextPreference slowQueryThreshold = findPreference(PREF_SLOW_QUERY_THRESHOLD);
+    if (slowQueryThreshold != null) {
+      slowQueryThreshold.setSummary(getString(R.string.settings_slow_query_threshold_summary)
+          + ": " + prefs.getString(PREF_SLOW_QUERY_THRESHOLD,
+          String.valueOf(QueryProfiler.DEFAULT_SLOW_QUERY_THRESHOLD)));
+      slowQueryThreshold.setOnPreferenceChangeListener((preference, newValue) -> {
+        long threshold = NumberUtils.toLong(newValue.toString(),
+            QueryProfiler.DEFAULT_SLOW_QUERY_THRESHOLD);
+        slowQueryThreshold
+            .setSummary(getString(R.string.settings_slow_query_threshold_summary) + ": " + threshold);
+        prefs.edit().putString(PREF_SLOW_QUERY_THRESHOLD, String.valueOf(threshold)).apply();
+        DbHelper.getInstance().getQueryProfiler().setSlowQueryThreshold(threshold);
+        return false;
+      });
+    }
+
+    // Database operations report
+    Preference databaseReport = findPreference("settings_export_database_report");
+    if (databaseReport != null) {
+      databaseReport.setOnPreferenceClickListener(preference -> {
+        PermissionsHelper
+            .requestPermission(getActivity(), Manifest.permission.WRITE_EXTERNAL_STORAGE, R
+                    .string.permission_external_storage,
+                getActivity().findViewById(R.id.crouton_handle), this::exportDatabaseReport);
+        return false;
+      });
+    }
+
     // Instructions
     Preference instructions = findPreference("settings_tour_show_again");
     if (instructions != null) {
@@ -818,6 +852,25 @@ public class SettingsFragment extends PreferenceFragmentCompat {
   */
 
 
+  /**
+   * Saves database operations report beside log files
+   */
+  private void exportDatabaseReport() {
+    File logsDir = new File(StorageHelper.getOrCreateExternalStoragePublicDir(), "logs");
+    try {
+      if (!logsDir.exists() && !logsDir.mkdirs()) {
+        throw new IOException("Can't create folder " + logsDir.getAbsolutePath());
+      }
+      File report = DbHelper.getInstance().getQueryProfiler().exportReport(logsDir);
+      ((SettingsActivity) getActivity()).showMessage(getString(R.string.database_report_exported)
+          + " " + report.getAbsolutePath(), ONStyle.CONFIRM);
+    } catch (IOException e) {
+      LogDelegate.e("Error exporting database report", e);
+      ((SettingsActivity) getActivity()).showMessage(R.string.error, ONStyle.ALERT);
+    }
+  }
+
+
   private void importNotes() {
     String[] backupsArray = StorageHelper.getOrCreateExternalStoragePublicDir().list();
 
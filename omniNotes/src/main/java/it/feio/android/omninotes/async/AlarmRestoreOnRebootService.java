@@ -28,6 +28,7 @@ import it.feio.android.omninotes.db.DbHelper;
 import it.feio.android.omninotes.helpers.LogDelegate;
 import it.feio.android.omninotes.models.Note;
 import it.feio.android.omninotes.utils.ReminderHelper;
+import java.util.Calendar;
 import java.util.List;
 
 /**
@@ -53,7 +54,9 @@ public class AlarmRestoreOnRebootService extends JobIntentService {
 
     BaseActivity.notifyAppWidgets(mContext);
 
-    List<Note> notes = DbHelper.getInstance().getNotesWithReminderNotFired();
+    // Past reminders would not be scheduled anyway
+    List<Note> notes = DbHelper.getInstance()
+        .getUpcomingReminders(Calendar.getInstance().getTimeInMillis(), Long.MAX_VALUE);
     LogDelegate.d("Found " + notes.size() + " reminders");
     for (Note note : notes) {
       ReminderHelper.addReminder(OmniNotes.getAppContext(), note);
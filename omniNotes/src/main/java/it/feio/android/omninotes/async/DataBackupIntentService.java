@@ -288,6 +288,7 @@ public class DataBackupIntentService extends IntentService implements OnAttachin
     } else {
       BackupHelper.importNotes(backupDir);
     }
+    DbHelper.getInstance().rebuildCategoryCounts();
 
     BackupHelper.importAttachments(backupDir, mNotificationsHelper);
 
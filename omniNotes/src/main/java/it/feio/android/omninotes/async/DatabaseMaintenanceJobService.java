@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.async;
+
+import static it.feio.android.omninotes.utils.ConstantsBase.DATABASE_NAME;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Build;
+import androidx.annotation.RequiresApi;
+import it.feio.android.omninotes.db.DatabaseMaintenance;
+import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.helpers.LogDelegate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link DatabaseMaintenance} once a day while the device is idle and charging
+ */
+@RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+public class DatabaseMaintenanceJobService extends JobService {
+
+  public static final int JOB_ID = 0x02;
+
+  /**
+   * Callers must check API level first, since this class can't even be loaded before Lollipop
+   */
+  public static void schedule(Context context) {
+    JobScheduler jobScheduler = (JobScheduler) context
+        .getSystemService(Context.JOB_SCHEDULER_SERVICE);
+    // Scheduling again would restart the period at every launch
+    for (JobInfo jobInfo : jobScheduler.getAllPendingJobs()) {
+      if (jobInfo.getId() == JOB_ID) {
+        return;
+      }
+    }
+    jobScheduler.schedule(new JobInfo.Builder(JOB_ID,
+        new ComponentName(context, DatabaseMaintenanceJobService.class))
+        .setRequiresDeviceIdle(true)
+        .setRequiresCharging(true)
+        .setPeriodic(TimeUnit.DAYS.toMillis(1))
+        .setPersisted(true)
+        .build());
+  }
+
+  @Override
+  public boolean onStartJob(JobParameters params) {
+    AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+      try {
+        new DatabaseMaintenance(DbHelper.getInstance(), getDatabasePath(DATABASE_NAME)).run();
+      } catch (RuntimeException e) {
+        LogDelegate.e("Database maintenance failed", e);
+      }
+      jobFinished(params, false);
+    });
+    return true;
+  }
+
+  @Override
+  public boolean onStopJob(JobParameters params) {
+    // Running statements can't be interrupted, whatever is left is done at next period
+    return false;
+  }
+
+}
@@ -19,10 +19,13 @@ package it.feio.android.omninotes.async;
 
 import android.content.Context;
 import android.os.AsyncTask;
-import de.greenrobot.event.EventBus;
 import it.feio.android.omninotes.BaseActivity;
-import it.feio.android.omninotes.async.bus.NotesUpdatedEvent;
 
+
+/**
+ * Refreshes app widgets after something else than notes changed, like sorting. Notes changes are
+ * applied by widgets themselves when they're published.
+ */
 public class UpdateWidgetsTask extends AsyncTask<Void, Void, Void> {
 
   private Context context;
@@ -33,19 +36,7 @@ public class UpdateWidgetsTask extends AsyncTask<Void, Void, Void> {
 
   @Override
   protected Void doInBackground(Void... params) {
-    WidgetUpdateSubscriber widgetUpdateSubscriber = new WidgetUpdateSubscriber();
+    BaseActivity.notifyAppWidgets(context);
     return null;
   }
-
-  class WidgetUpdateSubscriber {
-
-    WidgetUpdateSubscriber() {
-      EventBus.getDefault().register(this);
-    }
-
-    public void onEvent(NotesUpdatedEvent event) {
-      BaseActivity.notifyAppWidgets(context);
-      EventBus.getDefault().unregister(this);
-    }
-  }
 }
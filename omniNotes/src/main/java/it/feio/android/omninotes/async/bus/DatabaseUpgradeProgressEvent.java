@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.async.bus;
+
+import it.feio.android.omninotes.helpers.LogDelegate;
+import lombok.Getter;
+
+
+public class DatabaseUpgradeProgressEvent {
+
+  @Getter
+  private final int version;
+  @Getter
+  private final long processedNotes;
+  @Getter
+  private final long totalNotes;
+
+
+  public DatabaseUpgradeProgressEvent(int version, long processedNotes, long totalNotes) {
+    LogDelegate.d(this.getClass().getName());
+    this.version = version;
+    this.processedNotes = processedNotes;
+    this.totalNotes = totalNotes;
+  }
+
+
+  public boolean isCompleted() {
+    return processedNotes >= totalNotes;
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.async.bus;
+
+import it.feio.android.omninotes.helpers.LogDelegate;
+import it.feio.android.omninotes.models.NoteChange;
+import java.util.List;
+import lombok.Getter;
+
+
+/**
+ * Posted by {@link it.feio.android.omninotes.db.DbHelper} with the changes of each committed
+ * notes write
+ */
+public class NotesChangedEvent {
+
+  @Getter
+  private final List<NoteChange> changes;
+
+
+  public NotesChangedEvent(List<NoteChange> changes) {
+    LogDelegate.d(this.getClass().getName());
+    this.changes = changes;
+  }
+}
@@ -18,21 +18,18 @@
 package it.feio.android.omninotes.async.bus;
 
 import it.feio.android.omninotes.helpers.LogDelegate;
-import it.feio.android.omninotes.models.Note;
-import java.util.List;
+import it.feio.android.omninotes.models.NotesPage;
 import lombok.Getter;
-import lombok.Setter;
 
 
-public class NotesUpdatedEvent {
+public class NotesPageLoadedEvent {
 
   @Getter
-  @Setter
-  private List<Note> notes;
+  private final NotesPage notesPage;
 
-
-  public NotesUpdatedEvent(List<Note> notes) {
+  public NotesPageLoadedEvent(NotesPage notesPage) {
     LogDelegate.d(this.getClass().getName());
-    this.notes = notes;
+    this.notesPage = notesPage;
   }
+
 }
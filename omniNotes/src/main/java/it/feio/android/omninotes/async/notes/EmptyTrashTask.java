@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.async.notes;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.AsyncTask;
+import it.feio.android.omninotes.OmniNotes;
+import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.helpers.LogDelegate;
+import it.feio.android.omninotes.models.listeners.OnTrashEmptiedListener;
+import it.feio.android.omninotes.utils.StorageHelper;
+import java.io.File;
+import java.util.SortedMap;
+
+
+/**
+ * Permanently deletes all trashed notes with a single database transaction, then removes their
+ * attachments files in batches reporting progress. Files left by an interrupted run are removed by
+ * the next one.
+ */
+public class EmptyTrashTask extends AsyncTask<Void, Integer, Void> {
+
+  private static final int ATTACHMENTS_DELETION_BATCH_SIZE = 50;
+
+  private final Context context;
+  private final OnTrashEmptiedListener mOnTrashEmptiedListener;
+
+
+  public EmptyTrashTask(OnTrashEmptiedListener mOnTrashEmptiedListener) {
+    super();
+    this.context = OmniNotes.getAppContext();
+    this.mOnTrashEmptiedListener = mOnTrashEmptiedListener;
+  }
+
+
+  @Override
+  protected Void doInBackground(Void... params) {
+    DbHelper dbHelper = DbHelper.getInstance();
+    long total = dbHelper.emptyTrash();
+    if (total == 0) {
+      return null;
+    }
+    if (!StorageHelper.checkStorage()) {
+      LogDelegate.w("Storage not available, " + total
+          + " trashed attachments files will be deleted next time");
+      return null;
+    }
+
+    // Files are taken from database in batches, whatever their number is
+    File attachmentsDir = context.getExternalFilesDir(null);
+    int deleted = 0;
+    SortedMap<Long, String> batch = dbHelper.getDeletedAttachments(0,
+        ATTACHMENTS_DELETION_BATCH_SIZE);
+    while (!batch.isEmpty()) {
+      for (String uri : batch.values()) {
+        String name = Uri.parse(uri).getLastPathSegment();
+        if (name != null && !new File(attachmentsDir, name).delete()) {
+          LogDelegate.w("Trashed attachment file not deleted: " + name);
+        }
+      }
+      dbHelper.removeDeletedAttachments(batch.lastKey());
+      deleted += batch.size();
+      publishProgress(deleted, (int) total);
+      batch = dbHelper.getDeletedAttachments(batch.lastKey(), ATTACHMENTS_DELETION_BATCH_SIZE);
+    }
+    return null;
+  }
+
+
+  @Override
+  protected void onProgressUpdate(Integer... values) {
+    if (mOnTrashEmptiedListener != null) {
+      mOnTrashEmptiedListener.onAttachmentsDeletionProgress(values[0], values[1]);
+    }
+  }
+
+
+  @Override
+  protected void onPostExecute(Void result) {
+    if (mOnTrashEmptiedListener != null) {
+      mOnTrashEmptiedListener.onTrashEmptied();
+    }
+  }
+}
@@ -18,8 +18,6 @@
 package it.feio.android.omninotes.async.notes;
 
 import android.os.AsyncTask;
-import de.greenrobot.event.EventBus;
-import it.feio.android.omninotes.async.bus.NotesUpdatedEvent;
 import it.feio.android.omninotes.models.Note;
 import java.util.ArrayList;
 import java.util.List;
@@ -41,7 +39,10 @@ public abstract class NoteProcessor {
   }
 
 
-  protected abstract void processNote(Note note);
+  /**
+   * Processes all the notes at once, allowing to use bulk database operations
+   */
+  protected abstract void processNotes(List<Note> notes);
 
 
   class NotesProcessorTask extends AsyncTask<List<Note>, Void, List<Note>> {
@@ -49,9 +50,7 @@ public abstract class NoteProcessor {
     @Override
     protected List<Note> doInBackground(List<Note>... params) {
       List<Note> processableNote = params[0];
-      for (Note note : processableNote) {
-        processNote(note);
-      }
+      processNotes(processableNote);
       return processableNote;
     }
 
@@ -63,7 +62,10 @@ public abstract class NoteProcessor {
   }
 
 
+  /**
+   * Run on main thread once notes are processed, changes are already published by {@link
+   * it.feio.android.omninotes.db.DbHelper}
+   */
   protected void afterProcess(List<Note> notes) {
-    EventBus.getDefault().post(new NotesUpdatedEvent(notes));
   }
 }
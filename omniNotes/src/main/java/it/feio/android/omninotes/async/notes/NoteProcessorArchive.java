@@ -34,7 +34,7 @@ public class NoteProcessorArchive extends NoteProcessor {
 
 
   @Override
-  protected void processNote(Note note) {
-    DbHelper.getInstance().archiveNote(note, archive);
+  protected void processNotes(List<Note> notes) {
+    DbHelper.getInstance().archiveNotes(notes, archive);
   }
 }
@@ -35,8 +35,7 @@ public class NoteProcessorCategorize extends NoteProcessor {
 
 
   @Override
-  protected void processNote(Note note) {
-    note.setCategory(category);
-    DbHelper.getInstance().updateNote(note, false);
+  protected void processNotes(List<Note> notes) {
+    DbHelper.getInstance().categorizeNotes(notes, category);
   }
 }
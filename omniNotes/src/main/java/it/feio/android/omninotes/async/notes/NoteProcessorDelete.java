@@ -45,13 +45,19 @@ public class NoteProcessorDelete extends NoteProcessor {
 
 
   @Override
-  protected void processNote(Note note) {
-    DbHelper db = DbHelper.getInstance();
-    if (db.deleteNote(note) && !keepAttachments) {
-      for (Attachment mAttachment : note.getAttachmentsList()) {
-        StorageHelper
-            .deleteExternalStoragePrivateFile(OmniNotes.getAppContext(), mAttachment.getUri()
-                .getLastPathSegment());
+  protected void processNotes(List<Note> notes) {
+    if (!keepAttachments) {
+      // All the attachments are needed to delete their files
+      DbHelper.getInstance().hydrateNotes(notes);
+    }
+    DbHelper.getInstance().deleteNotes(notes, keepAttachments);
+    if (!keepAttachments) {
+      for (Note note : notes) {
+        for (Attachment mAttachment : note.getAttachmentsList()) {
+          StorageHelper
+              .deleteExternalStoragePrivateFile(OmniNotes.getAppContext(), mAttachment.getUri()
+                  .getLastPathSegment());
+        }
       }
     }
   }
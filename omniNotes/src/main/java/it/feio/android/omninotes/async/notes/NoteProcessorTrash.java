@@ -37,13 +37,15 @@ public class NoteProcessorTrash extends NoteProcessor {
 
 
   @Override
-  protected void processNote(Note note) {
-    if (trash) {
-      ShortcutHelper.removeShortcut(OmniNotes.getAppContext(), note);
-      ReminderHelper.removeReminder(OmniNotes.getAppContext(), note);
-    } else {
-      ReminderHelper.addReminder(OmniNotes.getAppContext(), note);
+  protected void processNotes(List<Note> notes) {
+    for (Note note : notes) {
+      if (trash) {
+        ShortcutHelper.removeShortcut(OmniNotes.getAppContext(), note);
+        ReminderHelper.removeReminder(OmniNotes.getAppContext(), note);
+      } else {
+        ReminderHelper.addReminder(OmniNotes.getAppContext(), note);
+      }
     }
-    DbHelper.getInstance().trashNote(note, trash);
+    DbHelper.getInstance().trashNotes(notes, trash);
   }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.async.notes;
+
+import android.os.AsyncTask;
+import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.models.listeners.OnNotesHydratedListener;
+import java.util.List;
+
+
+/**
+ * Completes notes retrieved for list rendering with their full content and attachments out of the
+ * main thread, handing them back to the listener there once they can be edited, shared or saved.
+ */
+public class NotesHydrationTask extends AsyncTask<Void, Void, List<Note>> {
+
+  private final List<Note> notes;
+  private final OnNotesHydratedListener mOnNotesHydratedListener;
+
+
+  private NotesHydrationTask(List<Note> notes, OnNotesHydratedListener mOnNotesHydratedListener) {
+    super();
+    this.notes = notes;
+    this.mOnNotesHydratedListener = mOnNotesHydratedListener;
+  }
+
+
+  /**
+   * Hydrates the notes in background, the listener is called right away when all of them are
+   * already complete
+   */
+  public static void hydrate(List<Note> notes, OnNotesHydratedListener mOnNotesHydratedListener) {
+    for (Note note : notes) {
+      if (note.isPartial()) {
+        new NotesHydrationTask(notes, mOnNotesHydratedListener)
+            .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        return;
+      }
+    }
+    mOnNotesHydratedListener.onNotesHydrated(notes);
+  }
+
+
+  @Override
+  protected List<Note> doInBackground(Void... params) {
+    DbHelper.getInstance().hydrateNotes(notes);
+    return notes;
+  }
+
+
+  @Override
+  protected void onPostExecute(List<Note> hydratedNotes) {
+    mOnNotesHydratedListener.onNotesHydrated(hydratedNotes);
+  }
+}
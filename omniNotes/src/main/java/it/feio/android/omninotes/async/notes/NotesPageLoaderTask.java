@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.async.notes;
+
+import android.os.AsyncTask;
+import de.greenrobot.event.EventBus;
+import it.feio.android.omninotes.async.bus.NotesPageLoadedEvent;
+import it.feio.android.omninotes.db.NotesRepository;
+import it.feio.android.omninotes.models.NotesPage;
+
+
+/**
+ * Loads notes of the current navigation one page at time. When no previous page is given the first
+ * one is retrieved, otherwise the one following it.
+ */
+public class NotesPageLoaderTask extends AsyncTask<Void, Void, NotesPage> {
+
+  private final NotesPage previousPage;
+  private final int pageSize;
+
+
+  public NotesPageLoaderTask(NotesPage previousPage, int pageSize) {
+    this.previousPage = previousPage;
+    this.pageSize = pageSize;
+  }
+
+
+  @Override
+  protected NotesPage doInBackground(Void... params) {
+    NotesRepository repository = NotesRepository.getInstance();
+    return previousPage == null
+        ? repository.getAllNotesPage(pageSize)
+        : repository.getNextNotesPage(previousPage, pageSize);
+  }
+
+
+  @Override
+  protected void onPostExecute(NotesPage notesPage) {
+    super.onPostExecute(notesPage);
+    EventBus.getDefault().post(new NotesPageLoadedEvent(notesPage));
+  }
+}
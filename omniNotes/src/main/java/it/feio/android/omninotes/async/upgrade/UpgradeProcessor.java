@@ -24,10 +24,16 @@ import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_IMAGE;
 import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_VIDEO;
 
 import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import android.text.TextUtils;
+import de.greenrobot.event.EventBus;
 import it.feio.android.omninotes.OmniNotes;
+import it.feio.android.omninotes.async.bus.DatabaseUpgradeProgressEvent;
 import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.db.NotesRepository;
 import it.feio.android.omninotes.helpers.LogDelegate;
 import it.feio.android.omninotes.models.Attachment;
 import it.feio.android.omninotes.models.Note;
@@ -37,7 +43,11 @@ import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.apache.commons.io.FilenameUtils;
 
 
@@ -49,6 +59,10 @@ import org.apache.commons.io.FilenameUtils;
 public class UpgradeProcessor {
 
   private final static String METHODS_PREFIX = "onUpgradeTo";
+  private final static String AFTER_SCHEMA_METHODS_PREFIX = "afterUpgradeTo";
+  private final static String BACKGROUND_METHODS_PREFIX = "backgroundUpgradeTo";
+  // Notes processed by each transaction of background upgrades
+  private final static int BATCH_SIZE = 200;
 
   private static UpgradeProcessor instance;
 
@@ -65,10 +79,109 @@ public class UpgradeProcessor {
   }
 
 
+  /**
+   * Runs processing methods needed before database schema is upgraded
+   */
   public static void process(int dbOldVersion, int dbNewVersion)
       throws InvocationTargetException, IllegalAccessException {
+    process(METHODS_PREFIX, dbOldVersion, dbNewVersion);
+  }
+
+
+  /**
+   * Runs processing methods that need the database schema to be already upgraded, like filling
+   * newly created tables
+   */
+  public static void processAfterSchemaUpgrade(int dbOldVersion, int dbNewVersion)
+      throws InvocationTargetException, IllegalAccessException {
+    process(AFTER_SCHEMA_METHODS_PREFIX, dbOldVersion + 1, dbNewVersion);
+  }
+
+
+  /**
+   * Registers the data upgrades to be run in background by {@link #processInBackground()}. Being
+   * called into the schema upgrade transaction they're not lost if the process dies before
+   * running them.
+   */
+  public static void scheduleBackgroundUpgrades(int dbOldVersion, int dbNewVersion) {
+    for (Method method : getInstance()
+        .getMethodsToLaunch(BACKGROUND_METHODS_PREFIX, dbOldVersion + 1, dbNewVersion)) {
+      DbHelper.getInstance().addPendingUpgrade(getMethodVersion(method, BACKGROUND_METHODS_PREFIX));
+    }
+  }
+
+
+  /**
+   * Runs pending data upgrades by batches of notes, each one committed together with the upgrade
+   * checkpoint so that an interrupted upgrade is resumed from the last committed batch. Notes
+   * changed meanwhile by the user are consistent anyway since they're saved with all their derived
+   * data.
+   */
+  public static synchronized void processInBackground() {
+    DbHelper dbHelper = DbHelper.getInstance();
+    long totalNotes = dbHelper.getNotesCountAfter(Long.MIN_VALUE);
+    for (Map.Entry<Integer, Long> pendingUpgrade : dbHelper.getPendingUpgrades().entrySet()) {
+      int version = pendingUpgrade.getKey();
+      try {
+        Method method = getInstance().getClass()
+            .getDeclaredMethod(BACKGROUND_METHODS_PREFIX + version, long.class, int.class);
+        LogDelegate.d("Running background upgrade processing method: " + method.getName());
+        long checkpoint = pendingUpgrade.getValue();
+        boolean completed;
+        do {
+          long lastProcessed = processBatch(method, version, checkpoint);
+          completed = lastProcessed == checkpoint;
+          checkpoint = lastProcessed;
+          if (completed) {
+            // Features depending on upgraded data stop computing it once completion is committed
+            dbHelper.reloadPendingUpgrades();
+          }
+          long processedNotes = completed ? totalNotes
+              : totalNotes - dbHelper.getNotesCountAfter(checkpoint);
+          EventBus.getDefault()
+              .post(new DatabaseUpgradeProgressEvent(version, processedNotes, totalNotes));
+        } while (!completed);
+        LogDelegate.i("Background upgrade to version " + version + " completed");
+      } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+        // Left pending to be retried next time database is opened
+        LogDelegate.e("Explosion processing background upgrade to version " + version, e);
+        return;
+      }
+    }
+    // Notes were changed without notifying listeners, so cached pages may have a stale order
+    NotesRepository.getInstance().clear();
+  }
+
+
+  /**
+   * @return Identifier of the last note processed by the batch, the checkpoint itself when the
+   * upgrade is completed
+   */
+  private static long processBatch(Method method, int version, long checkpoint)
+      throws InvocationTargetException, IllegalAccessException {
+    DbHelper dbHelper = DbHelper.getInstance();
+    SQLiteDatabase db = dbHelper.getDatabase(true);
+    db.beginTransactionNonExclusive();
+    try {
+      long lastProcessed = (long) method.invoke(getInstance(), checkpoint, BATCH_SIZE);
+      if (lastProcessed == checkpoint) {
+        dbHelper.removePendingUpgrade(version);
+      } else {
+        dbHelper.setPendingUpgradeCheckpoint(version, lastProcessed);
+      }
+      db.setTransactionSuccessful();
+      return lastProcessed;
+    } finally {
+      db.endTransaction();
+    }
+  }
+
+
+  private static void process(String methodsPrefix, int dbOldVersion, int dbNewVersion)
+      throws InvocationTargetException, IllegalAccessException {
     try {
-      List<Method> methodsToLaunch = getInstance().getMethodsToLaunch(dbOldVersion, dbNewVersion);
+      List<Method> methodsToLaunch = getInstance()
+          .getMethodsToLaunch(methodsPrefix, dbOldVersion, dbNewVersion);
       for (Method methodToLaunch : methodsToLaunch) {
         LogDelegate.d("Running upgrade processing method: " + methodToLaunch.getName());
         methodToLaunch.invoke(getInstance());
@@ -80,88 +193,117 @@ public class UpgradeProcessor {
   }
 
 
-  private List<Method> getMethodsToLaunch(int dbOldVersion, int dbNewVersion) {
+  private List<Method> getMethodsToLaunch(String methodsPrefix, int dbOldVersion,
+      int dbNewVersion) {
     List<Method> methodsToLaunch = new ArrayList<>();
     Method[] declaredMethods = getInstance().getClass().getDeclaredMethods();
     for (Method declaredMethod : declaredMethods) {
-      if (declaredMethod.getName().contains(METHODS_PREFIX)) {
-        int methodVersionPostfix = Integer
-            .parseInt(declaredMethod.getName().replace(METHODS_PREFIX, ""));
+      if (declaredMethod.getName().startsWith(methodsPrefix)) {
+        int methodVersionPostfix = getMethodVersion(declaredMethod, methodsPrefix);
         if (dbOldVersion <= methodVersionPostfix && methodVersionPostfix <= dbNewVersion) {
           methodsToLaunch.add(declaredMethod);
         }
       }
     }
+    // Declared methods are not returned in any particular order
+    Collections.sort(methodsToLaunch, (method1, method2) ->
+        getMethodVersion(method1, methodsPrefix) - getMethodVersion(method2, methodsPrefix));
     return methodsToLaunch;
   }
 
 
+  private static int getMethodVersion(Method method, String methodsPrefix) {
+    return Integer.parseInt(method.getName().replace(methodsPrefix, ""));
+  }
+
+
   /**
-   * Adjustment of all the old attachments without mimetype field set into DB
+   * Adjustment of all the old attachments without mimetype field set into DB, by batches of the
+   * notes they belong to
    */
-  private void onUpgradeTo476() {
+  private long backgroundUpgradeTo476(long afterId, int limit) {
     final DbHelper dbHelper = DbHelper.getInstance();
-    for (Attachment attachment : dbHelper.getAllAttachments()) {
-      if (attachment.getMime_type() == null) {
+    long lastId = dbHelper.getNotesBatchLastId(afterId, limit);
+    SQLiteStatement statement = dbHelper.getDatabase(true).compileStatement(
+        "UPDATE " + DbHelper.TABLE_ATTACHMENTS + " SET " + DbHelper.KEY_ATTACHMENT_MIME_TYPE
+            + " = ? WHERE " + DbHelper.KEY_ATTACHMENT_ID + " = ?");
+    try {
+      for (Attachment attachment : dbHelper.getAttachments(getNotesBatchCondition(afterId, lastId)
+          + " AND " + DbHelper.KEY_ATTACHMENT_MIME_TYPE + " IS NULL")) {
         String mimeType = StorageHelper.getMimeType(attachment.getUri().toString());
-        if (!TextUtils.isEmpty(mimeType)) {
-          String type = mimeType.replaceFirst("/.*", "");
-          switch (type) {
-            case "image":
-              attachment.setMime_type(MIME_TYPE_IMAGE);
-              break;
-            case "video":
-              attachment.setMime_type(MIME_TYPE_VIDEO);
-              break;
-            case "audio":
-              attachment.setMime_type(MIME_TYPE_AUDIO);
-              break;
-            default:
-              attachment.setMime_type(MIME_TYPE_FILES);
-              break;
-          }
-          dbHelper.updateAttachment(attachment);
-        } else {
-          attachment.setMime_type(MIME_TYPE_FILES);
+        String type = TextUtils.isEmpty(mimeType) ? "" : mimeType.replaceFirst("/.*", "");
+        switch (type) {
+          case "image":
+            attachment.setMime_type(MIME_TYPE_IMAGE);
+            break;
+          case "video":
+            attachment.setMime_type(MIME_TYPE_VIDEO);
+            break;
+          case "audio":
+            attachment.setMime_type(MIME_TYPE_AUDIO);
+            break;
+          default:
+            attachment.setMime_type(MIME_TYPE_FILES);
+            break;
         }
+        statement.bindString(1, attachment.getMime_type());
+        statement.bindLong(2, attachment.getId());
+        statement.executeUpdateDelete();
       }
+    } finally {
+      statement.close();
     }
+    return lastId;
   }
 
 
   /**
-   * Upgrades all the old audio attachments to the new format 3gpp to avoid mixing with videos
+   * Upgrades all the old audio attachments to the new format 3gpp to avoid mixing with videos, by
+   * batches of the notes they belong to
    */
-  private void onUpgradeTo480() {
+  private long backgroundUpgradeTo480(long afterId, int limit) {
     final DbHelper dbHelper = DbHelper.getInstance();
-    for (Attachment attachment : dbHelper.getAllAttachments()) {
-      if ("audio/3gp".equals(attachment.getMime_type()) || "audio/3gpp"
-          .equals(attachment.getMime_type
-              ())) {
-
+    long lastId = dbHelper.getNotesBatchLastId(afterId, limit);
+    SQLiteStatement statement = dbHelper.getDatabase(true).compileStatement(
+        "UPDATE " + DbHelper.TABLE_ATTACHMENTS + " SET " + DbHelper.KEY_ATTACHMENT_URI + " = ?, "
+            + DbHelper.KEY_ATTACHMENT_MIME_TYPE + " = ? WHERE " + DbHelper.KEY_ATTACHMENT_ID
+            + " = ?");
+    try {
+      for (Attachment attachment : dbHelper.getAttachments(getNotesBatchCondition(afterId, lastId)
+          + " AND " + DbHelper.KEY_ATTACHMENT_MIME_TYPE + " IN ('audio/3gp', 'audio/3gpp')")) {
         File from = new File(attachment.getUriPath());
-        FilenameUtils.getExtension(from.getName());
         File to = new File(from.getParent(), from.getName().replace(FilenameUtils.getExtension(from
             .getName()), MIME_TYPE_AUDIO_EXT));
-        boolean successRenaming = from.renameTo(to);
-
-        if (successRenaming) {
-          attachment.setUri(Uri.fromFile(to));
-          attachment.setMime_type(MIME_TYPE_AUDIO);
-          dbHelper.updateAttachment(attachment);
+        if (from.renameTo(to)) {
+          statement.bindString(1, Uri.fromFile(to).toString());
+          statement.bindString(2, MIME_TYPE_AUDIO);
+          statement.bindLong(3, attachment.getId());
+          statement.executeUpdateDelete();
         } else {
-          LogDelegate.e("onUpgradeTo480 - Error renaming attachment: " + attachment.getName());
+          LogDelegate.e("backgroundUpgradeTo480 - Error renaming attachment: "
+              + attachment.getName());
         }
-
       }
+    } finally {
+      statement.close();
     }
+    return lastId;
+  }
+
+
+  /**
+   * Attachments of the notes following afterId up to lastId included
+   */
+  private static String getNotesBatchCondition(long afterId, long lastId) {
+    return " WHERE " + DbHelper.KEY_ATTACHMENT_NOTE_ID + " > " + afterId
+        + " AND " + DbHelper.KEY_ATTACHMENT_NOTE_ID + " <= " + lastId;
   }
 
 
   /**
-   * Reschedule reminders after upgrade
+   * Reschedule reminders after upgrade, once the schema has the fired reminder flag
    */
-  private void onUpgradeTo482() {
+  private void afterUpgradeTo482() {
     for (Note note : DbHelper.getInstance().getNotesWithReminderNotFired()) {
       ReminderHelper.addReminder(OmniNotes.getAppContext(), note);
     }
@@ -172,20 +314,47 @@ public class UpgradeProcessor {
    * Ensures that no duplicates will be found during the creation-to-ID transition
    */
   private void onUpgradeTo501() {
-    List<Long> creations = new ArrayList<>();
-    for (Note note : DbHelper.getInstance().getAllNotes(false)) {
-      if (creations.contains(note.getCreation())) {
-
-        ContentValues values = new ContentValues();
-        values.put(DbHelper.KEY_CREATION, note.getCreation() + (long) (Math.random() * 999));
-        DbHelper.getInstance().getDatabase()
-            .update(DbHelper.TABLE_NOTES, values, DbHelper.KEY_TITLE +
-                    " = ? AND " + DbHelper.KEY_CREATION + " = ? AND " + DbHelper.KEY_CONTENT + " = ?",
-                new String[]{note
-                    .getTitle(), String.valueOf(note.getCreation()), note.getContent()});
+    SQLiteDatabase db = DbHelper.getInstance().getDatabase(true);
+    Set<Long> creations = new HashSet<>();
+    try (Cursor cursor = db.rawQuery("SELECT rowid, " + DbHelper.KEY_CREATION + " FROM "
+        + DbHelper.TABLE_NOTES, null)) {
+      while (cursor.moveToNext()) {
+        long creation = cursor.getLong(1);
+        if (!creations.add(creation)) {
+          ContentValues values = new ContentValues();
+          values.put(DbHelper.KEY_CREATION, creation + (long) (Math.random() * 999));
+          db.update(DbHelper.TABLE_NOTES, values, "rowid = ?",
+              new String[]{String.valueOf(cursor.getLong(0))});
+        }
       }
-      creations.add(note.getCreation());
     }
   }
 
+
+  /**
+   * Fills the tags index table with tags of existing notes. Until it's completed tags are parsed
+   * from notes text.
+   */
+  private long backgroundUpgradeTo563(long afterId, int limit) {
+    return DbHelper.getInstance().rebuildNotesTags(afterId, limit);
+  }
+
+
+  /**
+   * Fills the text metrics table used by statistics. Until it's completed they're computed from
+   * notes text.
+   */
+  private long backgroundUpgradeTo564(long afterId, int limit) {
+    return DbHelper.getInstance().rebuildNotesMetrics(afterId, limit);
+  }
+
+
+  /**
+   * Fills the title sort keys, reminder ones are set by the schema upgrade. Until it's completed
+   * title keys are computed on the fly when sorting.
+   */
+  private long backgroundUpgradeTo565(long afterId, int limit) {
+    return DbHelper.getInstance().rebuildSortKeys(afterId, limit);
+  }
+
 }
@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.db;
+
+import android.database.Cursor;
+import android.net.Uri;
+import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.models.Category;
+import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.utils.Security;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+
+/**
+ * Notes list retrieved for list rendering that keeps rows columns into arrays instead of one
+ * {@link Note} object for each row.
+ * <p>
+ * Notes are created only when a position is accessed the first time and then kept, so the same
+ * instance is returned for a position (selections and in-place hydration rely on it). Insertions
+ * and removals are supported to let adapters update the list, inserted notes are simply stored as
+ * they are.
+ */
+final class CompactNotesList extends AbstractList<Note> implements RandomAccess {
+
+  private static final int NO_ROW = -1;
+
+  // Columns, indexed by row
+  private final long[] creations;
+  private final long[] lastModifications;
+  private final String[] titles;
+  private final String[] contents;
+  private final long[] alarms;
+  private final String[] recurrenceRules;
+  private final double[] latitudes;
+  private final double[] longitudes;
+  private final String[] addresses;
+  private final Category[] categories;
+  private final long[] attachmentIds;
+  private final String[] attachmentUris;
+  private final String[] attachmentMimeTypes;
+  private final int[] attachmentsCounts;
+  private final BitSet archived = new BitSet();
+  private final BitSet trashed = new BitSet();
+  private final BitSet withAlarm = new BitSet();
+  private final BitSet reminderFired = new BitSet();
+  private final BitSet locked = new BitSet();
+  private final BitSet checklist = new BitSet();
+  private final BitSet withAttachment = new BitSet();
+  private final int rowsCount;
+
+  // Positions, each pointing to a row or to a note inserted afterwards
+  private int size;
+  private int[] rows;
+  private Note[] notes;
+
+
+  /**
+   * @param cursor   Positioned before the first row, with the columns of {@link DbHelper} list
+   *                 projection
+   * @param password Used to decrypt content of locked notes
+   */
+  CompactNotesList(Cursor cursor, String password) {
+    int count = cursor.getCount();
+    creations = new long[count];
+    lastModifications = new long[count];
+    titles = new String[count];
+    contents = new String[count];
+    alarms = new long[count];
+    recurrenceRules = new String[count];
+    latitudes = new double[count];
+    longitudes = new double[count];
+    addresses = new String[count];
+    categories = new Category[count];
+    attachmentIds = new long[count];
+    attachmentUris = new String[count];
+    attachmentMimeTypes = new String[count];
+    attachmentsCounts = new int[count];
+    rows = new int[count];
+    notes = new Note[count];
+
+    Map<Long, Category> categoriesById = new HashMap<>();
+    int row = 0;
+    while (row < count && cursor.moveToNext()) {
+      int i = 0;
+      creations[row] = cursor.getLong(i++);
+      lastModifications[row] = cursor.getLong(i++);
+      titles[row] = cursor.getString(i++);
+      contents[row] = cursor.getString(i++);
+      archived.set(row, cursor.getInt(i++) == 1);
+      trashed.set(row, cursor.getInt(i++) == 1);
+      withAlarm.set(row, !cursor.isNull(i));
+      alarms[row] = cursor.getLong(i++);
+      reminderFired.set(row, cursor.getInt(i++) == 1);
+      recurrenceRules[row] = cursor.getString(i++);
+      latitudes[row] = cursor.getDouble(i++);
+      longitudes[row] = cursor.getDouble(i++);
+      addresses[row] = cursor.getString(i++);
+      locked.set(row, cursor.getInt(i++) == 1);
+      checklist.set(row, cursor.getInt(i++) == 1);
+
+      // Eventual decryption of content
+      if (locked.get(row)) {
+        contents[row] = Security.decrypt(contents[row], password);
+      }
+
+      // Notes of the same category share its instance
+      long categoryId = cursor.getLong(i++);
+      if (categoryId != 0) {
+        Category category = categoriesById.get(categoryId);
+        if (category == null) {
+          category = new Category(categoryId, cursor.getString(i), cursor.getString(i + 1),
+              cursor.getString(i + 2));
+          categoriesById.put(categoryId, category);
+        }
+        categories[row] = category;
+      }
+      i += 3;
+
+      withAttachment.set(row, !cursor.isNull(i));
+      attachmentIds[row] = cursor.getLong(i++);
+      attachmentUris[row] = cursor.getString(i++);
+      attachmentMimeTypes[row] = cursor.getString(i++);
+      attachmentsCounts[row] = cursor.getInt(i);
+
+      rows[row] = row;
+      row++;
+    }
+    size = row;
+    rowsCount = row;
+  }
+
+
+  /**
+   * List of the rows retrieved by source, ignoring its later changes, sharing its columns
+   *
+   * @param categories Categories column, it replaces the source one
+   */
+  private CompactNotesList(CompactNotesList source, Category[] categories) {
+    creations = source.creations;
+    lastModifications = source.lastModifications;
+    titles = source.titles;
+    contents = source.contents;
+    alarms = source.alarms;
+    recurrenceRules = source.recurrenceRules;
+    latitudes = source.latitudes;
+    longitudes = source.longitudes;
+    addresses = source.addresses;
+    this.categories = categories;
+    attachmentIds = source.attachmentIds;
+    attachmentUris = source.attachmentUris;
+    attachmentMimeTypes = source.attachmentMimeTypes;
+    attachmentsCounts = source.attachmentsCounts;
+    archived.or(source.archived);
+    trashed.or(source.trashed);
+    withAlarm.or(source.withAlarm);
+    reminderFired.or(source.reminderFired);
+    locked.or(source.locked);
+    checklist.or(source.checklist);
+    withAttachment.or(source.withAttachment);
+    rowsCount = source.rowsCount;
+    size = rowsCount;
+    rows = new int[rowsCount];
+    for (int row = 0; row < rowsCount; row++) {
+      rows[row] = row;
+    }
+    notes = new Note[rowsCount];
+  }
+
+
+  /**
+   * Copy of the list as it was retrieved, without notes inserted or removed afterwards. Notes are
+   * created again on access, so changes to the ones of this list don't affect the copy.
+   */
+  CompactNotesList copy() {
+    return new CompactNotesList(this, categories);
+  }
+
+
+  /**
+   * Copy of the list as it was retrieved, with new details of an updated category
+   */
+  CompactNotesList withCategory(Category category) {
+    Category[] updatedCategories = Arrays.copyOf(categories, categories.length);
+    Category updatedCategory = new Category(category);
+    for (int row = 0; row < rowsCount; row++) {
+      if (updatedCategories[row] != null
+          && category.getId().equals(updatedCategories[row].getId())) {
+        updatedCategories[row] = updatedCategory;
+      }
+    }
+    return new CompactNotesList(this, updatedCategories);
+  }
+
+
+  /**
+   * Identifier of the note at the position, without creating it
+   */
+  long getNoteId(int index) {
+    checkIndex(index, size);
+    return notes[index] != null ? notes[index].get_id() : creations[rows[index]];
+  }
+
+
+  @Override
+  public Note get(int index) {
+    checkIndex(index, size);
+    Note note = notes[index];
+    if (note == null) {
+      note = createNote(rows[index]);
+      notes[index] = note;
+    }
+    return note;
+  }
+
+
+  @Override
+  public Note set(int index, Note note) {
+    Note previous = get(index);
+    rows[index] = NO_ROW;
+    notes[index] = note;
+    return previous;
+  }
+
+
+  @Override
+  public void add(int index, Note note) {
+    checkIndex(index, size + 1);
+    if (size == rows.length) {
+      int capacity = Math.max(10, size + (size >> 1));
+      rows = Arrays.copyOf(rows, capacity);
+      notes = Arrays.copyOf(notes, capacity);
+    }
+    System.arraycopy(rows, index, rows, index + 1, size - index);
+    System.arraycopy(notes, index, notes, index + 1, size - index);
+    rows[index] = NO_ROW;
+    notes[index] = note;
+    size++;
+    modCount++;
+  }
+
+
+  @Override
+  public Note remove(int index) {
+    Note removed = get(index);
+    System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+    System.arraycopy(notes, index + 1, notes, index, size - index - 1);
+    size--;
+    notes[size] = null;
+    modCount++;
+    return removed;
+  }
+
+
+  /**
+   * Notes are compared only with positions having the same identifier, to avoid creating a note
+   * for each row while looking for one.
+   */
+  @Override
+  public int indexOf(Object o) {
+    if (!(o instanceof Note) || ((Note) o).get_id() == null) {
+      return super.indexOf(o);
+    }
+    long id = ((Note) o).get_id();
+    for (int i = 0; i < size; i++) {
+      if ((notes[i] != null || creations[rows[i]] == id) && o.equals(get(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+
+  @Override
+  public boolean remove(Object o) {
+    int index = indexOf(o);
+    if (index == -1) {
+      return false;
+    }
+    remove(index);
+    return true;
+  }
+
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+
+  private Note createNote(int row) {
+    Note note = new Note();
+    note.setCreation(creations[row]);
+    note.setLastModification(lastModifications[row]);
+    note.setTitle(titles[row]);
+    note.setContent(contents[row]);
+    note.setArchived(archived.get(row));
+    note.setTrashed(trashed.get(row));
+    note.setAlarm(withAlarm.get(row) ? String.valueOf(alarms[row]) : null);
+    note.setReminderFired(reminderFired.get(row) ? 1 : 0);
+    note.setRecurrenceRule(recurrenceRules[row]);
+    note.setLatitude(latitudes[row]);
+    note.setLongitude(longitudes[row]);
+    note.setAddress(addresses[row]);
+    note.setLocked(locked.get(row));
+    note.setChecklist(checklist.get(row));
+    if (categories[row] != null) {
+      note.setCategory(categories[row]);
+    }
+
+    ArrayList<Attachment> attachments = new ArrayList<>();
+    if (withAttachment.get(row)) {
+      attachments.add(new Attachment(attachmentIds[row], Uri.parse(attachmentUris[row]), null, 0,
+          0, attachmentMimeTypes[row]));
+    }
+    note.setAttachmentsList(attachments);
+    note.setAttachmentsCount(attachmentsCounts[row]);
+    note.setPartial(true);
+    return note;
+  }
+
+
+  private void checkIndex(int index, int bound) {
+    if (index < 0 || index >= bound) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.db;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Keeps compiled write statements to be reused instead of building and compiling them again on
+ * every execution.
+ * <p>
+ * A statement is owned by a single thread while it is bound and executed: concurrent executions of
+ * the same SQL compile an additional statement instead of waiting, so no lock is held while SQLite
+ * waits for the database connection.
+ */
+final class CompiledStatementsCache {
+
+  private final Map<String, Deque<SQLiteStatement>> idleStatements = new HashMap<>();
+  private final QueryProfiler profiler;
+  private SQLiteDatabase database;
+
+
+  /**
+   * @param profiler Records statements executions
+   */
+  CompiledStatementsCache(QueryProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+
+  long executeInsert(SQLiteDatabase db, String sql, Object... bindArgs) {
+    long start = System.nanoTime();
+    SQLiteStatement statement = acquire(db, sql);
+    try {
+      bind(statement, bindArgs);
+      long rowId = statement.executeInsert();
+      profiler.recordWrite(sql, start, rowId != -1 ? 1 : 0);
+      return rowId;
+    } finally {
+      release(db, sql, statement);
+    }
+  }
+
+
+  int executeUpdateDelete(SQLiteDatabase db, String sql, Object... bindArgs) {
+    long start = System.nanoTime();
+    SQLiteStatement statement = acquire(db, sql);
+    try {
+      bind(statement, bindArgs);
+      int changed = statement.executeUpdateDelete();
+      profiler.recordWrite(sql, start, changed);
+      return changed;
+    } finally {
+      release(db, sql, statement);
+    }
+  }
+
+
+  /**
+   * Closes all the cached statements
+   */
+  synchronized void clear() {
+    for (Deque<SQLiteStatement> statements : idleStatements.values()) {
+      for (SQLiteStatement statement : statements) {
+        statement.close();
+      }
+    }
+    idleStatements.clear();
+    database = null;
+  }
+
+
+  private SQLiteStatement acquire(SQLiteDatabase db, String sql) {
+    SQLiteStatement statement = pollIdle(db, sql);
+    // Compilation needs a database connection, so it must happen outside the lock
+    return statement != null ? statement : db.compileStatement(sql);
+  }
+
+
+  private synchronized SQLiteStatement pollIdle(SQLiteDatabase db, String sql) {
+    // Statements are bound to the database they've been compiled on
+    if (db != database) {
+      clear();
+      database = db;
+    }
+    Deque<SQLiteStatement> statements = idleStatements.get(sql);
+    return statements != null ? statements.poll() : null;
+  }
+
+
+  private synchronized void release(SQLiteDatabase db, String sql, SQLiteStatement statement) {
+    statement.clearBindings();
+    if (db != database || !db.isOpen()) {
+      statement.close();
+      return;
+    }
+    Deque<SQLiteStatement> statements = idleStatements.get(sql);
+    if (statements == null) {
+      statements = new ArrayDeque<>();
+      idleStatements.put(sql, statements);
+    }
+    statements.push(statement);
+  }
+
+
+  private void bind(SQLiteStatement statement, Object[] bindArgs) {
+    for (int i = 0; i < bindArgs.length; i++) {
+      DatabaseUtils.bindObjectToProgram(statement, i + 1, bindArgs[i]);
+    }
+  }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.db;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import it.feio.android.omninotes.helpers.LogDelegate;
+import java.io.File;
+import java.util.Locale;
+
+
+/**
+ * Keeps the database compact and its query plans up to date: refreshes planner statistics,
+ * returns free pages to the file system and truncates the write-ahead log. Meant to be run while
+ * the device is idle, since the first run on databases created before incremental auto-vacuum
+ * was enabled rewrites the whole file.
+ */
+public class DatabaseMaintenance {
+
+  private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+  private final DbHelper dbHelper;
+  private final File databaseFile;
+
+
+  public DatabaseMaintenance(DbHelper dbHelper, File databaseFile) {
+    this.dbHelper = dbHelper;
+    this.databaseFile = databaseFile;
+  }
+
+
+  /**
+   * @return Database metrics after maintenance
+   */
+  public Metrics run() {
+    SQLiteDatabase db = dbHelper.getDatabase(true);
+    Metrics before = getMetrics(db);
+    long start = System.currentTimeMillis();
+
+    dbHelper.rebuildCategoryCounts();
+
+    db.execSQL("ANALYZE");
+    // Ignored by SQLite versions older than 3.18
+    execPragma(db, "PRAGMA optimize");
+
+    if (longForPragma(db, "PRAGMA auto_vacuum") == AUTO_VACUUM_INCREMENTAL) {
+      execPragma(db, "PRAGMA incremental_vacuum");
+    } else {
+      convertToIncrementalVacuum(db);
+    }
+    execPragma(db, "PRAGMA wal_checkpoint(TRUNCATE)");
+
+    Metrics after = getMetrics(db);
+    LogDelegate.i("Database maintenance completed in " + (System.currentTimeMillis() - start)
+        + " ms, before: " + before + ", after: " + after);
+    return after;
+  }
+
+
+  /**
+   * Auto-vacuum mode of databases created before it was enabled changes only when they're rebuilt,
+   * so they're vacuumed once. That also releases all their free pages.
+   */
+  private void convertToIncrementalVacuum(SQLiteDatabase db) {
+    execPragma(db, "PRAGMA auto_vacuum = INCREMENTAL");
+    db.execSQL("VACUUM");
+    if (longForPragma(db, "PRAGMA auto_vacuum") == AUTO_VACUUM_INCREMENTAL) {
+      LogDelegate.i("Database converted to incremental auto-vacuum");
+    } else {
+      LogDelegate.w("Database conversion to incremental auto-vacuum failed");
+    }
+  }
+
+
+  Metrics getMetrics(SQLiteDatabase db) {
+    return new Metrics(longForPragma(db, "PRAGMA page_size"),
+        longForPragma(db, "PRAGMA page_count"), longForPragma(db, "PRAGMA freelist_count"),
+        databaseFile.length(), new File(databaseFile.getPath() + "-wal").length());
+  }
+
+
+  private long longForPragma(SQLiteDatabase db, String pragma) {
+    return DatabaseUtils.longForQuery(db, pragma, null);
+  }
+
+
+  /**
+   * Pragmas are run as queries since some of them return rows, and stepping through all of them
+   * is what makes them complete
+   */
+  private void execPragma(SQLiteDatabase db, String pragma) {
+    try (Cursor cursor = db.rawQuery(pragma, null)) {
+      cursor.getCount();
+    }
+  }
+
+
+  public static class Metrics {
+
+    private final long pageSize;
+    private final long pages;
+    private final long freePages;
+    private final long fileSize;
+    private final long walSize;
+
+
+    Metrics(long pageSize, long pages, long freePages, long fileSize, long walSize) {
+      this.pageSize = pageSize;
+      this.pages = pages;
+      this.freePages = freePages;
+      this.fileSize = fileSize;
+      this.walSize = walSize;
+    }
+
+
+    public long getPages() {
+      return pages;
+    }
+
+
+    public long getFreePages() {
+      return freePages;
+    }
+
+
+    public long getFileSize() {
+      return fileSize;
+    }
+
+
+    public long getWalSize() {
+      return walSize;
+    }
+
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "%d pages of %d bytes (%d free), file %d bytes, wal %d bytes",
+          pages, pageSize, freePages, fileSize, walSize);
+    }
+
+  }
+
+}
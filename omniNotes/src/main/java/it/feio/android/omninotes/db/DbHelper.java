@@ -27,49 +27,65 @@ import static it.feio.android.omninotes.utils.ConstantsBase.MIME_TYPE_VIDEO;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_FILTER_ARCHIVED_IN_CATEGORIES;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_FILTER_PAST_REMINDERS;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_SLOW_QUERY_THRESHOLD;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_SORTING_COLUMN;
-import static it.feio.android.omninotes.utils.ConstantsBase.TIMESTAMP_UNIX_EPOCH;
 
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.net.Uri;
+import android.os.AsyncTask;
+import de.greenrobot.event.EventBus;
 import it.feio.android.omninotes.OmniNotes;
+import it.feio.android.omninotes.async.bus.NotesChangedEvent;
 import it.feio.android.omninotes.async.upgrade.UpgradeProcessor;
 import it.feio.android.omninotes.exceptions.DatabaseException;
 import it.feio.android.omninotes.helpers.LogDelegate;
 import it.feio.android.omninotes.helpers.NotesHelper;
 import it.feio.android.omninotes.models.Attachment;
 import it.feio.android.omninotes.models.Category;
+import it.feio.android.omninotes.models.NavigationCounts;
 import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.models.NoteChange;
+import it.feio.android.omninotes.models.NotesPage;
 import it.feio.android.omninotes.models.Stats;
 import it.feio.android.omninotes.models.Tag;
 import it.feio.android.omninotes.utils.AssetUtils;
 import it.feio.android.omninotes.utils.Navigation;
 import it.feio.android.omninotes.utils.Security;
 import it.feio.android.omninotes.utils.TagsHelper;
+import it.feio.android.omninotes.utils.date.DateUtils;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.Objects;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 
 
 public class DbHelper extends SQLiteOpenHelper {
 
   // Database name
   // Database version aligned if possible to software version
-  private static final int DATABASE_VERSION = 560;
+  private static final int DATABASE_VERSION = 568;
   // Sql query file directory
   private static final String SQL_DIR = "sql";
 
@@ -92,6 +108,8 @@ public class DbHelper extends SQLiteOpenHelper {
   public static final String KEY_CATEGORY = "category_id";
   public static final String KEY_LOCKED = "locked";
   public static final String KEY_CHECKLIST = "checklist";
+  public static final String KEY_TITLE_SORT_KEY = "title_sort_key";
+  public static final String KEY_REMINDER_SORT_KEY = "reminder_sort_key";
 
   // Attachments table name
   public static final String TABLE_ATTACHMENTS = "attachments";
@@ -104,6 +122,23 @@ public class DbHelper extends SQLiteOpenHelper {
   public static final String KEY_ATTACHMENT_MIME_TYPE = "mime_type";
   public static final String KEY_ATTACHMENT_NOTE_ID = "note_id";
 
+  // Full-text index virtual table name
+  public static final String TABLE_NOTES_FTS = "notes_fts";
+  public static final String KEY_FTS_DOCID = "docid";
+
+  // Tags index table name
+  public static final String TABLE_NOTE_TAGS = "note_tags";
+  // Tags index table columns
+  public static final String KEY_NOTE_TAGS_NOTE_ID = "note_id";
+  public static final String KEY_NOTE_TAGS_TAG = "tag";
+
+  // Notes text metrics table name
+  public static final String TABLE_NOTE_METRICS = "note_metrics";
+  // Notes text metrics table columns
+  public static final String KEY_NOTE_METRICS_NOTE_ID = "note_id";
+  public static final String KEY_NOTE_METRICS_WORDS = "words";
+  public static final String KEY_NOTE_METRICS_CHARS = "chars";
+
   // Categories table name
   public static final String TABLE_CATEGORY = "categories";
   // Categories table columns
@@ -112,17 +147,109 @@ public class DbHelper extends SQLiteOpenHelper {
   public static final String KEY_CATEGORY_DESCRIPTION = "description";
   public static final String KEY_CATEGORY_COLOR = "color";
 
+  // Category counters table name
+  public static final String TABLE_CATEGORY_COUNTS = "category_counts";
+  // Category counters table columns
+  public static final String KEY_CATEGORY_COUNTS_CATEGORY_ID = "category_id";
+  public static final String KEY_CATEGORY_COUNTS_NOTES = "notes";
+
+  // Pending data upgrades table name
+  public static final String TABLE_PENDING_UPGRADES = "pending_upgrades";
+  // Pending data upgrades table columns
+  public static final String KEY_PENDING_UPGRADES_VERSION = "version";
+  public static final String KEY_PENDING_UPGRADES_CHECKPOINT = "checkpoint";
+
+  // Deleted attachments files table name
+  public static final String TABLE_DELETED_ATTACHMENTS = "deleted_attachments";
+  // Deleted attachments files table columns
+  public static final String KEY_DELETED_ATTACHMENTS_ID = "id";
+  public static final String KEY_DELETED_ATTACHMENTS_URI = "uri";
+
   // Queries
   private static final String CREATE_QUERY = "create.sql";
   private static final String UPGRADE_QUERY_PREFIX = "upgrade-";
   private static final String UPGRADE_QUERY_SUFFIX = ".sql";
+  // Length of content retrieved for list rendering, longer than the shown one to allow trimming
+  static final int LIST_CONTENT_LENGTH = 500;
+  // Alias of the attachments table joined by list projection
+  private static final String FIRST_ATTACHMENT = "first_attachment";
+  // Compiled statements kept by each connection, queries differing only by bound values share one
+  private static final int SQL_CACHE_SIZE = 50;
+  // Maximum number of notes identifiers used into a single bulk statement
+  private static final int BULK_STATEMENT_NOTES_LIMIT = 500;
+  // Background upgrades filling data used by tags, statistics and title sorting
+  private static final int NOTE_TAGS_UPGRADE_VERSION = 563;
+  private static final int NOTE_METRICS_UPGRADE_VERSION = 564;
+  private static final int SORT_KEYS_UPGRADE_VERSION = 565;
+
+  // Compiled write statements
+  private static final String NOTE_UPSERT_STATEMENT = "INSERT OR REPLACE INTO " + TABLE_NOTES + " ("
+      + KEY_CREATION + ","
+      + KEY_LAST_MODIFICATION + ","
+      + KEY_TITLE + ","
+      + KEY_CONTENT + ","
+      + KEY_ARCHIVED + ","
+      + KEY_TRASHED + ","
+      + KEY_REMINDER + ","
+      + KEY_REMINDER_FIRED + ","
+      + KEY_RECURRENCE_RULE + ","
+      + KEY_LATITUDE + ","
+      + KEY_LONGITUDE + ","
+      + KEY_ADDRESS + ","
+      + KEY_CATEGORY + ","
+      + KEY_LOCKED + ","
+      + KEY_CHECKLIST + ","
+      + KEY_TITLE_SORT_KEY + ","
+      + KEY_REMINDER_SORT_KEY
+      + ") VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+  private static final String NOTE_DELETE_STATEMENT = "DELETE FROM " + TABLE_NOTES
+      + " WHERE " + KEY_ID + " = ?";
+  private static final String ATTACHMENT_UPSERT_STATEMENT = "INSERT OR REPLACE INTO "
+      + TABLE_ATTACHMENTS + " ("
+      + KEY_ATTACHMENT_ID + ","
+      + KEY_ATTACHMENT_NOTE_ID + ","
+      + KEY_ATTACHMENT_URI + ","
+      + KEY_ATTACHMENT_MIME_TYPE + ","
+      + KEY_ATTACHMENT_NAME + ","
+      + KEY_ATTACHMENT_SIZE + ","
+      + KEY_ATTACHMENT_LENGTH
+      + ") VALUES (?,?,?,?,?,?,?)";
+  private static final String ATTACHMENT_DELETE_STATEMENT = "DELETE FROM " + TABLE_ATTACHMENTS
+      + " WHERE " + KEY_ATTACHMENT_ID + " = ?";
+  private static final String NOTE_ATTACHMENTS_DELETE_STATEMENT = "DELETE FROM "
+      + TABLE_ATTACHMENTS + " WHERE " + KEY_ATTACHMENT_NOTE_ID + " = ?";
+  private static final String NOTE_TAGS_INSERT_STATEMENT = "INSERT OR IGNORE INTO "
+      + TABLE_NOTE_TAGS + " (" + KEY_NOTE_TAGS_NOTE_ID + "," + KEY_NOTE_TAGS_TAG + ") VALUES (?,?)";
+  private static final String NOTE_TAGS_DELETE_STATEMENT = "DELETE FROM " + TABLE_NOTE_TAGS
+      + " WHERE " + KEY_NOTE_TAGS_NOTE_ID + " = ?";
+  private static final String TITLE_SORT_KEY_UPDATE_STATEMENT = "UPDATE " + TABLE_NOTES
+      + " SET " + KEY_TITLE_SORT_KEY + " = ? WHERE " + KEY_ID + " = ?";
+  private static final String CATEGORY_COUNT_INSERT_STATEMENT = "INSERT OR IGNORE INTO "
+      + TABLE_CATEGORY_COUNTS + " (" + KEY_CATEGORY_COUNTS_CATEGORY_ID + ") VALUES (?)";
+  private static final String CATEGORY_COUNT_UPDATE_STATEMENT = "UPDATE " + TABLE_CATEGORY_COUNTS
+      + " SET " + KEY_CATEGORY_COUNTS_NOTES + " = " + KEY_CATEGORY_COUNTS_NOTES + " + ?"
+      + " WHERE " + KEY_CATEGORY_COUNTS_CATEGORY_ID + " = ?";
+  private static final String PENDING_UPGRADE_INSERT_STATEMENT = "INSERT OR IGNORE INTO "
+      + TABLE_PENDING_UPGRADES + " (" + KEY_PENDING_UPGRADES_VERSION + ") VALUES (?)";
+  private static final String PENDING_UPGRADE_UPDATE_STATEMENT = "UPDATE " + TABLE_PENDING_UPGRADES
+      + " SET " + KEY_PENDING_UPGRADES_CHECKPOINT + " = ?"
+      + " WHERE " + KEY_PENDING_UPGRADES_VERSION + " = ?";
+  private static final String NOTE_METRICS_UPSERT_STATEMENT = "INSERT OR REPLACE INTO "
+      + TABLE_NOTE_METRICS + " (" + KEY_NOTE_METRICS_NOTE_ID + "," + KEY_NOTE_METRICS_WORDS + ","
+      + KEY_NOTE_METRICS_CHARS + ") VALUES (?,?,?)";
 
 
   private final Context mContext;
   private final SharedPreferences prefs;
 
   private static DbHelper instance = null;
-  private SQLiteDatabase db;
+  // Database being upgraded, available only to the thread running the upgrade
+  private final ThreadLocal<SQLiteDatabase> upgradingDatabase = new ThreadLocal<>();
+  private final QueryProfiler profiler;
+  private final CompiledStatementsCache statements;
+  // Versions of background upgrades not completed yet, whose data can't be relied on
+  private volatile Set<Integer> pendingUpgradesVersions = Collections.emptySet();
+  private volatile OnNotesChangedListener onNotesChangedListener;
 
 
   public static synchronized DbHelper getInstance() {
@@ -149,9 +276,28 @@ public class DbHelper extends SQLiteOpenHelper {
 
 
   private DbHelper(Context mContext) {
-    super(mContext, DATABASE_NAME, null, DATABASE_VERSION);
+    this(mContext, new QueryProfiler(NumberUtils.toLong(mContext.getSharedPreferences(PREFS_NAME,
+        Context.MODE_MULTI_PROCESS).getString(PREF_SLOW_QUERY_THRESHOLD, null),
+        QueryProfiler.DEFAULT_SLOW_QUERY_THRESHOLD)));
+  }
+
+
+  /**
+   * @param profiler Factory of the database cursors, that records executed queries
+   */
+  private DbHelper(Context mContext, QueryProfiler profiler) {
+    super(mContext, DATABASE_NAME, profiler, DATABASE_VERSION);
     this.mContext = mContext;
     this.prefs = mContext.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS);
+    this.profiler = profiler;
+    this.statements = new CompiledStatementsCache(profiler);
+    // Readers use their own connections and are not blocked by a writing transaction
+    setWriteAheadLoggingEnabled(true);
+  }
+
+
+  public QueryProfiler getQueryProfiler() {
+    return profiler;
   }
 
 
@@ -164,17 +310,57 @@ public class DbHelper extends SQLiteOpenHelper {
   }
 
   public SQLiteDatabase getDatabase(boolean forceWritable) {
-    try {
-      return forceWritable ? getWritableDatabase() : getReadableDatabase();
-    } catch (IllegalStateException e) {
-      return this.db;
+    // Methods called while upgrading can't open the database again
+    SQLiteDatabase db = upgradingDatabase.get();
+    if (db != null) {
+      return db;
     }
+    return forceWritable ? getWritableDatabase() : getReadableDatabase();
   }
 
+
+  private int update(SQLiteDatabase db, String table, ContentValues values, String whereClause,
+      String[] whereArgs) {
+    long start = System.nanoTime();
+    int updated = db.update(table, values, whereClause, whereArgs);
+    profiler.recordWrite("UPDATE " + table + " SET " + values.keySet() + " WHERE " + whereClause,
+        start, updated);
+    return updated;
+  }
+
+
+  private int delete(SQLiteDatabase db, String table, String whereClause, String[] whereArgs) {
+    long start = System.nanoTime();
+    int deleted = db.delete(table, whereClause, whereArgs);
+    profiler.recordWrite("DELETE FROM " + table + (whereClause != null ? " WHERE " + whereClause
+        : ""), start, deleted);
+    return deleted;
+  }
+
+
   @Override
-  public void onOpen(SQLiteDatabase db) {
-    db.disableWriteAheadLogging();
-    super.onOpen(db);
+  public void close() {
+    // Listener is notified outside of the lock since it can query the database
+    synchronized (this) {
+      statements.clear();
+      super.close();
+    }
+    OnNotesChangedListener listener = onNotesChangedListener;
+    if (listener != null) {
+      listener.onDatabaseClosed();
+    }
+  }
+
+
+  void setOnNotesChangedListener(OnNotesChangedListener onNotesChangedListener) {
+    this.onNotesChangedListener = onNotesChangedListener;
+  }
+
+  @Override
+  public void onConfigure(SQLiteDatabase db) {
+    db.setMaxSqlCacheSize(SQL_CACHE_SIZE);
+    // Only effective on new databases, existing ones are converted by DatabaseMaintenance
+    db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
   }
 
   @Override
@@ -190,7 +376,7 @@ public class DbHelper extends SQLiteOpenHelper {
 
   @Override
   public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-    this.db = db;
+    upgradingDatabase.set(db);
     LogDelegate.i("Upgrading database version from " + oldVersion + " to " + newVersion);
 
     try {
@@ -206,73 +392,309 @@ public class DbHelper extends SQLiteOpenHelper {
           }
         }
       }
+
+      UpgradeProcessor.processAfterSchemaUpgrade(oldVersion, newVersion);
+      UpgradeProcessor.scheduleBackgroundUpgrades(oldVersion, newVersion);
+
       LogDelegate.i("Database upgrade successful");
 
     } catch (IOException | InvocationTargetException | IllegalAccessException e) {
       throw new RuntimeException("Database upgrade failed", e);
+    } finally {
+      upgradingDatabase.remove();
+    }
+  }
+
+
+  @Override
+  public void onOpen(SQLiteDatabase db) {
+    // Data upgrades left by a previous upgrade, or interrupted, are resumed
+    pendingUpgradesVersions = getPendingUpgrades(db).keySet();
+    if (!pendingUpgradesVersions.isEmpty()) {
+      AsyncTask.THREAD_POOL_EXECUTOR.execute(UpgradeProcessor::processInBackground);
     }
   }
 
 
   public Note updateNote(Note note, boolean updateLastModification) {
-    db = getDatabase(true);
+    if (note.isPartial()) {
+      throw new IllegalArgumentException("Note " + note.get_id()
+          + " was retrieved for list rendering and must be hydrated before saving it");
+    }
+    SQLiteDatabase db = getDatabase(true);
 
     String content = Boolean.TRUE.equals(note.isLocked())
         ? Security.encrypt(note.getContent(), prefs.getString(PREF_PASSWORD, ""))
         : note.getContent();
 
-    // To ensure note and attachments insertions are atomic and boost performances transaction are used
-    db.beginTransaction();
-
-    ContentValues values = new ContentValues();
-    values.put(KEY_TITLE, note.getTitle());
-    values.put(KEY_CONTENT, content);
-    values.put(KEY_CREATION,
-        note.getCreation() != null ? note.getCreation() : Calendar.getInstance().getTimeInMillis());
+    long creation =
+        note.getCreation() != null ? note.getCreation() : Calendar.getInstance().getTimeInMillis();
     long lastModification = note.getLastModification() != null && !updateLastModification
         ? note.getLastModification()
         : Calendar.getInstance().getTimeInMillis();
-    values.put(KEY_LAST_MODIFICATION, lastModification);
-    values.put(KEY_ARCHIVED, note.isArchived());
-    values.put(KEY_TRASHED, note.isTrashed());
-    values.put(KEY_REMINDER, note.getAlarm());
-    values.put(KEY_REMINDER_FIRED, note.isReminderFired());
-    values.put(KEY_RECURRENCE_RULE, note.getRecurrenceRule());
-    values.put(KEY_LATITUDE, note.getLatitude());
-    values.put(KEY_LONGITUDE, note.getLongitude());
-    values.put(KEY_ADDRESS, note.getAddress());
-    values.put(KEY_CATEGORY, note.getCategory() != null ? note.getCategory().getId() : null);
-    values.put(KEY_LOCKED, note.isLocked() != null && note.isLocked());
-    values.put(KEY_CHECKLIST, note.isChecklist() != null && note.isChecklist());
-
-    db.insertWithOnConflict(TABLE_NOTES, KEY_ID, values, SQLiteDatabase.CONFLICT_REPLACE);
-    LogDelegate.d("Updated note titled '" + note.getTitle() + "'");
-
-    // Updating attachments
-    List<Attachment> deletedAttachments = note.getAttachmentsListOld();
-    for (Attachment attachment : note.getAttachmentsList()) {
-      updateAttachment(note.get_id() != null ? note.get_id() : values.getAsLong(KEY_CREATION),
-          attachment, db);
-      deletedAttachments.remove(attachment);
-    }
-    // Remove from database deleted attachments
-    for (Attachment attachmentDeleted : deletedAttachments) {
-      db.delete(TABLE_ATTACHMENTS, KEY_ATTACHMENT_ID + " = ?",
-          new String[]{String.valueOf(attachmentDeleted.getId())});
-    }
-
-    db.setTransactionSuccessful();
-    db.endTransaction();
+    // Uncategorized notes are always stored as NULL to let category filters use the index
+    Long categoryId = note.getCategory() != null && note.getCategory().getId() != null
+        && note.getCategory().getId() != 0 ? note.getCategory().getId() : null;
+    long noteId = note.get_id() != null ? note.get_id() : creation;
+
+    ContentValues navigationValues = new ContentValues();
+    navigationValues.put(KEY_ARCHIVED, Boolean.TRUE.equals(note.isArchived()));
+    navigationValues.put(KEY_TRASHED, Boolean.TRUE.equals(note.isTrashed()));
+    navigationValues.put(KEY_CATEGORY, categoryId);
+    navigationValues.put(KEY_REMINDER, note.getAlarm());
+    List<NoteChange> changes;
+
+    // To ensure note and attachments insertions are atomic and boost performances transaction are used
+    db.beginTransactionNonExclusive();
+    try {
+      ContentValues previousNavigationValues = getNavigationValues(db, KEY_ID + " = ?",
+          new String[]{String.valueOf(noteId)}).get(noteId);
+      statements.executeInsert(db, NOTE_UPSERT_STATEMENT,
+          creation,
+          lastModification,
+          note.getTitle(),
+          content,
+          Boolean.TRUE.equals(note.isArchived()),
+          Boolean.TRUE.equals(note.isTrashed()),
+          note.getAlarm(),
+          Boolean.TRUE.equals(note.isReminderFired()),
+          note.getRecurrenceRule(),
+          note.getLatitude(),
+          note.getLongitude(),
+          note.getAddress(),
+          categoryId,
+          Boolean.TRUE.equals(note.isLocked()),
+          Boolean.TRUE.equals(note.isChecklist()),
+          SortKeys.title(note.getTitle(), note.getContent(), Boolean.TRUE.equals(note.isLocked())),
+          SortKeys.reminder(note.getAlarm()));
+      LogDelegate.d("Updated note titled '" + note.getTitle() + "'");
+
+      // Updating attachments
+      List<Attachment> deletedAttachments = note.getAttachmentsListOld();
+      for (Attachment attachment : note.getAttachmentsList()) {
+        updateAttachment(noteId, attachment, db);
+        deletedAttachments.remove(attachment);
+      }
+      // Remove from database deleted attachments
+      for (Attachment attachmentDeleted : deletedAttachments) {
+        statements.executeUpdateDelete(db, ATTACHMENT_DELETE_STATEMENT, attachmentDeleted.getId());
+      }
+
+      updateNoteTags(noteId, note, db);
+      updateNoteMetrics(noteId, note, db);
+
+      changes = Collections.singletonList(new NoteChange(
+          previousNavigationValues == null ? NoteChange.Type.INSERTED : NoteChange.Type.UPDATED,
+          noteId, note, null, previousNavigationValues, navigationValues));
+      updateCategoryCounts(db, changes);
+
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
 
     // Fill the note with correct data before returning it
-    note.setCreation(
-        note.getCreation() != null ? note.getCreation() : values.getAsLong(KEY_CREATION));
-    note.setLastModification(values.getAsLong(KEY_LAST_MODIFICATION));
+    note.setCreation(creation);
+    note.setLastModification(lastModification);
 
+    publishChanges(changes);
     return note;
   }
 
 
+  /**
+   * Replaces the indexed tags of a note with the ones currently found into its text
+   */
+  private void updateNoteTags(long noteId, Note note, SQLiteDatabase db) {
+    statements.executeUpdateDelete(db, NOTE_TAGS_DELETE_STATEMENT, noteId);
+    for (String tag : TagsHelper.retrieveTags(note).keySet()) {
+      statements.executeInsert(db, NOTE_TAGS_INSERT_STATEMENT, noteId, tag);
+    }
+  }
+
+
+  /**
+   * Stores text metrics of a note to avoid computing them again for statistics
+   */
+  private void updateNoteMetrics(long noteId, Note note, SQLiteDatabase db) {
+    statements.executeInsert(db, NOTE_METRICS_UPSERT_STATEMENT, noteId, NotesHelper.getWords(note),
+        NotesHelper.getChars(note));
+  }
+
+
+  /**
+   * Computes again text metrics of a batch of notes, to be run into a transaction
+   *
+   * @param afterId Identifier of the note following which the batch starts
+   * @return Identifier of the last processed note, afterId itself when no notes were left
+   */
+  public long rebuildNotesMetrics(long afterId, int limit) {
+    SQLiteDatabase db = getDatabase(true);
+    List<Note> notes = getNotesBatch("", afterId, limit);
+    for (Note note : notes) {
+      updateNoteMetrics(note.get_id(), note, db);
+    }
+    return notes.isEmpty() ? afterId : notes.get(notes.size() - 1).get_id();
+  }
+
+
+  /**
+   * Rebuilds tags index of a batch of notes from their text, to be run into a transaction
+   *
+   * @param afterId Identifier of the note following which the batch starts
+   * @return Identifier of the last processed note, afterId itself when no notes were left
+   */
+  public long rebuildNotesTags(long afterId, int limit) {
+    SQLiteDatabase db = getDatabase(true);
+    // Locked notes content is encrypted, so it must be decrypted before looking for tags
+    List<Note> notes = getNotesBatch(" AND (" + KEY_CONTENT + " LIKE '%#%' OR " + KEY_TITLE
+        + " LIKE '%#%' OR " + KEY_LOCKED + " = 1)", afterId, limit);
+    for (Note note : notes) {
+      updateNoteTags(note.get_id(), note, db);
+    }
+    return notes.isEmpty() ? afterId : notes.get(notes.size() - 1).get_id();
+  }
+
+
+  /**
+   * Computes again title sort keys of a batch of notes, to be run into a transaction
+   *
+   * @param afterId Identifier of the note following which the batch starts
+   * @return Identifier of the last processed note, afterId itself when no notes were left
+   */
+  public long rebuildSortKeys(long afterId, int limit) {
+    SQLiteDatabase db = getDatabase(true);
+    long lastId = afterId;
+    try (Cursor cursor = db.rawQuery("SELECT " + KEY_ID + "," + KEY_TITLE + "," + KEY_CONTENT + ","
+            + KEY_LOCKED + " FROM " + TABLE_NOTES + " WHERE " + KEY_ID + " > ?"
+            + " ORDER BY " + KEY_ID + " LIMIT " + limit,
+        new String[]{String.valueOf(afterId)})) {
+      while (cursor.moveToNext()) {
+        lastId = cursor.getLong(0);
+        statements.executeUpdateDelete(db, TITLE_SORT_KEY_UPDATE_STATEMENT,
+            SortKeys.title(cursor.getString(1), cursor.getString(2), cursor.getInt(3) == 1),
+            lastId);
+      }
+    }
+    return lastId;
+  }
+
+
+  private List<Note> getNotesBatch(String condition, long afterId, int limit) {
+    return getNotes(" WHERE " + KEY_CREATION + " > ?" + condition,
+        " ORDER BY " + KEY_CREATION + " LIMIT " + limit, new String[]{String.valueOf(afterId)});
+  }
+
+
+  /**
+   * Number of notes following the given one, used to report progress of batched processing
+   */
+  public long getNotesCountAfter(long afterId) {
+    return DatabaseUtils.queryNumEntries(getDatabase(), TABLE_NOTES, KEY_CREATION + " > ?",
+        new String[]{String.valueOf(afterId)});
+  }
+
+
+  /**
+   * Data upgrades still to be completed, sorted by version, with the last note each one processed
+   */
+  public SortedMap<Integer, Long> getPendingUpgrades() {
+    return getPendingUpgrades(getDatabase());
+  }
+
+
+  private SortedMap<Integer, Long> getPendingUpgrades(SQLiteDatabase db) {
+    SortedMap<Integer, Long> pendingUpgrades = new TreeMap<>();
+    try (Cursor cursor = db.rawQuery("SELECT " + KEY_PENDING_UPGRADES_VERSION + ","
+        + KEY_PENDING_UPGRADES_CHECKPOINT + " FROM " + TABLE_PENDING_UPGRADES, null)) {
+      while (cursor.moveToNext()) {
+        pendingUpgrades.put(cursor.getInt(0), cursor.getLong(1));
+      }
+    }
+    return pendingUpgrades;
+  }
+
+
+  /**
+   * Registers a data upgrade, from now on features depending on its data fall back to computing
+   * it from notes
+   */
+  public void addPendingUpgrade(int version) {
+    statements.executeInsert(getDatabase(true), PENDING_UPGRADE_INSERT_STATEMENT, version);
+    Set<Integer> versions = new HashSet<>(pendingUpgradesVersions);
+    versions.add(version);
+    pendingUpgradesVersions = versions;
+  }
+
+
+  /**
+   * Saves the last note processed by a data upgrade, to be run into the transaction that processed
+   * it so that upgrade is resumed from there if interrupted
+   */
+  public void setPendingUpgradeCheckpoint(int version, long checkpoint) {
+    statements.executeUpdateDelete(getDatabase(true), PENDING_UPGRADE_UPDATE_STATEMENT,
+        checkpoint, version);
+  }
+
+
+  /**
+   * Removes a completed data upgrade, to be run into the transaction that completed it. Its data is
+   * used only after {@link #reloadPendingUpgrades()} is called once the transaction is committed.
+   */
+  public void removePendingUpgrade(int version) {
+    delete(getDatabase(true), TABLE_PENDING_UPGRADES, KEY_PENDING_UPGRADES_VERSION + " = ?",
+        new String[]{String.valueOf(version)});
+  }
+
+
+  public void reloadPendingUpgrades() {
+    pendingUpgradesVersions = getPendingUpgrades().keySet();
+  }
+
+
+  public boolean isUpgradePending(int version) {
+    return pendingUpgradesVersions.contains(version);
+  }
+
+
+  /**
+   * Identifier of the last note of the batch following the given one, used to process notes
+   * related data by batches
+   *
+   * @return afterId itself when no notes were left
+   */
+  public long getNotesBatchLastId(long afterId, int limit) {
+    String sql = "SELECT MAX(" + KEY_CREATION + ") FROM (SELECT " + KEY_CREATION
+        + " FROM " + TABLE_NOTES
+        + " WHERE " + KEY_CREATION + " > ?"
+        + " ORDER BY " + KEY_CREATION + " LIMIT " + limit + ")";
+    try (Cursor cursor = getDatabase().rawQuery(sql, new String[]{String.valueOf(afterId)})) {
+      return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : afterId;
+    }
+  }
+
+
+  /**
+   * Counts again not trashed notes of each category, fixing counters eventually gone out of sync
+   */
+  public void rebuildCategoryCounts() {
+    SQLiteDatabase db = getDatabase(true);
+    db.beginTransactionNonExclusive();
+    try {
+      delete(db, TABLE_CATEGORY_COUNTS, null, null);
+      db.execSQL("INSERT INTO " + TABLE_CATEGORY_COUNTS + " (" + KEY_CATEGORY_COUNTS_CATEGORY_ID
+          + "," + KEY_CATEGORY_COUNTS_NOTES + ")"
+          + " SELECT " + KEY_CATEGORY + ", COUNT(*) FROM " + TABLE_NOTES
+          + " WHERE " + KEY_CATEGORY + " IS NOT NULL AND " + KEY_TRASHED + " = 0"
+          + " GROUP BY " + KEY_CATEGORY);
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    LogDelegate.i("Rebuilt category counters");
+  }
+
+
   private void execSqlFile(String sqlFile, SQLiteDatabase db) throws SQLException, IOException {
     LogDelegate.i("  exec sql file: {}" + sqlFile);
     for (String sqlInstruction : SqlParser
@@ -299,18 +721,14 @@ public class DbHelper extends SQLiteOpenHelper {
    * New attachment insertion
    */
   public Attachment updateAttachment(long noteId, Attachment attachment, SQLiteDatabase db) {
-    ContentValues valuesAttachments = new ContentValues();
-    valuesAttachments
-        .put(KEY_ATTACHMENT_ID, attachment.getId() != null ? attachment.getId() : Calendar
-            .getInstance().getTimeInMillis());
-    valuesAttachments.put(KEY_ATTACHMENT_NOTE_ID, noteId);
-    valuesAttachments.put(KEY_ATTACHMENT_URI, attachment.getUri().toString());
-    valuesAttachments.put(KEY_ATTACHMENT_MIME_TYPE, attachment.getMime_type());
-    valuesAttachments.put(KEY_ATTACHMENT_NAME, attachment.getName());
-    valuesAttachments.put(KEY_ATTACHMENT_SIZE, attachment.getSize());
-    valuesAttachments.put(KEY_ATTACHMENT_LENGTH, attachment.getLength());
-    db.insertWithOnConflict(TABLE_ATTACHMENTS, KEY_ATTACHMENT_ID, valuesAttachments,
-        SQLiteDatabase.CONFLICT_REPLACE);
+    statements.executeInsert(db, ATTACHMENT_UPSERT_STATEMENT,
+        attachment.getId() != null ? attachment.getId() : Calendar.getInstance().getTimeInMillis(),
+        noteId,
+        attachment.getUri().toString(),
+        attachment.getMime_type(),
+        attachment.getName(),
+        attachment.getSize(),
+        attachment.getLength());
     return attachment;
   }
 
@@ -319,7 +737,7 @@ public class DbHelper extends SQLiteOpenHelper {
    * Getting single note
    */
   public Note getNote(long id) {
-    List<Note> notes = getNotes(" WHERE " + KEY_ID + " = " + id, true);
+    List<Note> notes = getNotes(new NoteQuery().id(id));
     return notes.isEmpty() ? null : notes.get(0);
   }
 
@@ -332,99 +750,348 @@ public class DbHelper extends SQLiteOpenHelper {
    * @return Notes list
    */
   public List<Note> getAllNotes(Boolean checkNavigation) {
-    String whereCondition = "";
-    if (Boolean.TRUE.equals(checkNavigation)) {
-      int navigation = Navigation.getNavigation();
-      switch (navigation) {
-        case Navigation.NOTES:
-          return getNotesActive();
-        case Navigation.ARCHIVE:
-          return getNotesArchived();
-        case Navigation.REMINDERS:
-          return getNotesWithReminder(prefs.getBoolean(PREF_FILTER_PAST_REMINDERS, false));
-        case Navigation.TRASH:
-          return getNotesTrashed();
-        case Navigation.UNCATEGORIZED:
-          return getNotesUncategorized();
-        case Navigation.CATEGORY:
-          return getNotesByCategory(Navigation.getCategory());
-        default:
-          return getNotes(whereCondition, true);
-      }
-    } else {
-      return getNotes(whereCondition, true);
-    }
+    return getNotes(Boolean.TRUE.equals(checkNavigation) ? getNavigationQuery() : new NoteQuery());
+  }
+
+
+  /**
+   * Retrieves the first page of notes for the current navigation
+   *
+   * @param pageSize Maximum number of notes to retrieve, 0 to retrieve all of them
+   */
+  public NotesPage getAllNotesPage(int pageSize) {
+    return getNotesPage(getNavigationQuery(), pageSize);
+  }
 
+
+  /**
+   * Builds the query matching notes shown by the current navigation
+   */
+  NoteQuery getNavigationQuery() {
+    switch (Navigation.getNavigation()) {
+      case Navigation.NOTES:
+        return getNotesActiveQuery();
+      case Navigation.ARCHIVE:
+        return getNotesArchivedQuery();
+      case Navigation.REMINDERS:
+        return getNotesWithReminderQuery(
+            prefs.getBoolean(PREF_FILTER_PAST_REMINDERS, false));
+      case Navigation.TRASH:
+        return getNotesTrashedQuery();
+      case Navigation.UNCATEGORIZED:
+        return getNotesUncategorizedQuery();
+      case Navigation.CATEGORY:
+        return getNotesByCategoryQuery(Navigation.getCategory());
+      default:
+        return new NoteQuery();
+    }
   }
 
 
   public List<Note> getNotesActive() {
-    String whereCondition =
-        " WHERE " + KEY_ARCHIVED + " IS NOT 1 AND " + KEY_TRASHED + " IS NOT 1 ";
-    return getNotes(whereCondition, true);
+    return getNotes(getNotesActiveQuery());
+  }
+
+
+  private NoteQuery getNotesActiveQuery() {
+    return new NoteQuery().trashed(false).archived(false);
   }
 
 
   public List<Note> getNotesArchived() {
-    String whereCondition = " WHERE " + KEY_ARCHIVED + " = 1 AND " + KEY_TRASHED + " IS NOT 1 ";
-    return getNotes(whereCondition, true);
+    return getNotes(getNotesArchivedQuery());
+  }
+
+
+  private NoteQuery getNotesArchivedQuery() {
+    return new NoteQuery().trashed(false).archived(true);
   }
 
 
   public List<Note> getNotesTrashed() {
-    String whereCondition = " WHERE " + KEY_TRASHED + " = 1 ";
-    return getNotes(whereCondition, true);
+    return getNotes(getNotesTrashedQuery());
+  }
+
+
+  private NoteQuery getNotesTrashedQuery() {
+    return new NoteQuery().trashed(true);
   }
 
 
   public List<Note> getNotesUncategorized() {
-    String whereCondition = " WHERE "
-        + "(" + KEY_CATEGORY_ID + " IS NULL OR " + KEY_CATEGORY_ID + " == 0) "
-        + "AND " + KEY_TRASHED + " IS NOT 1";
-    return getNotes(whereCondition, true);
+    return getNotes(getNotesUncategorizedQuery());
+  }
+
+
+  private NoteQuery getNotesUncategorizedQuery() {
+    return new NoteQuery().category(null).trashed(false);
   }
 
 
   public List<Note> getNotesWithLocation() {
-    String whereCondition = " WHERE " + KEY_LONGITUDE + " IS NOT NULL "
-        + "AND " + KEY_LONGITUDE + " != 0 ";
-    return getNotes(whereCondition, true);
+    return getNotes(new NoteQuery().withLocation());
   }
 
 
   /**
    * Common method for notes retrieval. It accepts a query to perform and returns matching records.
    */
-  public List<Note> getNotes(String whereCondition, boolean order) {
-    List<Note> noteList = new ArrayList<>();
+  public List<Note> getNotes(NoteQuery query) {
+    List<Note> noteList = getNotes(query.getWhereClause(), getOrderClause(query),
+        query.getArgs());
+
+    // Add eventual attachments uri
+    loadNotesAttachments(noteList, query.getWhereClause(), query.getWhereArgs());
+    return noteList;
+  }
+
+
+  private String getOrderClause(NoteQuery query) {
+    if (!query.isSorted()) {
+      return "";
+    }
+    String sortColumn = query.getSortColumn() != null ? query.getSortColumn() : getSortColumn();
+    return " ORDER BY "
+        + (query.getRankingCondition() != null ? query.getRankingCondition() + " DESC, " : "")
+        + getSortExpression(sortColumn) + getSortOrder(sortColumn);
+  }
+
+
+  /**
+   * Retrieves the first page of notes matching the query. Notes are ordered like {@link
+   * #getNotes(NoteQuery)} does, using creation as tie-breaker to keep pages stable.
+   *
+   * @param pageSize Maximum number of notes to retrieve, 0 to retrieve all of them
+   */
+  public NotesPage getNotesPage(NoteQuery query, int pageSize) {
+    String sortColumn = query.getSortColumn() != null ? query.getSortColumn() : getSortColumn();
+    return getNotesPage(query, sortColumn, null, pageSize);
+  }
+
+
+  /**
+   * Retrieves the page following the one passed as parameter using its last note as keyset
+   *
+   * @param pageSize Maximum number of notes to retrieve, 0 to retrieve all the remaining ones
+   */
+  public NotesPage getNextNotesPage(NotesPage previousPage, int pageSize) {
+    return getNotesPage(previousPage.getQuery(), previousPage.getSortColumn(), previousPage,
+        pageSize);
+  }
+
 
-    String sortColumn = "";
-    String sortOrder = "";
+  private NotesPage getNotesPage(NoteQuery query, String sortColumn, NotesPage previousPage,
+      int pageSize) {
+    String sortExpression = getSortExpression(sortColumn);
+    String sortOrder = getSortOrder(sortColumn);
+
+    NoteQuery pageQuery = query;
+    if (previousPage != null && previousPage.getLastCreation() != null) {
+      pageQuery = whereFollowing(new NoteQuery(query), sortColumn, previousPage.getLastSortKey(),
+          previousPage.getLastCreation(), " ASC ".equals(sortOrder));
+    }
 
-    // Getting sorting criteria from preferences. Reminder screen forces sorting.
+    String orderClause = " ORDER BY " + sortExpression + sortOrder + ", "
+        + KEY_CREATION + sortOrder;
+    String[] selectionArgs = pageQuery.getWhereArgs();
+    if (pageSize > 0) {
+      orderClause += " LIMIT ?";
+      selectionArgs = Arrays.copyOf(selectionArgs, selectionArgs.length + 1);
+      selectionArgs[selectionArgs.length - 1] = String.valueOf(pageSize);
+    }
+    List<Note> notes = getNotes(pageQuery.getWhereClause(), orderClause, selectionArgs, true);
+
+    Long lastCreation = null;
+    String lastSortKey = null;
+    if (!notes.isEmpty()) {
+      lastCreation = notes.get(notes.size() - 1).get_id();
+      lastSortKey = getSortKey(sortExpression, lastCreation);
+    }
+
+    boolean last = pageSize <= 0 || notes.size() < pageSize;
+    return new NotesPage(notes, query, sortColumn, previousPage == null, last, lastCreation,
+        lastSortKey);
+  }
+
+
+  /**
+   * Restricts the query to notes coming after the given keyset in the given direction
+   */
+  private NoteQuery whereFollowing(NoteQuery query, String sortColumn, String sortKey,
+      long creation, boolean ascending) {
+    String sortExpression = getSortExpression(sortColumn);
+    String comparison = ascending ? " > " : " < ";
+    if (sortKey == null) {
+      // NULLs are the lowest values, so they come first ascending and last descending
+      return query.where(ascending
+              ? "(" + sortExpression + " IS NOT NULL OR " + KEY_CREATION + comparison + "?)"
+              : "(" + sortExpression + " IS NULL AND " + KEY_CREATION + comparison + "?)",
+          String.valueOf(creation));
+    } else {
+      // Numeric keys are cast because expressions have no affinity to convert bound strings
+      String sortKeyParameter = KEY_TITLE.equals(sortColumn) ? "?" : "CAST(? AS INTEGER)";
+      return query.where("(" + sortExpression + comparison + sortKeyParameter + " OR ("
+              + sortExpression + " = " + sortKeyParameter + " AND " + KEY_CREATION + comparison
+              + "?))", sortKey, sortKey, String.valueOf(creation));
+    }
+  }
+
+
+  /**
+   * Positions notes have into the results of the query, ordered like pages are. A single query for
+   * each chunk of identifiers counts, for each of the notes, the ones preceding it.
+   *
+   * @param sortColumn Sorting criteria, null to use the preference one
+   * @return Identifiers of the notes matching the query by their position
+   */
+  SortedMap<Integer, Long> getNotesPositions(NoteQuery query, String sortColumn,
+      List<Long> noteIds) {
+    String column = sortColumn != null ? sortColumn
+        : query.getSortColumn() != null ? query.getSortColumn() : getSortColumn();
+    String sortExpression = getSortExpression(column);
+    boolean ascending = " ASC ".equals(getSortOrder(column));
+    String comparison = ascending ? " < " : " > ";
+    // Unqualified columns belong to the counted notes, NULLs are the lowest values
+    String nullsFirst = ascending ? sortExpression : "t.sort_key";
+    String nullsLast = ascending ? "t.sort_key" : sortExpression;
+    NoteQuery precedingQuery = new NoteQuery(query).where("((" + nullsFirst + " IS NULL AND ("
+        + nullsLast + " IS NOT NULL OR " + KEY_CREATION + comparison + "t." + KEY_CREATION + "))"
+        + " OR " + sortExpression + comparison + "t.sort_key"
+        + " OR (" + sortExpression + " = t.sort_key AND " + KEY_CREATION + comparison + "t."
+        + KEY_CREATION + "))");
+
+    SortedMap<Integer, Long> positions = new TreeMap<>();
+    for (int i = 0; i < noteIds.size(); i += BULK_STATEMENT_NOTES_LIMIT) {
+      List<Long> chunk = noteIds.subList(i, Math.min(i + BULK_STATEMENT_NOTES_LIMIT,
+          noteIds.size()));
+      NoteQuery chunkQuery = new NoteQuery(query)
+          .where(KEY_ID + " IN (" + StringUtils.join(chunk, ",") + ")");
+      String[] selectionArgs = ArrayUtils.addAll(precedingQuery.getWhereArgs(),
+          chunkQuery.getWhereArgs());
+      try (Cursor cursor = getDatabase().rawQuery("SELECT t." + KEY_CREATION + ","
+          + " (SELECT COUNT(*) FROM " + TABLE_NOTES + precedingQuery.getWhereClause() + ")"
+          + " FROM (SELECT " + KEY_CREATION + ", " + sortExpression + " AS sort_key"
+          + " FROM " + TABLE_NOTES + chunkQuery.getWhereClause() + ") AS t", selectionArgs)) {
+        while (cursor.moveToNext()) {
+          positions.put(cursor.getInt(1), cursor.getLong(0));
+        }
+      }
+    }
+    return positions;
+  }
+
+
+  /**
+   * Sorting criteria from preferences. Reminder screen forces sorting.
+   */
+  String getSortColumn() {
     if (Navigation.checkNavigation(Navigation.REMINDERS)) {
-      sortColumn = KEY_REMINDER;
+      return KEY_REMINDER;
     } else {
-      sortColumn = prefs.getString(PREF_SORTING_COLUMN, KEY_TITLE);
+      return prefs.getString(PREF_SORTING_COLUMN, KEY_TITLE);
+    }
+  }
+
+
+  private String getSortOrder(String sortColumn) {
+    return KEY_TITLE.equals(sortColumn) || KEY_REMINDER.equals(sortColumn) ? " ASC " : " DESC ";
+  }
+
+
+  private String getSortExpression(String sortColumn) {
+    // Title and reminder are sorted by their indexed keys, see SortKeys. Title ones are computed
+    // on the fly until their background upgrade is completed.
+    if (KEY_TITLE.equals(sortColumn)) {
+      return isUpgradePending(SORT_KEYS_UPGRADE_VERSION) ? SortKeys.TITLE_EXPRESSION
+          : KEY_TITLE_SORT_KEY;
+    } else if (KEY_REMINDER.equals(sortColumn)) {
+      return KEY_REMINDER_SORT_KEY;
+    } else {
+      return sortColumn;
+    }
+  }
+
+
+  /**
+   * Retrieves the raw value of the sort expression for a single note, used as pagination keyset
+   */
+  private String getSortKey(String sortExpression, long noteId) {
+    String sql = "SELECT " + sortExpression
+        + " FROM " + TABLE_NOTES
+        + " WHERE " + KEY_ID + " = ?";
+    try (Cursor cursor = getDatabase().rawQuery(sql, new String[]{String.valueOf(noteId)})) {
+      return cursor.moveToFirst() ? cursor.getString(0) : null;
+    }
+  }
+
+
+  /**
+   * Filters the given notes identifiers keeping the ones of notes matching the query
+   */
+  Set<Long> getMatchingNotesIds(NoteQuery query, List<Long> noteIds) {
+    Set<Long> matchingIds = new HashSet<>();
+    for (int i = 0; i < noteIds.size(); i += BULK_STATEMENT_NOTES_LIMIT) {
+      List<Long> chunk = noteIds.subList(i, Math.min(i + BULK_STATEMENT_NOTES_LIMIT,
+          noteIds.size()));
+      NoteQuery chunkQuery = new NoteQuery(query)
+          .where(KEY_ID + " IN (" + StringUtils.join(chunk, ",") + ")");
+      try (Cursor cursor = getDatabase().rawQuery("SELECT " + KEY_ID + " FROM " + TABLE_NOTES
+          + chunkQuery.getWhereClause(), chunkQuery.getWhereArgs())) {
+        while (cursor.moveToNext()) {
+          matchingIds.add(cursor.getLong(0));
+        }
+      }
     }
-    if (order) {
-      sortOrder =
-          KEY_TITLE.equals(sortColumn) || KEY_REMINDER.equals(sortColumn) ? " ASC " : " DESC ";
+    return matchingIds;
+  }
+
+
+  /**
+   * Complete notes having the given identifiers, retrieved together with their attachments by a
+   * couple of queries for each chunk of identifiers
+   */
+  List<Note> getNotesByIds(List<Long> noteIds) {
+    List<Note> notes = new ArrayList<>();
+    for (int i = 0; i < noteIds.size(); i += BULK_STATEMENT_NOTES_LIMIT) {
+      List<Long> chunk = noteIds.subList(i, Math.min(i + BULK_STATEMENT_NOTES_LIMIT,
+          noteIds.size()));
+      notes.addAll(getNotes(new NoteQuery()
+          .where(KEY_ID + " IN (" + StringUtils.join(chunk, ",") + ")").unsorted()));
     }
+    return notes;
+  }
 
-    // In case of title sorting criteria it must be handled empty title by concatenating content
-    sortColumn = KEY_TITLE.equals(sortColumn) ? KEY_TITLE + "||" + KEY_CONTENT : sortColumn;
 
-    // In case of reminder sorting criteria the empty reminder notes must be moved on bottom of results
-    sortColumn = KEY_REMINDER.equals(sortColumn) ? "IFNULL(" + KEY_REMINDER + ", " +
-        "" + TIMESTAMP_UNIX_EPOCH + ")" : sortColumn;
+  private List<Note> getNotes(String whereCondition, String orderClause,
+      String[] selectionArgs) {
+    return getNotes(whereCondition, orderClause, selectionArgs, false);
+  }
+
+
+  /**
+   * @param listProjection When true only what is needed to render notes list is retrieved: content
+   *                       is truncated (unless encrypted) and only the first attachment is loaded,
+   *                       together with the attachments count. Such notes are marked as partial and
+   *                       must be completed with {@link #hydrateNotes(List)} before being edited or
+   *                       saved. They're returned into a {@link CompactNotesList} to avoid keeping
+   *                       a {@link Note} object for each of them.
+   */
+  private List<Note> getNotes(String whereCondition, String orderClause,
+      String[] selectionArgs, boolean listProjection) {
+    List<Note> noteList = new ArrayList<>();
+
+    // Encrypted content can't be truncated without breaking its decryption
+    String contentColumn = listProjection
+        ? "CASE WHEN " + KEY_LOCKED + " = 1 THEN " + KEY_CONTENT
+        + " ELSE substr(" + KEY_CONTENT + ", 1, " + LIST_CONTENT_LENGTH + ") END"
+        : KEY_CONTENT;
 
     // Generic query to be specialized with conditions passed as parameter
     String query = "SELECT "
         + KEY_CREATION + ","
         + KEY_LAST_MODIFICATION + ","
         + KEY_TITLE + ","
-        + KEY_CONTENT + ","
+        + contentColumn + ","
         + KEY_ARCHIVED + ","
         + KEY_TRASHED + ","
         + KEY_REMINDER + ","
@@ -436,82 +1103,403 @@ public class DbHelper extends SQLiteOpenHelper {
         + KEY_LOCKED + ","
         + KEY_CHECKLIST + ","
         + KEY_CATEGORY + ","
-        + KEY_CATEGORY_NAME + ","
+        + TABLE_CATEGORY + "." + KEY_CATEGORY_NAME + ","
         + KEY_CATEGORY_DESCRIPTION + ","
         + KEY_CATEGORY_COLOR
+        + (listProjection
+        ? ", " + FIRST_ATTACHMENT + "." + KEY_ATTACHMENT_ID + ","
+        + FIRST_ATTACHMENT + "." + KEY_ATTACHMENT_URI + ","
+        + FIRST_ATTACHMENT + "." + KEY_ATTACHMENT_MIME_TYPE + ","
+        + " (SELECT COUNT(*) FROM " + TABLE_ATTACHMENTS
+        + " WHERE " + KEY_ATTACHMENT_NOTE_ID + " = " + TABLE_NOTES + "." + KEY_CREATION + ")"
+        : "")
         + " FROM " + TABLE_NOTES
         + " LEFT JOIN " + TABLE_CATEGORY + " USING( " + KEY_CATEGORY + ") "
+        + (listProjection
+        ? " LEFT JOIN " + TABLE_ATTACHMENTS + " AS " + FIRST_ATTACHMENT
+        + " ON " + FIRST_ATTACHMENT + "." + KEY_ATTACHMENT_ID + " = ("
+        + " SELECT MIN(" + KEY_ATTACHMENT_ID + ")"
+        + " FROM " + TABLE_ATTACHMENTS
+        + " WHERE " + KEY_ATTACHMENT_NOTE_ID + " = " + TABLE_NOTES + "." + KEY_CREATION + ") "
+        : "")
         + whereCondition
-        + (order ? " ORDER BY " + sortColumn + " COLLATE NOCASE " + sortOrder : "");
+        + orderClause;
+
+    LogDelegate.v("Query: " + query);
+
+    try (Cursor cursor = getDatabase().rawQuery(query, selectionArgs)) {
+
+      if (listProjection) {
+        List<Note> notes = new CompactNotesList(cursor, prefs.getString(PREF_PASSWORD, ""));
+        LogDelegate.v("Query: Retrieval finished!");
+        return notes;
+      }
+
+      if (cursor.moveToFirst()) {
+        do {
+          int i = 0;
+          Note note = new Note();
+          note.setCreation(cursor.getLong(i++));
+          note.setLastModification(cursor.getLong(i++));
+          note.setTitle(cursor.getString(i++));
+          note.setContent(cursor.getString(i++));
+          note.setArchived("1".equals(cursor.getString(i++)));
+          note.setTrashed("1".equals(cursor.getString(i++)));
+          note.setAlarm(cursor.getString(i++));
+          note.setReminderFired(cursor.getInt(i++));
+          note.setRecurrenceRule(cursor.getString(i++));
+          note.setLatitude(cursor.getDouble(i++));
+          note.setLongitude(cursor.getDouble(i++));
+          note.setAddress(cursor.getString(i++));
+          note.setLocked("1".equals(cursor.getString(i++)));
+          note.setChecklist("1".equals(cursor.getString(i++)));
+
+          // Eventual decryption of content
+          if (Boolean.TRUE.equals(note.isLocked())) {
+            note.setContent(
+                Security.decrypt(note.getContent(), prefs.getString(PREF_PASSWORD, "")));
+          }
+
+          // Set category
+          long categoryId = cursor.getLong(i++);
+          if (categoryId != 0) {
+            Category category = new Category(categoryId, cursor.getString(i++),
+                cursor.getString(i++), cursor.getString(i));
+            note.setCategory(category);
+          }
+
+          // Adding note to list
+          noteList.add(note);
+
+        } while (cursor.moveToNext());
+      }
+
+    }
+
+    LogDelegate.v("Query: Retrieval finished!");
+    return noteList;
+  }
+
+
+  /**
+   * Retrieves with a single query the attachments of an already retrieved notes list
+   */
+  private void loadNotesAttachments(List<Note> notes) {
+    StringBuilder ids = new StringBuilder();
+    for (Note note : notes) {
+      ids.append(ids.length() > 0 ? "," : "").append(note.get_id());
+    }
+    loadNotesAttachments(notes, " WHERE " + KEY_CREATION + " IN (" + ids + ")", null);
+  }
+
+
+  /**
+   * Retrieves with a single query the attachments of all the notes matching the same condition used
+   * to retrieve them, and binds them to their notes in a single pass.
+   */
+  private void loadNotesAttachments(List<Note> notes, String whereCondition,
+      String[] selectionArgs) {
+    if (notes.isEmpty()) {
+      return;
+    }
+
+    HashMap<Long, ArrayList<Attachment>> attachmentsMap = new HashMap<>();
+    String sql = "SELECT "
+        + KEY_ATTACHMENT_NOTE_ID + ","
+        + KEY_ATTACHMENT_ID + ","
+        + KEY_ATTACHMENT_URI + ","
+        + KEY_ATTACHMENT_NAME + ","
+        + KEY_ATTACHMENT_SIZE + ","
+        + KEY_ATTACHMENT_LENGTH + ","
+        + KEY_ATTACHMENT_MIME_TYPE
+        + " FROM " + TABLE_ATTACHMENTS
+        + " WHERE " + KEY_ATTACHMENT_NOTE_ID + " IN ("
+        + " SELECT " + KEY_CREATION
+        + " FROM " + TABLE_NOTES
+        + " LEFT JOIN " + TABLE_CATEGORY + " USING( " + KEY_CATEGORY + ") "
+        + whereCondition
+        + ")"
+        + " ORDER BY " + KEY_ATTACHMENT_ID;
+
+    try (Cursor cursor = getDatabase().rawQuery(sql, selectionArgs)) {
+      if (cursor.moveToFirst()) {
+        do {
+          long noteId = cursor.getLong(0);
+          ArrayList<Attachment> noteAttachments = attachmentsMap.get(noteId);
+          if (noteAttachments == null) {
+            noteAttachments = new ArrayList<>();
+            attachmentsMap.put(noteId, noteAttachments);
+          }
+          noteAttachments.add(new Attachment(cursor.getLong(1),
+              Uri.parse(cursor.getString(2)), cursor.getString(3), cursor.getInt(4),
+              (long) cursor.getInt(5), cursor.getString(6)));
+        } while (cursor.moveToNext());
+      }
+    }
+
+    for (Note note : notes) {
+      ArrayList<Attachment> noteAttachments = attachmentsMap.get(note.get_id());
+      note.setAttachmentsList(noteAttachments != null ? noteAttachments : new ArrayList<>());
+    }
+  }
+
+
+  /**
+   * Completes notes retrieved for list rendering with their full content and attachments. Notes
+   * are updated in place to keep them usable where they're already referenced, like adapters.
+   */
+  public void hydrateNotes(List<Note> notes) {
+    List<Note> partialNotes = new ArrayList<>();
+    for (Note note : notes) {
+      if (note.isPartial()) {
+        partialNotes.add(note);
+      }
+    }
+    if (partialNotes.isEmpty()) {
+      return;
+    }
+
+    HashMap<Long, Note> fullNotes = new HashMap<>();
+    for (String ids : getNotesIdsChunks(partialNotes)) {
+      List<Note> notesChunk = getNotes(" WHERE " + KEY_ID + " IN (" + ids + ")", "", null);
+      loadNotesAttachments(notesChunk);
+      for (Note fullNote : notesChunk) {
+        fullNotes.put(fullNote.get_id(), fullNote);
+      }
+    }
+
+    for (Note note : partialNotes) {
+      Note fullNote = fullNotes.get(note.get_id());
+      if (fullNote != null) {
+        note.setContent(fullNote.getContent());
+        note.setAttachmentsList(new ArrayList<>(fullNote.getAttachmentsList()));
+      }
+      note.setPartial(false);
+    }
+  }
+
+
+  public Note hydrateNote(Note note) {
+    hydrateNotes(Collections.singletonList(note));
+    return note;
+  }
+
+
+  /**
+   * Archives/restore single note
+   */
+  public void archiveNote(Note note, boolean archive) {
+    note.setArchived(archive);
+    updateNote(note, false);
+  }
+
+
+  /**
+   * Trashes/restore single note
+   */
+  public void trashNote(Note note, boolean trash) {
+    note.setTrashed(trash);
+    updateNote(note, false);
+  }
+
+
+  /**
+   * Archives/restore multiple notes with a single transaction
+   */
+  public void archiveNotes(List<Note> notes, boolean archive) {
+    ContentValues values = new ContentValues();
+    values.put(KEY_ARCHIVED, archive);
+    updateNotes(notes, values);
+    for (Note note : notes) {
+      note.setArchived(archive);
+    }
+  }
+
+
+  /**
+   * Trashes/restore multiple notes with a single transaction
+   */
+  public void trashNotes(List<Note> notes, boolean trash) {
+    ContentValues values = new ContentValues();
+    values.put(KEY_TRASHED, trash);
+    updateNotes(notes, values);
+    for (Note note : notes) {
+      note.setTrashed(trash);
+    }
+  }
+
+
+  /**
+   * Sets category of multiple notes with a single transaction
+   *
+   * @param category Category to set, null to remove it
+   */
+  public void categorizeNotes(List<Note> notes, Category category) {
+    ContentValues values = new ContentValues();
+    if (category != null && category.getId() != null && category.getId() != 0) {
+      values.put(KEY_CATEGORY, category.getId());
+    } else {
+      values.putNull(KEY_CATEGORY);
+    }
+    updateNotes(notes, values);
+    for (Note note : notes) {
+      note.setCategory(category);
+    }
+  }
+
+
+  /**
+   * Updates the same columns of multiple notes with a single transaction, without touching their
+   * last modification
+   */
+  private void updateNotes(List<Note> notes, ContentValues values) {
+    SQLiteDatabase db = getDatabase(true);
+    List<NoteChange> changes = new ArrayList<>();
+    db.beginTransactionNonExclusive();
+    try {
+      for (String ids : getNotesIdsChunks(notes)) {
+        String idsCondition = KEY_ID + " IN (" + ids + ")";
+        Map<Long, ContentValues> previousValues = getNavigationValues(db, idsCondition, null);
+        update(db, TABLE_NOTES, values, idsCondition, null);
+        changes.addAll(getUpdateChanges(previousValues, values));
+      }
+      updateCategoryCounts(db, changes);
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    publishChanges(changes);
+  }
 
-    LogDelegate.v("Query: " + query);
 
-    try (Cursor cursor = getDatabase().rawQuery(query, null)) {
+  /**
+   * Reads navigation columns of the notes matching the condition, used to describe their changes
+   */
+  private Map<Long, ContentValues> getNavigationValues(SQLiteDatabase db, String whereCondition,
+      String[] selectionArgs) {
+    Map<Long, ContentValues> navigationValues = new LinkedHashMap<>();
+    try (Cursor cursor = db.query(TABLE_NOTES, new String[]{KEY_ID, KEY_ARCHIVED, KEY_TRASHED,
+        KEY_CATEGORY, KEY_REMINDER}, whereCondition, selectionArgs, null, null, null)) {
+      while (cursor.moveToNext()) {
+        ContentValues values = new ContentValues();
+        values.put(KEY_ARCHIVED, cursor.getInt(1) == 1);
+        values.put(KEY_TRASHED, cursor.getInt(2) == 1);
+        values.put(KEY_CATEGORY, cursor.isNull(3) ? null : cursor.getLong(3));
+        values.put(KEY_REMINDER, cursor.getString(4));
+        navigationValues.put(cursor.getLong(0), values);
+      }
+    }
+    return navigationValues;
+  }
 
-      if (cursor.moveToFirst()) {
-        do {
-          int i = 0;
-          Note note = new Note();
-          note.setCreation(cursor.getLong(i++));
-          note.setLastModification(cursor.getLong(i++));
-          note.setTitle(cursor.getString(i++));
-          note.setContent(cursor.getString(i++));
-          note.setArchived("1".equals(cursor.getString(i++)));
-          note.setTrashed("1".equals(cursor.getString(i++)));
-          note.setAlarm(cursor.getString(i++));
-          note.setReminderFired(cursor.getInt(i++));
-          note.setRecurrenceRule(cursor.getString(i++));
-          note.setLatitude(cursor.getDouble(i++));
-          note.setLongitude(cursor.getDouble(i++));
-          note.setAddress(cursor.getString(i++));
-          note.setLocked("1".equals(cursor.getString(i++)));
-          note.setChecklist("1".equals(cursor.getString(i++)));
 
-          // Eventual decryption of content
-          if (Boolean.TRUE.equals(note.isLocked())) {
-            note.setContent(
-                Security.decrypt(note.getContent(), prefs.getString(PREF_PASSWORD, "")));
-          }
+  private List<NoteChange> getUpdateChanges(Map<Long, ContentValues> previousValues,
+      ContentValues updatedValues) {
+    Set<String> changedColumns = new HashSet<>(updatedValues.keySet());
+    List<NoteChange> changes = new ArrayList<>(previousValues.size());
+    for (Map.Entry<Long, ContentValues> entry : previousValues.entrySet()) {
+      ContentValues values = new ContentValues(entry.getValue());
+      values.putAll(updatedValues);
+      // Only navigation columns are described
+      for (String column : changedColumns) {
+        if (!entry.getValue().containsKey(column)) {
+          values.remove(column);
+        }
+      }
+      changes.add(new NoteChange(NoteChange.Type.UPDATED, entry.getKey(), null, changedColumns,
+          entry.getValue(), values));
+    }
+    return changes;
+  }
 
-          // Set category
-          long categoryId = cursor.getLong(i++);
-          if (categoryId != 0) {
-            Category category = new Category(categoryId, cursor.getString(i++),
-                cursor.getString(i++), cursor.getString(i));
-            note.setCategory(category);
-          }
 
-          // Add eventual attachments uri
-          note.setAttachmentsList(getNoteAttachments(note));
+  private List<NoteChange> getDeleteChanges(Map<Long, ContentValues> previousValues) {
+    List<NoteChange> changes = new ArrayList<>(previousValues.size());
+    for (Map.Entry<Long, ContentValues> entry : previousValues.entrySet()) {
+      changes.add(new NoteChange(NoteChange.Type.DELETED, entry.getKey(), null, null,
+          entry.getValue(), null));
+    }
+    return changes;
+  }
 
-          // Adding note to list
-          noteList.add(note);
 
-        } while (cursor.moveToNext());
+  /**
+   * Applies to category counters the changes of notes, within the transaction that made them.
+   * Counters are not updated while upgrading since they're filled after the schema upgrade.
+   */
+  private void updateCategoryCounts(SQLiteDatabase db, List<NoteChange> changes) {
+    if (upgradingDatabase.get() != null) {
+      return;
+    }
+    Map<Long, Integer> deltas = new HashMap<>();
+    for (NoteChange change : changes) {
+      addCategoryCountDelta(deltas, change.getPreviousValues(), -1);
+      addCategoryCountDelta(deltas, change.getValues(), 1);
+    }
+    for (Map.Entry<Long, Integer> delta : deltas.entrySet()) {
+      if (delta.getValue() != 0) {
+        statements.executeInsert(db, CATEGORY_COUNT_INSERT_STATEMENT, delta.getKey());
+        statements.executeUpdateDelete(db, CATEGORY_COUNT_UPDATE_STATEMENT, delta.getValue(),
+            delta.getKey());
       }
-
     }
+  }
 
-    LogDelegate.v("Query: Retrieval finished!");
-    return noteList;
+
+  /**
+   * Only not trashed notes are counted, as navigation drawer shows
+   */
+  private void addCategoryCountDelta(Map<Long, Integer> deltas, ContentValues navigationValues,
+      int delta) {
+    if (navigationValues == null || Boolean.TRUE.equals(navigationValues.getAsBoolean(
+        KEY_TRASHED))) {
+      return;
+    }
+    Long categoryId = navigationValues.getAsLong(KEY_CATEGORY);
+    if (categoryId != null) {
+      Integer categoryDelta = deltas.get(categoryId);
+      deltas.put(categoryId, (categoryDelta != null ? categoryDelta : 0) + delta);
+    }
   }
 
 
   /**
-   * Archives/restore single note
+   * Notifies committed changes to the listener first, to keep what it caches coherent, and then to
+   * events subscribers. Data upgrades are not published since nothing can be cached yet.
    */
-  public void archiveNote(Note note, boolean archive) {
-    note.setArchived(archive);
-    updateNote(note, false);
+  private void publishChanges(List<NoteChange> changes) {
+    if (changes.isEmpty() || upgradingDatabase.get() != null) {
+      return;
+    }
+    OnNotesChangedListener listener = onNotesChangedListener;
+    if (listener != null) {
+      listener.onNotesChanged(changes);
+    }
+    EventBus.getDefault().post(new NotesChangedEvent(changes));
   }
 
 
   /**
-   * Trashes/restore single note
+   * Splits notes identifiers into comma separated lists small enough to be used into a single
+   * statement
    */
-  public void trashNote(Note note, boolean trash) {
-    note.setTrashed(trash);
-    updateNote(note, false);
+  private List<String> getNotesIdsChunks(List<Note> notes) {
+    List<String> chunks = new ArrayList<>();
+    StringBuilder ids = new StringBuilder();
+    int chunkSize = 0;
+    for (Note note : notes) {
+      if (chunkSize == BULK_STATEMENT_NOTES_LIMIT) {
+        chunks.add(ids.toString());
+        ids.setLength(0);
+        chunkSize = 0;
+      }
+      ids.append(chunkSize > 0 ? "," : "").append(note.get_id());
+      chunkSize++;
+    }
+    if (chunkSize > 0) {
+      chunks.add(ids.toString());
+    }
+    return chunks;
   }
 
 
@@ -536,59 +1524,201 @@ public class DbHelper extends SQLiteOpenHelper {
    */
   public boolean deleteNote(long noteId, boolean keepAttachments) {
     SQLiteDatabase db = getDatabase(true);
-    db.delete(TABLE_NOTES, KEY_ID + " = ?", new String[]{String.valueOf(noteId)});
-    if (!keepAttachments) {
-      db.delete(TABLE_ATTACHMENTS, KEY_ATTACHMENT_NOTE_ID + " = ?",
-          new String[]{String.valueOf(noteId)});
+    List<NoteChange> changes;
+    db.beginTransactionNonExclusive();
+    try {
+      changes = getDeleteChanges(getNavigationValues(db, KEY_ID + " = ?",
+          new String[]{String.valueOf(noteId)}));
+      statements.executeUpdateDelete(db, NOTE_DELETE_STATEMENT, noteId);
+      if (!keepAttachments) {
+        statements.executeUpdateDelete(db, NOTE_ATTACHMENTS_DELETE_STATEMENT, noteId);
+      }
+      updateCategoryCounts(db, changes);
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
     }
+    publishChanges(changes);
     return true;
   }
 
 
   /**
-   * Empties trash deleting all trashed notes
+   * Deletes multiple notes with a single transaction, eventually keeping their attachments records
+   */
+  public void deleteNotes(List<Note> notes, boolean keepAttachments) {
+    SQLiteDatabase db = getDatabase(true);
+    List<NoteChange> changes = new ArrayList<>();
+    db.beginTransactionNonExclusive();
+    try {
+      for (String ids : getNotesIdsChunks(notes)) {
+        String idsCondition = KEY_ID + " IN (" + ids + ")";
+        changes.addAll(getDeleteChanges(getNavigationValues(db, idsCondition, null)));
+        delete(db, TABLE_NOTES, idsCondition, null);
+        if (!keepAttachments) {
+          delete(db, TABLE_ATTACHMENTS, KEY_ATTACHMENT_NOTE_ID + " IN (" + ids + ")", null);
+        }
+      }
+      updateCategoryCounts(db, changes);
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    publishChanges(changes);
+  }
+
+
+  /**
+   * Empties trash deleting all trashed notes and their attachments with a single transaction. Uris
+   * of the deleted attachments are moved into a table where files still to be removed are taken
+   * from by {@link #getDeletedAttachments(long, int)}.
+   *
+   * @return Number of attachments files waiting to be removed
+   */
+  public long emptyTrash() {
+    SQLiteDatabase db = getDatabase(true);
+    List<NoteChange> changes;
+    String trashedNotesIds = "SELECT " + KEY_ID + " FROM " + TABLE_NOTES
+        + " WHERE " + KEY_TRASHED + " = 1";
+    db.beginTransactionNonExclusive();
+    try {
+      changes = getDeleteChanges(getNavigationValues(db, KEY_TRASHED + " = 1", null));
+      db.execSQL("INSERT INTO " + TABLE_DELETED_ATTACHMENTS + " (" + KEY_DELETED_ATTACHMENTS_URI
+          + ") SELECT " + KEY_ATTACHMENT_URI + " FROM " + TABLE_ATTACHMENTS
+          + " WHERE " + KEY_ATTACHMENT_NOTE_ID + " IN (" + trashedNotesIds + ")"
+          + " ORDER BY " + KEY_ATTACHMENT_ID);
+      delete(db, TABLE_ATTACHMENTS, KEY_ATTACHMENT_NOTE_ID + " IN (" + trashedNotesIds + ")",
+          null);
+      int deletedNotes = delete(db, TABLE_NOTES, KEY_TRASHED + " = 1", null);
+      db.setTransactionSuccessful();
+      LogDelegate.i("Emptied trash deleting " + deletedNotes + " notes");
+    } finally {
+      db.endTransaction();
+    }
+    publishChanges(changes);
+    return DatabaseUtils.queryNumEntries(getDatabase(), TABLE_DELETED_ATTACHMENTS);
+  }
+
+
+  /**
+   * Batch of the deleted attachments files still to be removed, sorted by deletion
+   *
+   * @param afterId Last one of the previous batch
+   * @return Uris of the attachments by their deletion identifier
    */
-  public void emptyTrash() {
-    for (Note note : getNotesTrashed()) {
-      deleteNote(note);
+  public SortedMap<Long, String> getDeletedAttachments(long afterId, int limit) {
+    SortedMap<Long, String> deletedAttachments = new TreeMap<>();
+    try (Cursor cursor = getDatabase().rawQuery("SELECT " + KEY_DELETED_ATTACHMENTS_ID + ","
+        + KEY_DELETED_ATTACHMENTS_URI + " FROM " + TABLE_DELETED_ATTACHMENTS
+        + " WHERE " + KEY_DELETED_ATTACHMENTS_ID + " > ?"
+        + " ORDER BY " + KEY_DELETED_ATTACHMENTS_ID + " LIMIT " + limit,
+        new String[]{String.valueOf(afterId)})) {
+      while (cursor.moveToNext()) {
+        deletedAttachments.put(cursor.getLong(0), cursor.getString(1));
+      }
     }
+    return deletedAttachments;
+  }
+
+
+  /**
+   * Forgets the deleted attachments up to the given one, once their files have been removed
+   */
+  public void removeDeletedAttachments(long upToId) {
+    delete(getDatabase(true), TABLE_DELETED_ATTACHMENTS, KEY_DELETED_ATTACHMENTS_ID + " <= ?",
+        new String[]{String.valueOf(upToId)});
   }
 
 
   /**
-   * Gets notes matching pattern with title or content text
+   * Gets notes matching pattern with title or content text. Words are matched by prefix through the
+   * full-text index, notes with title matches are ranked first.
    *
    * @param pattern String to match with
    * @return Notes list
    */
   public List<Note> getNotesByPattern(String pattern) {
-    String escapedPattern = escapeSql(pattern);
+    List<String> tokens = getFullTextTokens(pattern);
+    if (!tokens.isEmpty()) {
+      try {
+        return getNotesByFullText(tokens);
+      } catch (SQLiteException e) {
+        LogDelegate.w("Full-text search failed, falling back to pattern matching", e);
+      }
+    }
+    return getNotesByLikePattern(pattern);
+  }
+
+
+  private List<Note> getNotesByFullText(List<String> tokens) {
+    StringBuilder query = new StringBuilder();
+    StringBuilder titleQuery = new StringBuilder();
+    for (String token : tokens) {
+      query.append(token).append("* ");
+      titleQuery.append(KEY_TITLE).append(":").append(token).append("* ");
+    }
+    return getNotes(getSearchNavigationQuery()
+        .matching(query.toString().trim(), titleQuery.toString().trim()));
+  }
+
+
+  private List<Note> getNotesByLikePattern(String pattern) {
+    return getNotes(getSearchNavigationQuery().containing(pattern));
+  }
+
+
+  private NoteQuery getSearchNavigationQuery() {
     int navigation = Navigation.getNavigation();
-    String whereCondition = " WHERE "
-        + KEY_TRASHED + (navigation == Navigation.TRASH ? " IS 1" : " IS NOT 1")
-        + (navigation == Navigation.ARCHIVE ? " AND " + KEY_ARCHIVED + " IS 1" : "")
-        + (navigation == Navigation.CATEGORY ? " AND " + KEY_CATEGORY + " = " + Navigation
-        .getCategory() : "")
-        + (navigation == Navigation.UNCATEGORIZED ? " AND (" + KEY_CATEGORY + " IS NULL OR "
-        + KEY_CATEGORY_ID
-        + " == 0) " : "")
-        + (Navigation.checkNavigation(Navigation.REMINDERS) ? " AND " + KEY_REMINDER
-        + " IS NOT NULL" : "")
-        + " AND ("
-        + " ( " + KEY_LOCKED + " IS NOT 1 AND (" + KEY_TITLE + " LIKE '%" + escapedPattern
-        + "%' ESCAPE '\\' " + " OR "
-        +
-        KEY_CONTENT + " LIKE '%" + escapedPattern + "%' ESCAPE '\\' ))"
-        + " OR ( " + KEY_LOCKED + " = 1 AND " + KEY_TITLE + " LIKE '%" + escapedPattern
-        + "%' ESCAPE '\\' )"
-        + ")";
-    return getNotes(whereCondition, true);
-  }
-
-  static String escapeSql(String pattern) {
-    return StringUtils.replace(pattern, "'", "''")
-        .replace("%", "\\%")
-        .replace("_", "\\_");
+    NoteQuery query = new NoteQuery().trashed(navigation == Navigation.TRASH);
+    if (navigation == Navigation.ARCHIVE) {
+      query.archived(true);
+    } else if (navigation == Navigation.CATEGORY) {
+      query.category(Navigation.getCategory());
+    } else if (navigation == Navigation.UNCATEGORIZED) {
+      query.category(null);
+    }
+    if (Navigation.checkNavigation(Navigation.REMINDERS)) {
+      query.withReminder();
+    }
+    return query;
+  }
+
+
+  /**
+   * Splits the pattern into words the same way the full-text index tokenizer does (non-alphanumeric
+   * characters of any script are separators). An empty list is returned when the pattern has no
+   * words or contains ideographic scripts, that are not split into words by the tokenizer, and must
+   * be searched by pattern matching instead.
+   */
+  static List<String> getFullTextTokens(String pattern) {
+    List<String> tokens = new ArrayList<>();
+    StringBuilder token = new StringBuilder();
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      if (isIdeographic(c)) {
+        return new ArrayList<>();
+      }
+      if (Character.isLetterOrDigit(c)) {
+        // Keeps words from being read as operators, tokenizer folds the rest itself
+        token.append(c < 128 ? Character.toLowerCase(c) : c);
+      } else if (token.length() > 0) {
+        tokens.add(token.toString());
+        token = new StringBuilder();
+      }
+    }
+    if (token.length() > 0) {
+      tokens.add(token.toString());
+    }
+    return tokens;
+  }
+
+
+  private static boolean isIdeographic(char c) {
+    Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+    return Character.isIdeographic(c)
+        || Character.UnicodeBlock.HIRAGANA.equals(block)
+        || Character.UnicodeBlock.KATAKANA.equals(block)
+        || Character.UnicodeBlock.HANGUL_SYLLABLES.equals(block);
   }
 
 
@@ -599,11 +1729,33 @@ public class DbHelper extends SQLiteOpenHelper {
    * @return Notes list
    */
   public List<Note> getNotesWithReminder(boolean filterPastReminders) {
-    String whereCondition = " WHERE " + KEY_REMINDER
-        + (filterPastReminders ? " >= " + Calendar.getInstance().getTimeInMillis() : " IS NOT NULL")
-        + " AND " + KEY_ARCHIVED + " IS NOT 1"
-        + " AND " + KEY_TRASHED + " IS NOT 1";
-    return getNotes(whereCondition, true);
+    return getNotes(getNotesWithReminderQuery(filterPastReminders));
+  }
+
+
+  private NoteQuery getNotesWithReminderQuery(boolean filterPastReminders) {
+    return getRemindersQuery(filterPastReminders ? Calendar.getInstance().getTimeInMillis()
+        : Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+
+  /**
+   * Active notes with reminder into the window [from, to). Bounds are bound parameters compared
+   * with the bare column, so the index on trashed, archived and reminder is used for the range.
+   */
+  private NoteQuery getRemindersQuery(long from, long to) {
+    return new NoteQuery().trashed(false).archived(false).reminderBetween(from, to);
+  }
+
+
+  /**
+   * Active notes with a reminder not fired yet into the window [from, to), sooner ones first
+   *
+   * @param from Window start, inclusive
+   * @param to Window end, exclusive
+   */
+  public List<Note> getUpcomingReminders(long from, long to) {
+    return getNotes(getRemindersQuery(from, to).reminderFired(false).sortBy(KEY_REMINDER));
   }
 
 
@@ -613,11 +1765,7 @@ public class DbHelper extends SQLiteOpenHelper {
    * @return Notes list
    */
   public List<Note> getNotesWithReminderNotFired() {
-    String whereCondition = " WHERE " + KEY_REMINDER + " IS NOT NULL"
-        + " AND " + KEY_REMINDER_FIRED + " IS NOT 1"
-        + " AND " + KEY_ARCHIVED + " IS NOT 1"
-        + " AND " + KEY_TRASHED + " IS NOT 1";
-    return getNotes(whereCondition, true);
+    return getUpcomingReminders(Long.MIN_VALUE, Long.MAX_VALUE);
   }
 
 
@@ -625,21 +1773,19 @@ public class DbHelper extends SQLiteOpenHelper {
    * Retrieves locked or unlocked notes
    */
   public List<Note> getNotesWithLock(boolean locked) {
-    String whereCondition = " WHERE " + KEY_LOCKED + (locked ? " = 1 " : " IS NOT 1 ");
-    return getNotes(whereCondition, true);
+    return getNotes(new NoteQuery().locked(locked));
   }
 
 
   /**
-   * Search for notes with reminder expiring the current day
+   * Search for notes with reminder expiring the current day, whose boundaries are the local ones
    *
    * @return Notes list
    */
   public List<Note> getTodayReminders() {
-    String whereCondition =
-        " WHERE DATE(" + KEY_REMINDER + "/1000, 'unixepoch') = DATE('now') AND " +
-            KEY_TRASHED + " IS NOT 1";
-    return getNotes(whereCondition, false);
+    long now = Calendar.getInstance().getTimeInMillis();
+    return getNotes(new NoteQuery().reminderBetween(DateUtils.getStartOfDay(now, 0),
+        DateUtils.getStartOfDay(now, 1)).trashed(false).unsorted());
   }
 
 
@@ -653,14 +1799,12 @@ public class DbHelper extends SQLiteOpenHelper {
 
 
   public List<Note> getChecklists() {
-    String whereCondition = " WHERE " + KEY_CHECKLIST + " = 1";
-    return getNotes(whereCondition, false);
+    return getNotes(new NoteQuery().checklist(true).unsorted());
   }
 
 
   public List<Note> getMasked() {
-    String whereCondition = " WHERE " + KEY_LOCKED + " = 1";
-    return getNotes(whereCondition, false);
+    return getNotes(new NoteQuery().locked(true).unsorted());
   }
 
 
@@ -671,19 +1815,36 @@ public class DbHelper extends SQLiteOpenHelper {
    * @return List of notes with requested category
    */
   public List<Note> getNotesByCategory(Long categoryId) {
-    List<Note> notes;
+    return getNotes(getNotesByCategoryQuery(categoryId));
+  }
+
+
+  private NoteQuery getNotesByCategoryQuery(Long categoryId) {
     boolean filterArchived = prefs
         .getBoolean(PREF_FILTER_ARCHIVED_IN_CATEGORIES + categoryId, false);
-    try {
-      String whereCondition = " WHERE "
-          + KEY_CATEGORY_ID + " = " + categoryId
-          + " AND " + KEY_TRASHED + " IS NOT 1"
-          + (filterArchived ? " AND " + KEY_ARCHIVED + " IS NOT 1" : "");
-      notes = getNotes(whereCondition, true);
-    } catch (NumberFormatException e) {
-      notes = getAllNotes(true);
+    NoteQuery query = new NoteQuery().category(categoryId).trashed(false);
+    return filterArchived ? query.archived(false) : query;
+  }
+
+
+  /**
+   * Counts with a single aggregate query the notes of navigation entries hidden when empty
+   */
+  public NavigationCounts getNavigationCounts() {
+    String query = "SELECT "
+        + " SUM(CASE WHEN " + KEY_TRASHED + " = 0 AND " + KEY_ARCHIVED + " = 1 THEN 1 ELSE 0 END),"
+        + " SUM(CASE WHEN " + KEY_TRASHED + " = 1 THEN 1 ELSE 0 END),"
+        + " SUM(CASE WHEN " + KEY_CATEGORY + " IS NULL THEN 1 ELSE 0 END),"
+        + " SUM(CASE WHEN " + KEY_TRASHED + " = 0 AND " + KEY_ARCHIVED + " = 0 AND "
+        + KEY_REMINDER + " IS NOT NULL THEN 1 ELSE 0 END)"
+        + " FROM " + TABLE_NOTES;
+    try (Cursor cursor = getDatabase().rawQuery(query, null)) {
+      // Sums are NULL when there are no notes at all, and read as 0
+      return cursor.moveToFirst()
+          ? new NavigationCounts(cursor.getInt(0), cursor.getInt(1), cursor.getInt(2),
+          cursor.getInt(3))
+          : new NavigationCounts(0, 0, 0, 0);
     }
-    return notes;
   }
 
 
@@ -699,34 +1860,70 @@ public class DbHelper extends SQLiteOpenHelper {
    * Retrieves all tags of a specified note
    */
   public List<Tag> getTags(Note note) {
+    List<Tag> tags = isUpgradePending(NOTE_TAGS_UPGRADE_VERSION)
+        ? getTagsFromNotesText(note)
+        : getIndexedTags(note);
+    Collections.sort(tags, (tag1, tag2) -> tag1.getText().compareToIgnoreCase(tag2.getText()));
+    return tags;
+  }
+
+
+  private List<Tag> getIndexedTags(Note note) {
     List<Tag> tags = new ArrayList<>();
-    HashMap<String, Integer> tagsMap = new HashMap<>();
-
-    String whereCondition = " WHERE "
-        + (note != null ? KEY_ID + " = " + note.get_id() + " AND " : "")
-        + "(" + KEY_CONTENT + " LIKE '%#%' OR " + KEY_TITLE + " LIKE '%#%' " + ")"
-        + " AND " + KEY_TRASHED + " IS " + (Navigation.checkNavigation(Navigation.TRASH) ? ""
-        : " NOT ") + " 1";
-    List<Note> notesRetrieved = getNotes(whereCondition, true);
-
-    for (Note noteRetrieved : notesRetrieved) {
-      HashMap<String, Integer> tagsRetrieved = TagsHelper.retrieveTags(noteRetrieved);
-      for (String s : tagsRetrieved.keySet()) {
-        int count = tagsMap.get(s) == null ? 0 : tagsMap.get(s);
-        tagsMap.put(s, ++count);
+
+    // Trashed notes tags are shown only when navigating trash
+    String query = "SELECT " + KEY_NOTE_TAGS_TAG + ", COUNT(*)"
+        + " FROM " + TABLE_NOTE_TAGS
+        + " JOIN " + TABLE_NOTES + " ON " + KEY_NOTE_TAGS_NOTE_ID + " = " + KEY_CREATION
+        + " WHERE " + KEY_TRASHED + " = " + (Navigation.checkNavigation(Navigation.TRASH) ? "1"
+        : "0")
+        + (note != null ? " AND " + KEY_NOTE_TAGS_NOTE_ID + " = " + note.get_id() : "")
+        + " GROUP BY " + KEY_NOTE_TAGS_TAG;
+
+    try (Cursor cursor = getDatabase().rawQuery(query, null)) {
+      while (cursor.moveToNext()) {
+        tags.add(new Tag(cursor.getString(0), cursor.getInt(1)));
       }
     }
+    return tags;
+  }
 
-    for (Entry<String, Integer> entry : tagsMap.entrySet()) {
-      Tag tag = new Tag(entry.getKey(), entry.getValue());
-      tags.add(tag);
-    }
 
-    Collections.sort(tags, (tag1, tag2) -> tag1.getText().compareToIgnoreCase(tag2.getText()));
+  /**
+   * Parses tags from notes text, used until the tags index is filled by its background upgrade
+   */
+  private List<Tag> getTagsFromNotesText(Note note) {
+    NoteQuery query = getNotesWithTagsQuery().unsorted();
+    if (note != null) {
+      query.id(note.get_id());
+    }
+    Map<String, Integer> tagsCounts = new HashMap<>();
+    for (Note noteWithTags : getNotes(query)) {
+      for (String tag : TagsHelper.retrieveTags(noteWithTags).keySet()) {
+        Integer count = tagsCounts.get(tag);
+        tagsCounts.put(tag, count == null ? 1 : count + 1);
+      }
+    }
+    List<Tag> tags = new ArrayList<>();
+    for (Map.Entry<String, Integer> tagCount : tagsCounts.entrySet()) {
+      tags.add(new Tag(tagCount.getKey(), tagCount.getValue()));
+    }
     return tags;
   }
 
 
+  /**
+   * Notes that may have tags, locked ones are always included since their content is encrypted.
+   * Trashed notes must be included only if navigating trash.
+   */
+  private NoteQuery getNotesWithTagsQuery() {
+    return new NoteQuery()
+        .where("(" + KEY_CONTENT + " LIKE '%#%' OR " + KEY_TITLE + " LIKE '%#%' OR " + KEY_LOCKED
+            + " = 1)")
+        .trashed(Navigation.checkNavigation(Navigation.TRASH));
+  }
+
+
   /**
    * Retrieves all notes related to category it passed as parameter
    */
@@ -743,44 +1940,45 @@ public class DbHelper extends SQLiteOpenHelper {
    * Retrieves all notes with specified tags
    */
   public List<Note> getNotesByTag(String[] tags) {
-    StringBuilder whereCondition = new StringBuilder();
-    whereCondition.append(" WHERE ");
-    for (int i = 0; i < tags.length; i++) {
-      if (i != 0) {
-        whereCondition.append(" AND ");
+    Set<String> tagsSet = new LinkedHashSet<>();
+    for (String tag : tags) {
+      if (StringUtils.isNotBlank(tag)) {
+        tagsSet.add(tag.trim());
       }
-      whereCondition.append("(" + KEY_CONTENT + " LIKE '%").append(tags[i]).append("%' OR ")
-          .append(KEY_TITLE)
-          .append(" LIKE '%").append(tags[i]).append("%')");
     }
+    if (tagsSet.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    if (isUpgradePending(NOTE_TAGS_UPGRADE_VERSION)) {
+      return getNotesByTagFromNotesText(tagsSet);
+    }
+
     // Trashed notes must be included in search results only if search if performed from trash
-    whereCondition.append(" AND " + KEY_TRASHED + " IS ")
-        .append(Navigation.checkNavigation(Navigation.TRASH) ?
-            "" : "" +
-            " NOT ").append(" 1");
-
-    return rx.Observable.from(getNotes(whereCondition.toString(), true))
-        .map(note -> {
-          boolean matches = rx.Observable.from(tags)
-              .all(tag -> {
-                Pattern p = Pattern.compile(".*(\\s|^)" + tag + "(\\s|$).*",
-                    Pattern.MULTILINE);
-                return p.matcher(
-                    (note.getTitle() + " " + note.getContent())).find();
-              }).toBlocking().single();
-          return matches ? note : null;
-        })
-        .filter(Objects::nonNull)
-        .toList().toBlocking().single();
+    return getNotes(new NoteQuery().tags(tagsSet)
+        .trashed(Navigation.checkNavigation(Navigation.TRASH)));
+  }
+
+
+  /**
+   * Matches tags parsed from notes text, used until the tags index is filled by its background
+   * upgrade
+   */
+  private List<Note> getNotesByTagFromNotesText(Set<String> tags) {
+    List<Note> notes = new ArrayList<>();
+    for (Note note : getNotes(getNotesWithTagsQuery())) {
+      if (TagsHelper.retrieveTags(note).keySet().containsAll(tags)) {
+        notes.add(note);
+      }
+    }
+    return notes;
   }
 
   /**
    * Retrieves all uncompleted checklists
    */
   public List<Note> getNotesByUncompleteChecklist() {
-    String whereCondition =
-        " WHERE " + KEY_CHECKLIST + " = 1 AND " + KEY_CONTENT + " LIKE '%" + UNCHECKED_SYM + "%'";
-    return getNotes(whereCondition, true);
+    return getNotes(new NoteQuery().checklist(true).contentContaining(UNCHECKED_SYM));
   }
 
 
@@ -809,7 +2007,6 @@ public class DbHelper extends SQLiteOpenHelper {
         + KEY_ATTACHMENT_MIME_TYPE
         + " FROM " + TABLE_ATTACHMENTS
         + whereCondition;
-    SQLiteDatabase db;
     Cursor cursor = null;
 
     try {
@@ -848,18 +2045,9 @@ public class DbHelper extends SQLiteOpenHelper {
         + KEY_CATEGORY_NAME + ","
         + KEY_CATEGORY_DESCRIPTION + ","
         + KEY_CATEGORY_COLOR + ","
-        + " COUNT(" + KEY_ID + ") count"
+        + " IFNULL(" + KEY_CATEGORY_COUNTS_NOTES + ", 0) count"
         + " FROM " + TABLE_CATEGORY
-        + " LEFT JOIN ("
-        + " SELECT " + KEY_ID + ", " + KEY_CATEGORY
-        + " FROM " + TABLE_NOTES
-        + " WHERE " + KEY_TRASHED + " IS NOT 1"
-        + ") USING( " + KEY_CATEGORY + ") "
-        + " GROUP BY "
-        + KEY_CATEGORY_ID + ","
-        + KEY_CATEGORY_NAME + ","
-        + KEY_CATEGORY_DESCRIPTION + ","
-        + KEY_CATEGORY_COLOR
+        + " LEFT JOIN " + TABLE_CATEGORY_COUNTS + " USING(" + KEY_CATEGORY_ID + ")"
         + " ORDER BY IFNULL(NULLIF(" + KEY_CATEGORY_NAME + ", ''),'zzzzzzzz') ";
 
     Cursor cursor = null;
@@ -896,8 +2084,15 @@ public class DbHelper extends SQLiteOpenHelper {
     values.put(KEY_CATEGORY_NAME, category.getName());
     values.put(KEY_CATEGORY_DESCRIPTION, category.getDescription());
     values.put(KEY_CATEGORY_COLOR, category.getColor());
+    long start = System.nanoTime();
     getDatabase(true).insertWithOnConflict(TABLE_CATEGORY, KEY_CATEGORY_ID, values, SQLiteDatabase
         .CONFLICT_REPLACE);
+    profiler.recordWrite("INSERT OR REPLACE INTO " + TABLE_CATEGORY + " " + values.keySet(), start,
+        1);
+    OnNotesChangedListener listener = onNotesChangedListener;
+    if (listener != null && category.getId() != null) {
+      listener.onCategoryUpdated(category);
+    }
     return category;
   }
 
@@ -912,17 +2107,28 @@ public class DbHelper extends SQLiteOpenHelper {
     long deleted;
 
     SQLiteDatabase db = getDatabase(true);
-    // Un-categorize notes associated with this category
-    ContentValues values = new ContentValues();
-    values.put(KEY_CATEGORY, "");
-
-    // Updating row
-    db.update(TABLE_NOTES, values, KEY_CATEGORY + " = ?",
-        new String[]{String.valueOf(category.getId())});
-
-    // Delete category
-    deleted = db.delete(TABLE_CATEGORY, KEY_CATEGORY_ID + " = ?",
-        new String[]{String.valueOf(category.getId())});
+    String[] categoryArgs = new String[]{String.valueOf(category.getId())};
+    List<NoteChange> changes;
+    db.beginTransactionNonExclusive();
+    try {
+      // Un-categorize notes associated with this category
+      ContentValues values = new ContentValues();
+      values.putNull(KEY_CATEGORY);
+
+      // Updating row
+      Map<Long, ContentValues> previousValues = getNavigationValues(db, KEY_CATEGORY + " = ?",
+          categoryArgs);
+      update(db, TABLE_NOTES, values, KEY_CATEGORY + " = ?", categoryArgs);
+      changes = getUpdateChanges(previousValues, values);
+      updateCategoryCounts(db, changes);
+
+      // Delete category
+      deleted = delete(db, TABLE_CATEGORY, KEY_CATEGORY_ID + " = ?", categoryArgs);
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    publishChanges(changes);
     return deleted;
   }
 
@@ -972,122 +2178,159 @@ public class DbHelper extends SQLiteOpenHelper {
    */
   public Stats getStats() {
     Stats mStats = new Stats();
+    loadNotesStats(mStats);
+    if (isUpgradePending(NOTE_METRICS_UPGRADE_VERSION)
+        || isUpgradePending(NOTE_TAGS_UPGRADE_VERSION)) {
+      loadNotesTextStats(mStats);
+    }
+    loadAttachmentsStats(mStats);
+    return mStats;
+  }
 
-    // Categories
-    mStats.setCategories(getCategories().size());
-
-    // Everything about notes and their text stats
-    int notesActive = 0;
-    int notesArchived = 0;
-    int notesTrashed = 0;
-    int reminders = 0;
-    int remindersFuture = 0;
-    int checklists = 0;
-    int notesMasked = 0;
-    int tags = 0;
-    int locations = 0;
-    int totalWords = 0;
-    int totalChars = 0;
-    int maxWords = 0;
-    int maxChars = 0;
-    int avgWords;
-    int avgChars;
-    int words;
-    int chars;
-    List<Note> notes = getAllNotes(false);
-    for (Note note : notes) {
-      if (note.isTrashed()) {
-        notesTrashed++;
-      } else if (note.isArchived()) {
-        notesArchived++;
-      } else {
-        notesActive++;
-      }
-      if (note.getAlarm() != null && Long.parseLong(note.getAlarm()) > 0) {
-        if (Long.parseLong(note.getAlarm()) > Calendar.getInstance().getTimeInMillis()) {
-          remindersFuture++;
-        } else {
-          reminders++;
-        }
-      }
-      if (note.isChecklist()) {
-        checklists++;
-      }
-      if (note.isLocked()) {
-        notesMasked++;
-      }
-      tags += TagsHelper.retrieveTags(note).size();
-      if (note.getLongitude() != null && note.getLongitude() != 0) {
-        locations++;
-      }
-      words = NotesHelper.getWords(note);
-      chars = NotesHelper.getChars(note);
-      if (words > maxWords) {
-        maxWords = words;
+
+  /**
+   * Everything about notes and their text stats, computed with a single aggregate query
+   */
+  private void loadNotesStats(Stats mStats) {
+    long now = Calendar.getInstance().getTimeInMillis();
+    String query = "SELECT "
+        + " COUNT(*),"
+        + " SUM(CASE WHEN " + KEY_TRASHED + " = 0 AND " + KEY_ARCHIVED + " = 0 THEN 1 ELSE 0 END),"
+        + " SUM(CASE WHEN " + KEY_TRASHED + " = 0 AND " + KEY_ARCHIVED + " = 1 THEN 1 ELSE 0 END),"
+        + " SUM(CASE WHEN " + KEY_TRASHED + " = 1 THEN 1 ELSE 0 END),"
+        + " SUM(CASE WHEN " + KEY_REMINDER + " > 0 AND " + KEY_REMINDER + " <= " + now
+        + " THEN 1 ELSE 0 END),"
+        + " SUM(CASE WHEN " + KEY_REMINDER + " > " + now + " THEN 1 ELSE 0 END),"
+        + " SUM(CASE WHEN " + KEY_CHECKLIST + " = 1 THEN 1 ELSE 0 END),"
+        + " SUM(CASE WHEN " + KEY_LOCKED + " = 1 THEN 1 ELSE 0 END),"
+        + " SUM(CASE WHEN " + KEY_LONGITUDE + " != 0 THEN 1 ELSE 0 END),"
+        + " TOTAL(" + KEY_NOTE_METRICS_WORDS + "),"
+        + " MAX(" + KEY_NOTE_METRICS_WORDS + "),"
+        + " TOTAL(" + KEY_NOTE_METRICS_CHARS + "),"
+        + " MAX(" + KEY_NOTE_METRICS_CHARS + "),"
+        + " (SELECT COUNT(*) FROM " + TABLE_NOTE_TAGS + "),"
+        + " (SELECT COUNT(*) FROM " + TABLE_CATEGORY + ")"
+        + " FROM " + TABLE_NOTES
+        + " LEFT JOIN " + TABLE_NOTE_METRICS
+        + " ON " + KEY_NOTE_METRICS_NOTE_ID + " = " + KEY_CREATION;
+
+    try (Cursor cursor = getDatabase().rawQuery(query, null)) {
+      if (!cursor.moveToFirst()) {
+        return;
       }
-      if (chars > maxChars) {
-        maxChars = chars;
+      // Aggregates are NULL when there are no notes at all, and read as 0
+      int i = 0;
+      int notes = cursor.getInt(i++);
+      mStats.setNotesActive(cursor.getInt(i++));
+      mStats.setNotesArchived(cursor.getInt(i++));
+      mStats.setNotesTrashed(cursor.getInt(i++));
+      mStats.setReminders(cursor.getInt(i++));
+      mStats.setRemindersFutures(cursor.getInt(i++));
+      mStats.setNotesChecklist(cursor.getInt(i++));
+      mStats.setNotesMasked(cursor.getInt(i++));
+      mStats.setLocation(cursor.getInt(i++));
+      int totalWords = (int) cursor.getLong(i++);
+      mStats.setWords(totalWords);
+      mStats.setWordsMax(cursor.getInt(i++));
+      mStats.setWordsAvg(totalWords / Math.max(notes, 1));
+      int totalChars = (int) cursor.getLong(i++);
+      mStats.setChars(totalChars);
+      mStats.setCharsMax(cursor.getInt(i++));
+      mStats.setCharsAvg(totalChars / Math.max(notes, 1));
+      mStats.setTags(cursor.getInt(i++));
+      mStats.setCategories(cursor.getInt(i));
+    }
+  }
+
+
+  /**
+   * Text stats computed from notes by batches, used until the tables they're read from are filled
+   * by their background upgrades
+   */
+  private void loadNotesTextStats(Stats mStats) {
+    int notesCount = 0;
+    int words = 0;
+    int wordsMax = 0;
+    int chars = 0;
+    int charsMax = 0;
+    int tags = 0;
+    long lastId = Long.MIN_VALUE;
+    List<Note> notes;
+    do {
+      notes = getNotesBatch("", lastId, BULK_STATEMENT_NOTES_LIMIT);
+      for (Note note : notes) {
+        int noteWords = NotesHelper.getWords(note);
+        int noteChars = NotesHelper.getChars(note);
+        notesCount++;
+        words += noteWords;
+        wordsMax = Math.max(wordsMax, noteWords);
+        chars += noteChars;
+        charsMax = Math.max(charsMax, noteChars);
+        tags += TagsHelper.retrieveTags(note).size();
+        lastId = note.get_id();
       }
-      totalWords += words;
-      totalChars += chars;
-    }
-    mStats.setNotesActive(notesActive);
-    mStats.setNotesArchived(notesArchived);
-    mStats.setNotesTrashed(notesTrashed);
-    mStats.setReminders(reminders);
-    mStats.setRemindersFutures(remindersFuture);
-    mStats.setNotesChecklist(checklists);
-    mStats.setNotesMasked(notesMasked);
-    mStats.setTags(tags);
-    mStats.setLocation(locations);
-    avgWords = totalWords / (!notes.isEmpty() ? notes.size() : 1);
-    avgChars = totalChars / (!notes.isEmpty() ? notes.size() : 1);
-
-    mStats.setWords(totalWords);
-    mStats.setWordsMax(maxWords);
-    mStats.setWordsAvg(avgWords);
-    mStats.setChars(totalChars);
-    mStats.setCharsMax(maxChars);
-    mStats.setCharsAvg(avgChars);
-
-    // Everything about attachments
+    } while (notes.size() == BULK_STATEMENT_NOTES_LIMIT);
+
+    if (isUpgradePending(NOTE_METRICS_UPGRADE_VERSION)) {
+      mStats.setWords(words);
+      mStats.setWordsMax(wordsMax);
+      mStats.setWordsAvg(words / Math.max(notesCount, 1));
+      mStats.setChars(chars);
+      mStats.setCharsMax(charsMax);
+      mStats.setCharsAvg(chars / Math.max(notesCount, 1));
+    }
+    if (isUpgradePending(NOTE_TAGS_UPGRADE_VERSION)) {
+      mStats.setTags(tags);
+    }
+  }
+
+
+  /**
+   * Everything about attachments, counted by type with a single query
+   */
+  private void loadAttachmentsStats(Stats mStats) {
     int attachmentsAll = 0;
-    int images = 0;
-    int videos = 0;
-    int audioRecordings = 0;
-    int sketches = 0;
-    int files = 0;
-
-    List<Attachment> attachments = getAllAttachments();
-    for (Attachment attachment : attachments) {
-      if (MIME_TYPE_IMAGE.equals(attachment.getMime_type())) {
-        images++;
-      } else if (MIME_TYPE_VIDEO.equals(attachment.getMime_type())) {
-        videos++;
-      } else if (MIME_TYPE_AUDIO.equals(attachment.getMime_type())) {
-        audioRecordings++;
-      } else if (MIME_TYPE_SKETCH.equals(attachment.getMime_type())) {
-        sketches++;
-      } else if (MIME_TYPE_FILES.equals(attachment.getMime_type())) {
-        files++;
+    String query = "SELECT " + KEY_ATTACHMENT_MIME_TYPE + ", COUNT(*)"
+        + " FROM " + TABLE_ATTACHMENTS
+        + " GROUP BY " + KEY_ATTACHMENT_MIME_TYPE;
+    try (Cursor cursor = getDatabase().rawQuery(query, null)) {
+      while (cursor.moveToNext()) {
+        String mimeType = cursor.getString(0);
+        int count = cursor.getInt(1);
+        attachmentsAll += count;
+        if (MIME_TYPE_IMAGE.equals(mimeType)) {
+          mStats.setImages(count);
+        } else if (MIME_TYPE_VIDEO.equals(mimeType)) {
+          mStats.setVideos(count);
+        } else if (MIME_TYPE_AUDIO.equals(mimeType)) {
+          mStats.setAudioRecordings(count);
+        } else if (MIME_TYPE_SKETCH.equals(mimeType)) {
+          mStats.setSketches(count);
+        } else if (MIME_TYPE_FILES.equals(mimeType)) {
+          mStats.setFiles(count);
+        }
       }
     }
     mStats.setAttachments(attachmentsAll);
-    mStats.setImages(images);
-    mStats.setVideos(videos);
-    mStats.setAudioRecordings(audioRecordings);
-    mStats.setSketches(sketches);
-    mStats.setFiles(files);
-
-    return mStats;
   }
 
 
   public void setReminderFired(long noteId, boolean fired) {
     ContentValues values = new ContentValues();
     values.put(KEY_REMINDER_FIRED, fired);
-    getDatabase(true)
-        .update(TABLE_NOTES, values, KEY_ID + " = ?", new String[]{String.valueOf(noteId)});
+    SQLiteDatabase db = getDatabase(true);
+    String[] noteArgs = new String[]{String.valueOf(noteId)};
+    List<NoteChange> changes;
+    db.beginTransactionNonExclusive();
+    try {
+      Map<Long, ContentValues> previousValues = getNavigationValues(db, KEY_ID + " = ?", noteArgs);
+      update(db, TABLE_NOTES, values, KEY_ID + " = ?", noteArgs);
+      changes = getUpdateChanges(previousValues, values);
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    publishChanges(changes);
   }
 
 
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.db;
+
+import static it.feio.android.omninotes.db.DbHelper.KEY_ARCHIVED;
+import static it.feio.android.omninotes.db.DbHelper.KEY_CATEGORY;
+import static it.feio.android.omninotes.db.DbHelper.KEY_CHECKLIST;
+import static it.feio.android.omninotes.db.DbHelper.KEY_CONTENT;
+import static it.feio.android.omninotes.db.DbHelper.KEY_CREATION;
+import static it.feio.android.omninotes.db.DbHelper.KEY_FTS_DOCID;
+import static it.feio.android.omninotes.db.DbHelper.KEY_LOCKED;
+import static it.feio.android.omninotes.db.DbHelper.KEY_LONGITUDE;
+import static it.feio.android.omninotes.db.DbHelper.KEY_NOTE_TAGS_NOTE_ID;
+import static it.feio.android.omninotes.db.DbHelper.KEY_NOTE_TAGS_TAG;
+import static it.feio.android.omninotes.db.DbHelper.KEY_REMINDER;
+import static it.feio.android.omninotes.db.DbHelper.KEY_REMINDER_FIRED;
+import static it.feio.android.omninotes.db.DbHelper.KEY_TITLE;
+import static it.feio.android.omninotes.db.DbHelper.KEY_TRASHED;
+import static it.feio.android.omninotes.db.DbHelper.TABLE_NOTES_FTS;
+import static it.feio.android.omninotes.db.DbHelper.TABLE_NOTE_TAGS;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+
+
+/**
+ * Specification of the notes to retrieve, composed by chaining filters and compiled by {@link
+ * DbHelper} into SQL where every value is a bound parameter. Queries with the same filters have
+ * then the same SQL text whatever the values are, so SQLite connections reuse the statement they
+ * already compiled for them.
+ */
+public class NoteQuery {
+
+  private static final String FULL_TEXT_SUBQUERY = " SELECT " + KEY_FTS_DOCID
+      + " FROM " + TABLE_NOTES_FTS + " WHERE " + TABLE_NOTES_FTS + " MATCH ?";
+
+  private final List<String> conditions = new ArrayList<>();
+  private final List<String> conditionsArgs = new ArrayList<>();
+  private String rankingCondition;
+  private String rankingArg;
+  private String sortColumn;
+  private boolean sorted = true;
+
+
+  public NoteQuery() {
+  }
+
+
+  /**
+   * Copy constructor, used to add further filters without modifying the original query
+   */
+  public NoteQuery(NoteQuery query) {
+    conditions.addAll(query.conditions);
+    conditionsArgs.addAll(query.conditionsArgs);
+    rankingCondition = query.rankingCondition;
+    rankingArg = query.rankingArg;
+    sortColumn = query.sortColumn;
+    sorted = query.sorted;
+  }
+
+
+  public NoteQuery id(long id) {
+    return where(KEY_CREATION + " = ?", String.valueOf(id));
+  }
+
+
+  public NoteQuery archived(boolean archived) {
+    return where(KEY_ARCHIVED + " = ?", archived);
+  }
+
+
+  public NoteQuery trashed(boolean trashed) {
+    return where(KEY_TRASHED + " = ?", trashed);
+  }
+
+
+  public NoteQuery locked(boolean locked) {
+    return where(KEY_LOCKED + " = ?", locked);
+  }
+
+
+  public NoteQuery checklist(boolean checklist) {
+    return where(KEY_CHECKLIST + " = ?", checklist);
+  }
+
+
+  public NoteQuery reminderFired(boolean reminderFired) {
+    return where(KEY_REMINDER_FIRED + " = ?", reminderFired);
+  }
+
+
+  /**
+   * @param categoryId Category identifier, null to retrieve uncategorized notes
+   */
+  public NoteQuery category(Long categoryId) {
+    return categoryId == null
+        ? where(KEY_CATEGORY + " IS NULL")
+        : where(KEY_CATEGORY + " = ?", String.valueOf(categoryId));
+  }
+
+
+  public NoteQuery withReminder() {
+    return where(KEY_REMINDER + " IS NOT NULL");
+  }
+
+
+  /**
+   * Notes with reminder into the window [from, to), bound as a range on the indexed column
+   */
+  public NoteQuery reminderBetween(long from, long to) {
+    return where(KEY_REMINDER + " >= ? AND " + KEY_REMINDER + " < ?", String.valueOf(from),
+        String.valueOf(to));
+  }
+
+
+  public NoteQuery withLocation() {
+    return where(KEY_LONGITUDE + " IS NOT NULL AND " + KEY_LONGITUDE + " != 0");
+  }
+
+
+  public NoteQuery contentContaining(String text) {
+    return where(KEY_CONTENT + " LIKE ? ESCAPE '\\'", toLikePattern(text));
+  }
+
+
+  /**
+   * Notes containing the pattern into title or content, only title is considered for locked notes
+   * since their content is encrypted
+   */
+  public NoteQuery containing(String pattern) {
+    String likePattern = toLikePattern(pattern);
+    conditions.add("((" + KEY_LOCKED + " = 0 AND (" + KEY_TITLE + " LIKE ? ESCAPE '\\' OR "
+        + KEY_CONTENT + " LIKE ? ESCAPE '\\')) OR (" + KEY_LOCKED + " = 1 AND " + KEY_TITLE
+        + " LIKE ? ESCAPE '\\'))");
+    conditionsArgs.add(likePattern);
+    conditionsArgs.add(likePattern);
+    conditionsArgs.add(likePattern);
+    return this;
+  }
+
+
+  /**
+   * Notes matching the full-text query, ranking first the ones matching the ranking query
+   */
+  public NoteQuery matching(String fullTextQuery, String rankingFullTextQuery) {
+    where(KEY_CREATION + " IN (" + FULL_TEXT_SUBQUERY + ")", fullTextQuery);
+    rankingCondition = KEY_CREATION + " IN (" + FULL_TEXT_SUBQUERY + ")";
+    rankingArg = rankingFullTextQuery;
+    return this;
+  }
+
+
+  /**
+   * Notes having all the tags
+   */
+  public NoteQuery tags(Collection<String> tags) {
+    conditions.add(KEY_CREATION + " IN ("
+        + " SELECT " + KEY_NOTE_TAGS_NOTE_ID
+        + " FROM " + TABLE_NOTE_TAGS
+        + " WHERE " + KEY_NOTE_TAGS_TAG + " IN (" + StringUtils.repeat("?", ",", tags.size()) + ")"
+        + " GROUP BY " + KEY_NOTE_TAGS_NOTE_ID
+        + " HAVING COUNT(*) = " + tags.size() + ")");
+    conditionsArgs.addAll(tags);
+    return this;
+  }
+
+
+  /**
+   * @param sortColumn Sorting criteria, one of notes columns used by sorting preference. When not
+   *                   set the preference one is used.
+   */
+  public NoteQuery sortBy(String sortColumn) {
+    this.sortColumn = sortColumn;
+    this.sorted = true;
+    return this;
+  }
+
+
+  public NoteQuery unsorted() {
+    this.sorted = false;
+    return this;
+  }
+
+
+  NoteQuery where(String condition, String... args) {
+    conditions.add(condition);
+    for (String arg : args) {
+      conditionsArgs.add(arg);
+    }
+    return this;
+  }
+
+
+  private NoteQuery where(String condition, boolean flag) {
+    return where(condition, flag ? "1" : "0");
+  }
+
+
+  String getWhereClause() {
+    return conditions.isEmpty() ? "" : " WHERE " + StringUtils.join(conditions, " AND ");
+  }
+
+
+  /**
+   * Condition whose matching notes are sorted first, its argument follows the where clause ones
+   */
+  String getRankingCondition() {
+    return rankingCondition;
+  }
+
+
+  String getSortColumn() {
+    return sortColumn;
+  }
+
+
+  boolean isSorted() {
+    return sorted;
+  }
+
+
+  String[] getWhereArgs() {
+    return conditionsArgs.toArray(new String[0]);
+  }
+
+
+  /**
+   * Arguments of the where clause followed by the eventual ranking one
+   */
+  String[] getArgs() {
+    List<String> args = new ArrayList<>(conditionsArgs);
+    if (rankingCondition != null && sorted) {
+      args.add(rankingArg);
+    }
+    return args.toArray(new String[0]);
+  }
+
+
+  static String toLikePattern(String text) {
+    return "%" + text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+  }
+
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.db;
+
+import android.util.LruCache;
+import it.feio.android.omninotes.models.Category;
+import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.models.NoteChange;
+import it.feio.android.omninotes.models.NotesPage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+
+/**
+ * Keeps recently retrieved notes and notes pages in memory in front of {@link DbHelper}, so
+ * switching back to an already shown navigation doesn't touch the database.
+ * <p>
+ * Complete notes are cached by identifier and pages as the compact lists retrieved for them,
+ * grouped by the query they belong to, so no note is created for rows that are never shown.
+ * Changes committed by {@link DbHelper} are written through the notes cache and only drop the
+ * queries whose results can differ: the ones containing changed notes right away, the ones changed
+ * notes now match when they're requested again, so no query runs while changes are notified.
+ */
+public class NotesRepository implements OnNotesChangedListener {
+
+  private static final int NOTES_CACHE_SIZE = 500;
+  private static final int QUERIES_CACHE_SIZE = 20;
+  // Bigger pages (like whole lists) are not worth keeping in memory
+  private static final int MAX_CACHED_PAGE_SIZE = 200;
+  // Queries with more changed notes to check are just dropped
+  private static final int MAX_UNCHECKED_NOTES = 200;
+
+  private static NotesRepository instance = null;
+
+  private final LruCache<Long, Note> notes = new LruCache<>(NOTES_CACHE_SIZE);
+  private final Map<String, CachedQuery> queries = new LinkedHashMap<String, CachedQuery>(
+      QUERIES_CACHE_SIZE, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedQuery> eldest) {
+      return size() > QUERIES_CACHE_SIZE;
+    }
+  };
+  private DbHelper dbHelper;
+  // Increased by every change to discard results retrieved while it was happening
+  private long version;
+
+
+  public static synchronized NotesRepository getInstance() {
+    if (instance == null) {
+      instance = new NotesRepository();
+    }
+    return instance;
+  }
+
+
+  private NotesRepository() {
+  }
+
+
+  /**
+   * Retrieves the first page of notes for the current navigation
+   *
+   * @see DbHelper#getAllNotesPage(int)
+   */
+  public NotesPage getAllNotesPage(int pageSize) {
+    DbHelper db = getDbHelper();
+    NoteQuery query = db.getNavigationQuery();
+    String sortColumn = query.getSortColumn() != null ? query.getSortColumn() : db.getSortColumn();
+    return getNotesPage(query, sortColumn, null, pageSize);
+  }
+
+
+  /**
+   * @see DbHelper#getNextNotesPage(NotesPage, int)
+   */
+  public NotesPage getNextNotesPage(NotesPage previousPage, int pageSize) {
+    return getNotesPage(previousPage.getQuery(), previousPage.getSortColumn(), previousPage,
+        pageSize);
+  }
+
+
+  /**
+   * Retrieves a complete note, the returned instance can be freely modified
+   */
+  public Note getNote(long id) {
+    DbHelper db = getDbHelper();
+    long startVersion;
+    synchronized (this) {
+      Note cachedNote = notes.get(id);
+      if (cachedNote != null && !cachedNote.isPartial()) {
+        return copyOf(cachedNote);
+      }
+      startVersion = version;
+    }
+
+    Note note = db.getNote(id);
+    if (note != null) {
+      synchronized (this) {
+        if (startVersion == version) {
+          notes.put(id, copyOf(note));
+        }
+      }
+    }
+    return note;
+  }
+
+
+  /**
+   * Finds the positions notes have into the results of a query, leaving out the ones not matching
+   * it. Used to place changed notes into lists already shown.
+   *
+   * @param sortColumn Sorting criteria, null to use the preference one
+   * @return Complete notes by their position
+   */
+  public SortedMap<Integer, Note> getNotesPositions(NoteQuery query, String sortColumn,
+      List<Long> noteIds) {
+    DbHelper db = getDbHelper();
+    SortedMap<Integer, Long> positions = db.getNotesPositions(query, sortColumn, noteIds);
+
+    // Notes not cached are retrieved all together
+    Map<Long, Note> notesById = new HashMap<>();
+    List<Long> missingIds = new ArrayList<>();
+    long startVersion;
+    synchronized (this) {
+      for (Long noteId : positions.values()) {
+        Note cachedNote = notes.get(noteId);
+        if (cachedNote != null && !cachedNote.isPartial()) {
+          notesById.put(noteId, copyOf(cachedNote));
+        } else {
+          missingIds.add(noteId);
+        }
+      }
+      startVersion = version;
+    }
+    if (!missingIds.isEmpty()) {
+      List<Note> missingNotes = db.getNotesByIds(missingIds);
+      synchronized (this) {
+        for (Note note : missingNotes) {
+          notesById.put(note.get_id(), note);
+          if (startVersion == version) {
+            notes.put(note.get_id(), copyOf(note));
+          }
+        }
+      }
+    }
+
+    SortedMap<Integer, Note> notesPositions = new TreeMap<>();
+    for (Map.Entry<Integer, Long> entry : positions.entrySet()) {
+      Note note = notesById.get(entry.getValue());
+      if (note != null) {
+        notesPositions.put(entry.getKey(), note);
+      }
+    }
+    return notesPositions;
+  }
+
+
+  private NotesPage getNotesPage(NoteQuery query, String sortColumn, NotesPage previousPage,
+      int pageSize) {
+    DbHelper db = getDbHelper();
+    String queryKey = getQueryKey(query);
+    String pageKey = getPageKey(sortColumn, previousPage, pageSize);
+    CachedQuery cachedQuery;
+    List<Long> uncheckedIds = null;
+    long startVersion;
+    synchronized (this) {
+      cachedQuery = queries.get(queryKey);
+      CachedPage cachedPage = cachedQuery != null ? cachedQuery.pages.get(pageKey) : null;
+      if (cachedPage != null) {
+        if (cachedQuery.uncheckedIds.isEmpty()) {
+          return getCachedPage(cachedQuery, cachedPage, sortColumn, previousPage);
+        }
+        uncheckedIds = new ArrayList<>(cachedQuery.uncheckedIds);
+      }
+      startVersion = version;
+    }
+
+    // Notes changed since the query was cached are checked without holding the lock
+    if (uncheckedIds != null) {
+      boolean matching = !db.getMatchingNotesIds(cachedQuery.query, uncheckedIds).isEmpty();
+      synchronized (this) {
+        if (startVersion == version && queries.get(queryKey) == cachedQuery) {
+          if (!matching) {
+            cachedQuery.uncheckedIds.clear();
+            return getCachedPage(cachedQuery, cachedQuery.pages.get(pageKey), sortColumn,
+                previousPage);
+          }
+          queries.remove(queryKey);
+        }
+      }
+    }
+
+    NotesPage page = previousPage == null
+        ? db.getNotesPage(new NoteQuery(query).sortBy(sortColumn), pageSize)
+        : db.getNextNotesPage(previousPage, pageSize);
+
+    if (page.getNotes() instanceof CompactNotesList
+        && page.getNotes().size() <= MAX_CACHED_PAGE_SIZE) {
+      synchronized (this) {
+        if (startVersion == version) {
+          cachePage(queryKey, page.getQuery(), pageKey, page);
+        }
+      }
+    }
+    return page;
+  }
+
+
+  private NotesPage getCachedPage(CachedQuery cachedQuery, CachedPage cachedPage,
+      String sortColumn, NotesPage previousPage) {
+    return new NotesPage(cachedPage.notes.copy(), cachedQuery.query, sortColumn,
+        previousPage == null, cachedPage.last, cachedPage.lastCreation, cachedPage.lastSortKey);
+  }
+
+
+  /**
+   * Page notes are cached as a copy, since the returned list is changed by adapters
+   */
+  private void cachePage(String queryKey, NoteQuery query, String pageKey, NotesPage page) {
+    CompactNotesList notesList = ((CompactNotesList) page.getNotes()).copy();
+
+    CachedQuery cachedQuery = queries.get(queryKey);
+    if (cachedQuery == null) {
+      cachedQuery = new CachedQuery(query);
+      queries.put(queryKey, cachedQuery);
+    }
+    cachedQuery.pages.put(pageKey, new CachedPage(notesList, page.isLast(),
+        page.getLastCreation(), page.getLastSortKey()));
+    for (int i = 0; i < notesList.size(); i++) {
+      cachedQuery.notesIds.add(notesList.getNoteId(i));
+    }
+  }
+
+
+  /**
+   * Saved notes are written through the cache, notes whose columns changed are evicted
+   */
+  @Override
+  public synchronized void onNotesChanged(List<NoteChange> changes) {
+    version++;
+    List<Long> deletedIds = new ArrayList<>();
+    List<Long> changedIds = new ArrayList<>();
+    for (NoteChange change : changes) {
+      if (change.getNote() != null) {
+        notes.put(change.getNoteId(), copyOf(change.getNote()));
+      } else {
+        notes.remove(change.getNoteId());
+      }
+      (change.getType() == NoteChange.Type.DELETED ? deletedIds : changedIds)
+          .add(change.getNoteId());
+    }
+    invalidateQueries(deletedIds, false);
+    invalidateQueries(changedIds, true);
+  }
+
+
+  /**
+   * Membership of notes doesn't change, cached ones just get the new category details
+   */
+  @Override
+  public synchronized void onCategoryUpdated(Category category) {
+    version++;
+    Category updatedCategory = new Category(category);
+    for (Note note : notes.snapshot().values()) {
+      if (note.getCategory() != null && category.getId().equals(note.getCategory().getId())) {
+        note.setCategory(updatedCategory);
+      }
+    }
+    for (CachedQuery cachedQuery : queries.values()) {
+      for (Map.Entry<String, CachedPage> entry : cachedQuery.pages.entrySet()) {
+        entry.setValue(entry.getValue().withCategory(category));
+      }
+    }
+  }
+
+
+  @Override
+  public synchronized void onDatabaseClosed() {
+    clear();
+  }
+
+
+  /**
+   * Drops queries containing the changed notes, the other ones keep the notes that still exist to
+   * check if they now match them when they're requested again
+   */
+  private void invalidateQueries(List<Long> ids, boolean checkMatching) {
+    if (ids.isEmpty()) {
+      return;
+    }
+    Iterator<CachedQuery> iterator = queries.values().iterator();
+    while (iterator.hasNext()) {
+      CachedQuery cachedQuery = iterator.next();
+      if (containsAny(cachedQuery.notesIds, ids)) {
+        iterator.remove();
+      } else if (checkMatching) {
+        cachedQuery.uncheckedIds.addAll(ids);
+        if (cachedQuery.uncheckedIds.size() > MAX_UNCHECKED_NOTES) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+
+  private boolean containsAny(Set<Long> notesIds, List<Long> ids) {
+    for (Long id : ids) {
+      if (notesIds.contains(id)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  private synchronized DbHelper getDbHelper() {
+    DbHelper currentDbHelper = DbHelper.getInstance();
+    if (currentDbHelper != dbHelper) {
+      // A new helper is created when database is replaced, like restoring a backup
+      clear();
+      dbHelper = currentDbHelper;
+      dbHelper.setOnNotesChangedListener(this);
+    }
+    return dbHelper;
+  }
+
+
+  /**
+   * Drops all cached notes and pages, to be called when notes are changed bypassing {@link
+   * DbHelper} notifications
+   */
+  public synchronized void clear() {
+    version++;
+    notes.evictAll();
+    queries.clear();
+  }
+
+
+  private String getQueryKey(NoteQuery query) {
+    return query.getWhereClause() + Arrays.toString(query.getWhereArgs());
+  }
+
+
+  private String getPageKey(String sortColumn, NotesPage previousPage, int pageSize) {
+    return sortColumn + "|" + pageSize + (previousPage == null ? ""
+        : "|" + previousPage.getLastCreation() + "|" + previousPage.getLastSortKey());
+  }
+
+
+  private static Note copyOf(Note note) {
+    Note copy = new Note(note);
+    copy.setAttachmentsList(new ArrayList<>(note.getAttachmentsList()));
+    return copy;
+  }
+
+
+  private static class CachedQuery {
+
+    private final NoteQuery query;
+    private final Map<String, CachedPage> pages = new LinkedHashMap<>();
+    private final Set<Long> notesIds = new HashSet<>();
+    // Notes changed after caching, whose matching with the query has still to be checked
+    private final Set<Long> uncheckedIds = new HashSet<>();
+
+
+    CachedQuery(NoteQuery query) {
+      this.query = query;
+    }
+  }
+
+
+  private static class CachedPage {
+
+    private final CompactNotesList notes;
+    private final boolean last;
+    private final Long lastCreation;
+    private final String lastSortKey;
+
+
+    CachedPage(CompactNotesList notes, boolean last, Long lastCreation, String lastSortKey) {
+      this.notes = notes;
+      this.last = last;
+      this.lastCreation = lastCreation;
+      this.lastSortKey = lastSortKey;
+    }
+
+
+    CachedPage withCategory(Category category) {
+      return new CachedPage(notes.withCategory(category), last, lastCreation, lastSortKey);
+    }
+  }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.db;
+
+import it.feio.android.omninotes.models.Category;
+import it.feio.android.omninotes.models.NoteChange;
+import java.util.List;
+
+
+/**
+ * Notified by {@link DbHelper} once notes changes are committed, before they're posted to other
+ * subscribers
+ */
+interface OnNotesChangedListener {
+
+  void onNotesChanged(List<NoteChange> changes);
+
+  void onCategoryUpdated(Category category);
+
+  void onDatabaseClosed();
+
+}
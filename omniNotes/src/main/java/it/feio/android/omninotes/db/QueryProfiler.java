@@ -0,0 +1,506 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDatabase.CursorFactory;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteQuery;
+import it.feio.android.omninotes.helpers.LogDelegate;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.StringUtils;
+
+
+/**
+ * Collects latency, returned rows and read bytes of database operations grouped by their shape,
+ * that is their SQL with literal values replaced by placeholders.
+ * <p>
+ * Queries are measured by the cursors it creates as factory of the database: execution time is
+ * the one of the first count of rows, that runs the whole query, while bytes are summed up when
+ * values are read from the cursor. Writes are recorded by {@link DbHelper}.
+ * <p>
+ * Operations lasting more than the slow query threshold are logged with their caller and, for
+ * queries, with the plan chosen by SQLite.
+ */
+public class QueryProfiler implements CursorFactory {
+
+  public static final long DEFAULT_SLOW_QUERY_THRESHOLD = 100;
+
+  // Upper bounds in milliseconds of latency histogram buckets, a last one counts slower operations
+  private static final long[] LATENCY_BUCKETS = {1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024};
+  private static final int SHAPES_CACHE_SIZE = 500;
+  private static final int MAX_CALLERS = 5;
+  private static final String QUERY_TO_STRING_PREFIX = "SQLiteQuery: ";
+  private static final String DB_PACKAGE = QueryProfiler.class.getPackage().getName() + ".";
+
+  private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+  private static final Pattern NUMBER_LITERAL = Pattern
+      .compile("(?<![\\w.])\\d+(?:\\.\\d+)?(?![\\w.])");
+  private static final Pattern PLACEHOLDERS_LIST = Pattern
+      .compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+  private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+
+  private static final CursorFactory PLAIN_CURSOR_FACTORY = (db, driver, editTable, query) ->
+      new SQLiteCursor(driver, editTable, query);
+
+  private final Map<String, String> shapes = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, QueryStats> stats = new ConcurrentHashMap<>();
+  private volatile long slowQueryThresholdNanos;
+
+
+  QueryProfiler(long slowQueryThreshold) {
+    setSlowQueryThreshold(slowQueryThreshold);
+  }
+
+
+  /**
+   * @param slowQueryThreshold Milliseconds over which operations are logged
+   */
+  public void setSlowQueryThreshold(long slowQueryThreshold) {
+    slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryThreshold);
+  }
+
+
+  @Override
+  public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable,
+      SQLiteQuery query) {
+    return new ProfiledCursor(db, driver, editTable, query);
+  }
+
+
+  /**
+   * Records a write operation started at the given time
+   *
+   * @param sql        Executed statement or a description of it having the same shape
+   * @param startNanos Value of {@link System#nanoTime()} when the operation started
+   * @param rows       Number of changed rows
+   */
+  void recordWrite(String sql, long startNanos, long rows) {
+    long nanos = System.nanoTime() - startNanos;
+    QueryStats queryStats = getStats(sql);
+    boolean slow = nanos > slowQueryThresholdNanos;
+    queryStats.record(nanos, rows, slow);
+    if (slow) {
+      logSlowOperation(queryStats, nanos, rows);
+    }
+  }
+
+
+  /**
+   * Retrieves a single number, like {@link android.database.DatabaseUtils#longForQuery}, while
+   * recording the query
+   */
+  long longForQuery(SQLiteDatabase db, String sql, String[] selectionArgs) {
+    try (Cursor cursor = db.rawQueryWithFactory(this, sql, selectionArgs, null)) {
+      cursor.moveToFirst();
+      return cursor.getLong(0);
+    }
+  }
+
+
+  /**
+   * Statistics of all the operations recorded so far, formatted as text
+   */
+  public String getReport() {
+    List<QueryStats> sortedStats = new ArrayList<>(stats.values());
+    Collections.sort(sortedStats, (stats1, stats2) -> Long
+        .compare(stats2.getTotalNanos(), stats1.getTotalNanos()));
+
+    StringBuilder report = new StringBuilder();
+    report.append("Database operations report, ")
+        .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date()))
+        .append("\nSlow operations threshold: ")
+        .append(TimeUnit.NANOSECONDS.toMillis(slowQueryThresholdNanos)).append(" ms\n");
+    for (QueryStats queryStats : sortedStats) {
+      report.append('\n');
+      queryStats.appendTo(report);
+    }
+    return report.toString();
+  }
+
+
+  /**
+   * Writes the report to a new file into the given folder
+   *
+   * @return The written file
+   */
+  public File exportReport(File dir) throws IOException {
+    String name = "database_report_"
+        + new SimpleDateFormat("yyyy.MM.dd-HH.mm.ss", Locale.US).format(new Date()) + ".txt";
+    File file = new File(dir, name);
+    try (Writer writer = new FileWriter(file)) {
+      writer.write(getReport());
+    }
+    return file;
+  }
+
+
+  /**
+   * Discards statistics collected so far
+   */
+  public void reset() {
+    stats.clear();
+  }
+
+
+  /**
+   * Number of recorded operations whose shape contains the given text
+   */
+  long getOperationsCount(String shapeFragment) {
+    long count = 0;
+    for (QueryStats queryStats : stats.values()) {
+      if (queryStats.shape.contains(shapeFragment)) {
+        count += queryStats.getCount();
+      }
+    }
+    return count;
+  }
+
+
+  QueryStats getStats(String sql) {
+    String shape = getShape(sql);
+    QueryStats queryStats = stats.get(shape);
+    if (queryStats == null) {
+      queryStats = new QueryStats(shape);
+      QueryStats previous = stats.putIfAbsent(shape, queryStats);
+      if (previous != null) {
+        queryStats = previous;
+      } else {
+        queryStats.addCaller(getCaller());
+      }
+    }
+    return queryStats;
+  }
+
+
+  private String getShape(String sql) {
+    String shape = shapes.get(sql);
+    if (shape == null) {
+      shape = toShape(sql);
+      // SQL with inlined values could be countless
+      if (shapes.size() < SHAPES_CACHE_SIZE) {
+        shapes.put(sql, shape);
+      }
+    }
+    return shape;
+  }
+
+
+  /**
+   * Replaces literal values with placeholders, lists of them with a single one
+   */
+  static String toShape(String sql) {
+    String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+    shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+    shape = PLACEHOLDERS_LIST.matcher(shape).replaceAll("(?)");
+    return WHITESPACES.matcher(shape).replaceAll(" ").trim();
+  }
+
+
+  private void onQueryExecuted(SQLiteDatabase db, String sql, QueryStats queryStats, long nanos,
+      int rows) {
+    boolean slow = nanos > slowQueryThresholdNanos;
+    queryStats.record(nanos, rows, slow);
+    if (slow) {
+      if (queryStats.getPlan() == null) {
+        queryStats.setPlan(explain(db, sql));
+      }
+      logSlowOperation(queryStats, nanos, rows);
+    }
+  }
+
+
+  private void logSlowOperation(QueryStats queryStats, long nanos, long rows) {
+    String caller = getCaller();
+    queryStats.addCaller(caller);
+    LogDelegate.w(String.format(Locale.US, "Slow database operation: %.1f ms, %d rows, called by"
+            + " %s\n%s%s", nanos / 1e6, rows, caller, queryStats.shape,
+        StringUtils.isNotEmpty(queryStats.getPlan()) ? "\n" + queryStats.getPlan() : ""));
+  }
+
+
+  /**
+   * Plan of the query, placeholders are left unbound since values rarely change it
+   */
+  private String explain(SQLiteDatabase db, String sql) {
+    String statement = sql.trim().toUpperCase(Locale.US);
+    if (!statement.startsWith("SELECT") && !statement.startsWith("WITH")) {
+      return "";
+    }
+    StringBuilder plan = new StringBuilder();
+    try (Cursor cursor = db.rawQueryWithFactory(PLAIN_CURSOR_FACTORY, "EXPLAIN QUERY PLAN "
+        + sql, null, null)) {
+      int detailIndex = cursor.getColumnIndex("detail");
+      while (cursor.moveToNext()) {
+        plan.append("  ").append(cursor.getString(detailIndex)).append('\n');
+      }
+    } catch (SQLiteException e) {
+      LogDelegate.w("Query plan not available", e);
+    }
+    return plan.toString();
+  }
+
+
+  /**
+   * First application frame running the operation followed, if it belongs to database package, by
+   * the first one outside of it
+   */
+  private static String getCaller() {
+    String site = null;
+    for (StackTraceElement element : new Throwable().getStackTrace()) {
+      String className = element.getClassName();
+      if (className.startsWith("android.") || className.startsWith(QueryProfiler.class.getName())) {
+        continue;
+      }
+      String frame = className.substring(className.lastIndexOf('.') + 1) + "."
+          + element.getMethodName() + ":" + element.getLineNumber();
+      if (site == null) {
+        site = frame;
+        if (!className.startsWith(DB_PACKAGE)) {
+          return site;
+        }
+      } else if (!className.startsWith(DB_PACKAGE)) {
+        return site + " < " + frame;
+      }
+    }
+    return site;
+  }
+
+
+  static final class QueryStats {
+
+    final String shape;
+    private final long[] histogram = new long[LATENCY_BUCKETS.length + 1];
+    private final Map<String, Integer> callers = new LinkedHashMap<>();
+    private long count;
+    private long slowCount;
+    private long totalNanos;
+    private long maxNanos;
+    private long rows;
+    private long bytes;
+    private String plan;
+
+
+    QueryStats(String shape) {
+      this.shape = shape;
+    }
+
+
+    synchronized void record(long nanos, long rows, boolean slow) {
+      count++;
+      totalNanos += nanos;
+      maxNanos = Math.max(maxNanos, nanos);
+      this.rows += rows;
+      if (slow) {
+        slowCount++;
+      }
+      long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+      int bucket = 0;
+      while (bucket < LATENCY_BUCKETS.length && millis >= LATENCY_BUCKETS[bucket]) {
+        bucket++;
+      }
+      histogram[bucket]++;
+    }
+
+
+    synchronized void addBytes(long bytes) {
+      this.bytes += bytes;
+    }
+
+
+    synchronized void addCaller(String caller) {
+      Integer callerCount = callers.get(caller);
+      if (callerCount != null || callers.size() < MAX_CALLERS) {
+        callers.put(caller, callerCount == null ? 1 : callerCount + 1);
+      }
+    }
+
+
+    synchronized long getCount() {
+      return count;
+    }
+
+
+    synchronized long getTotalNanos() {
+      return totalNanos;
+    }
+
+
+    synchronized long getRows() {
+      return rows;
+    }
+
+
+    synchronized long[] getHistogram() {
+      return histogram.clone();
+    }
+
+
+    synchronized String getPlan() {
+      return plan;
+    }
+
+
+    synchronized void setPlan(String plan) {
+      this.plan = plan;
+    }
+
+
+    synchronized void appendTo(StringBuilder report) {
+      report.append(shape).append('\n')
+          .append(String.format(Locale.US, "  executions %d, slow %d, total %.1f ms, mean %.2f ms,"
+                  + " max %.1f ms\n", count, slowCount, totalNanos / 1e6,
+              count > 0 ? totalNanos / 1e6 / count : 0, maxNanos / 1e6))
+          .append(String.format(Locale.US, "  rows %d (mean %.1f), bytes read %d\n", rows,
+              count > 0 ? (double) rows / count : 0, bytes))
+          .append("  latency:");
+      for (int i = 0; i < histogram.length; i++) {
+        if (histogram[i] > 0) {
+          report.append(i < LATENCY_BUCKETS.length
+              ? " <" + LATENCY_BUCKETS[i] : " >=" + LATENCY_BUCKETS[LATENCY_BUCKETS.length - 1])
+              .append("ms ").append(histogram[i]);
+        }
+      }
+      report.append('\n');
+      for (Map.Entry<String, Integer> caller : callers.entrySet()) {
+        report.append("  caller ").append(caller.getKey()).append(" (").append(caller.getValue())
+            .append(")\n");
+      }
+      if (StringUtils.isNotEmpty(plan)) {
+        report.append("  plan:\n").append(plan.replaceAll("(?m)^", "  "));
+      }
+    }
+  }
+
+
+  /**
+   * Cursor recording the execution of its query and the size of values read from it
+   */
+  private final class ProfiledCursor extends SQLiteCursor {
+
+    private final SQLiteDatabase db;
+    private final String sql;
+    private QueryStats queryStats;
+    private long bytes;
+
+
+    ProfiledCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable,
+        SQLiteQuery query) {
+      super(driver, editTable, query);
+      this.db = db;
+      String description = query.toString();
+      sql = description.startsWith(QUERY_TO_STRING_PREFIX)
+          ? description.substring(QUERY_TO_STRING_PREFIX.length()) : description;
+    }
+
+
+    @Override
+    public int getCount() {
+      if (queryStats != null) {
+        return super.getCount();
+      }
+      long start = System.nanoTime();
+      int count = super.getCount();
+      long nanos = System.nanoTime() - start;
+      queryStats = getStats(sql);
+      onQueryExecuted(db, sql, queryStats, nanos, count);
+      return count;
+    }
+
+
+    @Override
+    public String getString(int columnIndex) {
+      String value = super.getString(columnIndex);
+      if (value != null) {
+        bytes += value.length() * 2L;
+      }
+      return value;
+    }
+
+
+    @Override
+    public byte[] getBlob(int columnIndex) {
+      byte[] value = super.getBlob(columnIndex);
+      if (value != null) {
+        bytes += value.length;
+      }
+      return value;
+    }
+
+
+    @Override
+    public short getShort(int columnIndex) {
+      bytes += 2;
+      return super.getShort(columnIndex);
+    }
+
+
+    @Override
+    public int getInt(int columnIndex) {
+      bytes += 4;
+      return super.getInt(columnIndex);
+    }
+
+
+    @Override
+    public long getLong(int columnIndex) {
+      bytes += 8;
+      return super.getLong(columnIndex);
+    }
+
+
+    @Override
+    public float getFloat(int columnIndex) {
+      bytes += 4;
+      return super.getFloat(columnIndex);
+    }
+
+
+    @Override
+    public double getDouble(int columnIndex) {
+      bytes += 8;
+      return super.getDouble(columnIndex);
+    }
+
+
+    @Override
+    public void close() {
+      if (!isClosed() && queryStats != null) {
+        queryStats.addBytes(bytes);
+      }
+      super.close();
+    }
+  }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.db;
+
+import static it.feio.android.omninotes.db.DbHelper.KEY_CONTENT;
+import static it.feio.android.omninotes.db.DbHelper.KEY_LOCKED;
+import static it.feio.android.omninotes.db.DbHelper.KEY_TITLE;
+
+import java.util.Locale;
+import org.apache.commons.lang3.math.NumberUtils;
+
+
+/**
+ * Normalized values notes are sorted by. They're stored along with notes and indexed, so sorted
+ * lists are read in index order instead of sorting expressions computed on whole columns.
+ */
+final class SortKeys {
+
+  // Notes starting with the same characters are then sorted by creation
+  static final int TITLE_KEY_LENGTH = 64;
+  // Notes without reminder come after all the others
+  static final long NO_REMINDER_KEY = Long.MAX_VALUE;
+  // Title key computed by SQL, used until stored ones are filled. Only ASCII is case-folded.
+  static final String TITLE_EXPRESSION = "substr(lower(coalesce(" + KEY_TITLE + ", '')"
+      + " || CASE WHEN " + KEY_LOCKED + " = 1 THEN '' ELSE coalesce(" + KEY_CONTENT + ", '') END),"
+      + " 1, " + TITLE_KEY_LENGTH + ")";
+
+
+  private SortKeys() {
+  }
+
+
+  /**
+   * Case-folded first characters of title followed by content, title only for locked notes since
+   * their content is encrypted
+   */
+  static String title(String title, String content, boolean locked) {
+    String text = (title != null ? title : "") + (content != null && !locked ? content : "");
+    text = text.toLowerCase(Locale.ROOT);
+    return text.codePointCount(0, text.length()) > TITLE_KEY_LENGTH
+        ? text.substring(0, text.offsetByCodePoints(0, TITLE_KEY_LENGTH))
+        : text;
+  }
+
+
+  static long reminder(String reminder) {
+    return NumberUtils.toLong(reminder, NO_REMINDER_KEY);
+  }
+
+}
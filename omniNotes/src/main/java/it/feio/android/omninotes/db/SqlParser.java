@@ -23,6 +23,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 
 public class SqlParser {
@@ -103,7 +104,7 @@ public class SqlParser {
       if (content[i] == '\'') {
         inLiteral = !inLiteral;
       }
-      if (content[i] == delim && !inLiteral) {
+      if (content[i] == delim && !inLiteral && !isInsideTriggerBody(sb)) {
         if (sb.length() > 0) {
           statements.add(sb.toString().trim());
           sb = new StringBuilder();
@@ -118,4 +119,15 @@ public class SqlParser {
     return statements;
   }
 
+
+  /**
+   * Triggers bodies contain multiple statements, so delimiters found before their closing "END"
+   * must not split the script
+   */
+  private static boolean isInsideTriggerBody(StringBuilder statement) {
+    String trimmedStatement = statement.toString().trim().toUpperCase(Locale.ENGLISH);
+    return trimmedStatement.matches("^CREATE\\s+TRIGGER\\s.*")
+        && !trimmedStatement.endsWith(" END");
+  }
+
 }
@@ -33,9 +33,8 @@ import it.feio.android.omninotes.db.DbHelper;
 import it.feio.android.omninotes.models.Note;
 import it.feio.android.omninotes.utils.TextHelper;
 import it.feio.android.omninotes.utils.date.DateUtils;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 
@@ -118,30 +117,16 @@ public class ONDashClockExtension extends DashClockExtension {
 
 
   private Map<Counters, List<Note>> getNotesCounters() {
-    Map noteCounters = new HashMap<>();
-    List<Note> activeNotes = new ArrayList<>();
-    List<Note> reminders = new ArrayList<>();
-    List<Note> today = new ArrayList<>();
-    List<Note> tomorrow = new ArrayList<>();
-    for (Note note : DbHelper.getInstance().getNotesActive()) {
-      activeNotes.add(note);
-      if (note.getAlarm() != null && !note.isReminderFired()) {
-        reminders.add(note);
-        if (DateUtils
-            .isSameDay(Long.valueOf(note.getAlarm()), Calendar.getInstance().getTimeInMillis())) {
-          today.add(note);
-        } else if (
-            (Long.valueOf(note.getAlarm()) - Calendar.getInstance().getTimeInMillis()) / (1000 * 60
-                *
-                60) < 24) {
-          tomorrow.add(note);
-        }
-      }
-    }
-    noteCounters.put(Counters.ACTIVE, activeNotes);
-    noteCounters.put(Counters.REMINDERS, reminders);
-    noteCounters.put(Counters.TODAY, today);
-    noteCounters.put(Counters.TOMORROW, tomorrow);
+    DbHelper dbHelper = DbHelper.getInstance();
+    long now = Calendar.getInstance().getTimeInMillis();
+    Map<Counters, List<Note>> noteCounters = new EnumMap<>(Counters.class);
+    noteCounters.put(Counters.ACTIVE, dbHelper.getNotesActive());
+    noteCounters.put(Counters.REMINDERS,
+        dbHelper.getUpcomingReminders(Long.MIN_VALUE, Long.MAX_VALUE));
+    noteCounters.put(Counters.TODAY, dbHelper.getUpcomingReminders(
+        DateUtils.getStartOfDay(now, 0), DateUtils.getStartOfDay(now, 1)));
+    noteCounters.put(Counters.TOMORROW, dbHelper.getUpcomingReminders(
+        DateUtils.getStartOfDay(now, 1), DateUtils.getStartOfDay(now, 2)));
     return noteCounters;
   }
 
@@ -389,7 +389,9 @@ public final class BackupHelper {
   @Deprecated
   public static boolean importDB(Context context, File backupDir) {
     File database = context.getDatabasePath(DATABASE_NAME);
-    if (database.exists() && database.delete()) {
+    // Write-ahead log files must be removed too or they would be applied to the restored database
+    DbHelper.getInstance().close();
+    if (database.exists() && context.deleteDatabase(DATABASE_NAME)) {
       return (StorageHelper.copyFile(new File(backupDir, DATABASE_NAME), database));
     }
     return false;
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.models;
+
+
+/**
+ * Number of notes shown by the navigation entries that are hidden when empty
+ */
+public class NavigationCounts {
+
+  private final int archived;
+  private final int trashed;
+  private final int uncategorized;
+  private final int reminders;
+
+
+  public NavigationCounts(int archived, int trashed, int uncategorized, int reminders) {
+    this.archived = archived;
+    this.trashed = trashed;
+    this.uncategorized = uncategorized;
+    this.reminders = reminders;
+  }
+
+
+  public int getArchived() {
+    return archived;
+  }
+
+
+  public int getTrashed() {
+    return trashed;
+  }
+
+
+  public int getUncategorized() {
+    return uncategorized;
+  }
+
+
+  public int getReminders() {
+    return reminders;
+  }
+
+}
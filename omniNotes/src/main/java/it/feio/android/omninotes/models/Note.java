@@ -44,6 +44,10 @@ public class Note extends BaseNote implements Parcelable {
   };
   // Not saved in DB
   private boolean passwordChecked = false;
+  // Retrieved for list rendering only, with truncated content and first attachment only
+  private boolean partial = false;
+  // Number of attachments of partial notes, whose list has the first one only
+  private int attachmentsCount;
 
 
   public Note() {
@@ -66,6 +70,8 @@ public class Note extends BaseNote implements Parcelable {
   public Note(Note note) {
     super(note);
     setPasswordChecked(note.isPasswordChecked());
+    setPartial(note.isPartial());
+    setAttachmentsCount(note.attachmentsCount);
   }
 
 
@@ -86,6 +92,8 @@ public class Note extends BaseNote implements Parcelable {
     setLocked(in.readInt());
     setChecklist(in.readInt());
     in.readList(getAttachmentsList(), Attachment.class.getClassLoader());
+    setPartial(in.readInt() == 1);
+    setAttachmentsCount(in.readInt());
   }
 
   public List<Attachment> getAttachmentsList() {
@@ -134,6 +142,25 @@ public class Note extends BaseNote implements Parcelable {
     this.passwordChecked = passwordChecked;
   }
 
+  public boolean isPartial() {
+    return partial;
+  }
+
+  public void setPartial(boolean partial) {
+    this.partial = partial;
+  }
+
+  /**
+   * Number of attachments, also for partial notes whose attachments list has the first one only
+   */
+  public int getAttachmentsCount() {
+    return partial ? attachmentsCount : getAttachmentsList().size();
+  }
+
+  public void setAttachmentsCount(int attachmentsCount) {
+    this.attachmentsCount = attachmentsCount;
+  }
+
   @Override
   public Category getCategory() {
     try {
@@ -183,6 +210,8 @@ public class Note extends BaseNote implements Parcelable {
     parcel.writeInt(isLocked() ? 1 : 0);
     parcel.writeInt(isChecklist() ? 1 : 0);
     parcel.writeList(getAttachmentsList());
+    parcel.writeInt(isPartial() ? 1 : 0);
+    parcel.writeInt(attachmentsCount);
   }
 
 }
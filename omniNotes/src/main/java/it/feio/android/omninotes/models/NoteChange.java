@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.feio.android.omninotes.models;
+
+import android.content.ContentValues;
+import java.util.Set;
+
+
+/**
+ * Change of a single note committed into the database.
+ * <p>
+ * Besides the note identifier it carries the values that navigation columns (archived, trashed,
+ * category and reminder) had before and after the change, so what depends on them can be updated
+ * without querying the database again.
+ */
+public class NoteChange {
+
+  public enum Type {
+    INSERTED, UPDATED, DELETED
+  }
+
+  private final Type type;
+  private final long noteId;
+  private final Note note;
+  private final Set<String> changedColumns;
+  private final ContentValues previousValues;
+  private final ContentValues values;
+
+
+  /**
+   * @param note           Note saved as a whole, null when only some columns changed
+   * @param changedColumns Changed columns, null when the note was saved as a whole
+   * @param previousValues Navigation columns values before the change, null for insertions
+   * @param values         Navigation columns values after the change, null for deletions
+   */
+  public NoteChange(Type type, long noteId, Note note, Set<String> changedColumns,
+      ContentValues previousValues, ContentValues values) {
+    this.type = type;
+    this.noteId = noteId;
+    this.note = note;
+    this.changedColumns = changedColumns;
+    this.previousValues = previousValues;
+    this.values = values;
+  }
+
+
+  public Type getType() {
+    return type;
+  }
+
+
+  public long getNoteId() {
+    return noteId;
+  }
+
+
+  public Note getNote() {
+    return note;
+  }
+
+
+  /**
+   * @return Changed columns, null when all of them could have been changed
+   */
+  public Set<String> getChangedColumns() {
+    return changedColumns;
+  }
+
+
+  public ContentValues getPreviousValues() {
+    return previousValues;
+  }
+
+
+  public ContentValues getValues() {
+    return values;
+  }
+
+}
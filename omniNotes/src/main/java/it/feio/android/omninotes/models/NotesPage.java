@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.models;
+
+import it.feio.android.omninotes.db.NoteQuery;
+import java.util.List;
+
+
+/**
+ * Slice of a notes list retrieved with keyset pagination. Carries what is needed to retrieve the
+ * following page with {@link it.feio.android.omninotes.db.DbHelper#getNextNotesPage(NotesPage,
+ * int)}.
+ */
+public class NotesPage {
+
+  private final List<Note> notes;
+  private final NoteQuery query;
+  private final String sortColumn;
+  private final boolean first;
+  private final boolean last;
+  private final Long lastCreation;
+  private final String lastSortKey;
+
+
+  public NotesPage(List<Note> notes, NoteQuery query, String sortColumn, boolean first,
+      boolean last, Long lastCreation, String lastSortKey) {
+    this.notes = notes;
+    this.query = query;
+    this.sortColumn = sortColumn;
+    this.first = first;
+    this.last = last;
+    this.lastCreation = lastCreation;
+    this.lastSortKey = lastSortKey;
+  }
+
+
+  public List<Note> getNotes() {
+    return notes;
+  }
+
+
+  public NoteQuery getQuery() {
+    return query;
+  }
+
+
+  public String getSortColumn() {
+    return sortColumn;
+  }
+
+
+  public boolean isFirst() {
+    return first;
+  }
+
+
+  public boolean isLast() {
+    return last;
+  }
+
+
+  public Long getLastCreation() {
+    return lastCreation;
+  }
+
+
+  public String getLastSortKey() {
+    return lastSortKey;
+  }
+
+}
@@ -19,6 +19,7 @@ package it.feio.android.omninotes.models.adapters;
 import static com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions.withCrossFade;
 import static it.feio.android.omninotes.utils.Constants.PREFS_NAME;
 import static it.feio.android.omninotes.utils.ConstantsBase.PREF_COLORS_APP_DEFAULT;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_SORTING_COLUMN;
 import static it.feio.android.omninotes.utils.ConstantsBase.TIMESTAMP_UNIX_EPOCH_FAR;
 
 import android.app.Activity;
@@ -26,12 +27,15 @@ import android.content.Context;
 import android.graphics.Color;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Spanned;
 import android.util.SparseBooleanArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.RequestOptions;
@@ -39,36 +43,128 @@ import it.feio.android.omninotes.R;
 import it.feio.android.omninotes.async.TextWorkerTask;
 import it.feio.android.omninotes.helpers.LogDelegate;
 import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.models.Category;
 import it.feio.android.omninotes.models.Note;
 import it.feio.android.omninotes.models.holders.NoteViewHolder;
 import it.feio.android.omninotes.utils.BitmapHelper;
 import it.feio.android.omninotes.utils.Navigation;
 import it.feio.android.omninotes.utils.TextHelper;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.RejectedExecutionException;
 
 
 public class NoteAdapter extends RecyclerView.Adapter<NoteViewHolder> {
 
+  /**
+   * Payload rebinding only icons and date of a note
+   */
+  public static final String PAYLOAD_FLAGS = "flags";
+  /**
+   * Payload rebinding only background of a note, that shows selection and category color
+   */
+  public static final String PAYLOAD_BACKGROUND = "background";
+
+  // Over this size lists are simply swapped, differences computation would take too long
+  private static final int DIFF_MAX_SIZE = 1000;
+
   private final Activity mActivity;
-  private final int navigation;
-  private final List<Note> notes;
   private final SparseBooleanArray selectedItems = new SparseBooleanArray();
   private final boolean expandedView;
-  private long closestNoteReminder = Long.parseLong(TIMESTAMP_UNIX_EPOCH_FAR);
+  private int navigation;
+  private String datesCriteria;
+  private List<Note> notes;
+  // Incremented when notes change, to discard differences computed on outdated lists
+  private int notesVersion;
+  private int submittedVersion;
+  private long closestNoteReminder;
   private int closestNotePosition;
 
 
   public NoteAdapter(Activity activity, boolean expandedView, List<Note> notes) {
     this.mActivity = activity;
-    this.notes = notes;
     this.expandedView = expandedView;
+    setHasStableIds(true);
+    setNotes(notes);
+  }
+
+
+  /**
+   * Whether the adapter can keep showing notes for the activity with the given view mode, adapters
+   * are kept between lists loading to only rebind the notes that changed.
+   */
+  public boolean isCompatible(Activity activity, boolean expandedView) {
+    return mActivity == activity && this.expandedView == expandedView;
+  }
+
+
+  /**
+   * Replaces shown notes. Differences with the shown ones are computed in background, then only
+   * inserted, removed and moved notes are notified while notes whose flags or dates changed are
+   * partially rebound.
+   *
+   * @param onShown Run on main thread when the notes are shown, not run if other notes are
+   *                submitted meanwhile
+   */
+  public void submitNotes(List<Note> newNotes, Runnable onShown) {
+    int version = ++submittedVersion;
+    if (notes.isEmpty() || newNotes.isEmpty() || notes.size() > DIFF_MAX_SIZE
+        || newNotes.size() > DIFF_MAX_SIZE) {
+      setNotes(newNotes);
+      notifyDataSetChanged();
+      onShown.run();
+      return;
+    }
+
+    int oldNotesVersion = notesVersion;
+    List<Note> oldNotes = new ArrayList<>(notes);
+    boolean datesChanged = !getDatesCriteria(Navigation.getNavigation()).equals(datesCriteria);
+    Handler handler = new Handler(Looper.getMainLooper());
+    AsyncTask.THREAD_POOL_EXECUTOR.execute(() -> {
+      DiffUtil.DiffResult diffResult = DiffUtil
+          .calculateDiff(new NotesDiffCallback(oldNotes, newNotes, datesChanged));
+      handler.post(() -> {
+        if (version != submittedVersion) {
+          return;
+        }
+        // Shown notes have been changed while computing differences
+        boolean outdated = oldNotesVersion != notesVersion;
+        setNotes(newNotes);
+        if (outdated) {
+          notifyDataSetChanged();
+        } else {
+          diffResult.dispatchUpdatesTo(this);
+        }
+        onShown.run();
+      });
+    });
+  }
+
+
+  private void setNotes(List<Note> notes) {
+    this.notes = notes;
+    notesVersion++;
     navigation = Navigation.getNavigation();
+    datesCriteria = getDatesCriteria(navigation);
+    selectedItems.clear();
+    closestNoteReminder = Long.parseLong(TIMESTAMP_UNIX_EPOCH_FAR);
+    closestNotePosition = 0;
     manageCloserNote(notes, navigation);
   }
 
 
+  /**
+   * Navigation and sorting determine which date is shown for notes
+   */
+  private String getDatesCriteria(int navigation) {
+    return navigation + mActivity.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS)
+        .getString(PREF_SORTING_COLUMN, "");
+  }
+
+
   /**
    * Highlighted if is part of multiselection of notes. Remember to search for child with card ui
    */
@@ -131,7 +227,7 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteViewHolder> {
     // ...the attachment icon for contracted view
     if (!expandedView) {
       holder.attachmentIcon
-          .setVisibility(!note.getAttachmentsList().isEmpty() ? View.VISIBLE : View.GONE);
+          .setVisibility(note.getAttachmentsCount() > 0 ? View.VISIBLE : View.GONE);
     }
   }
 
@@ -261,7 +357,14 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteViewHolder> {
   }
 
   public void replace(@NonNull Note note, int index) {
-    if (notes.indexOf(note) != -1) {
+    int position = notes.indexOf(note);
+    if (position != -1 && position == index) {
+      notes.set(index, note);
+      notesVersion++;
+      notifyItemChanged(index);
+      return;
+    }
+    if (position != -1) {
       remove(note);
     } else {
       index = notes.size();
@@ -271,9 +374,17 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteViewHolder> {
 
   public void add(int index, @NonNull Object o) {
     notes.add(index, (Note) o);
+    notesVersion++;
     notifyItemInserted(index);
   }
 
+  public void addAll(@NonNull List<Note> notesToAdd) {
+    int positionStart = notes.size();
+    notes.addAll(notesToAdd);
+    notesVersion++;
+    notifyItemRangeInserted(positionStart, notesToAdd.size());
+  }
+
   public void remove(List<Note> notes) {
     for (Note note : notes) {
       remove(note);
@@ -283,11 +394,25 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteViewHolder> {
   public void remove(@NonNull Note note) {
     int pos = getPosition(note);
     if (pos >= 0) {
-      notes.remove(note);
+      notes.remove(pos);
+      notesVersion++;
       notifyItemRemoved(pos);
     }
   }
 
+  /**
+   * Removes the notes having the given identifiers with a single pass over the shown ones
+   */
+  public void removeAll(Set<Long> noteIds) {
+    for (int i = notes.size() - 1; i >= 0; i--) {
+      if (noteIds.contains(notes.get(i).get_id())) {
+        notes.remove(i);
+        notesVersion++;
+        notifyItemRemoved(i);
+      }
+    }
+  }
+
   public int getPosition(@NonNull Note note) {
     return notes.indexOf(note);
   }
@@ -298,7 +423,8 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteViewHolder> {
 
   @Override
   public long getItemId(int position) {
-    return position;
+    Long id = notes.get(position).get_id();
+    return id != null ? id : RecyclerView.NO_ID;
   }
 
   @NonNull
@@ -325,9 +451,102 @@ public class NoteAdapter extends RecyclerView.Adapter<NoteViewHolder> {
     manageSelectionColor(position, note, holder);
   }
 
+  @Override
+  public void onBindViewHolder(@NonNull NoteViewHolder holder, int position,
+      @NonNull List<Object> payloads) {
+    if (payloads.isEmpty()) {
+      onBindViewHolder(holder, position);
+      return;
+    }
+    Note note = notes.get(position);
+    for (Object payload : payloads) {
+      if (PAYLOAD_FLAGS.equals(payload)) {
+        initIcons(note, holder);
+        initDates(note, holder);
+      } else if (PAYLOAD_BACKGROUND.equals(payload)) {
+        manageSelectionColor(position, note, holder);
+      }
+    }
+  }
+
   @Override
   public int getItemCount() {
     return this.notes.size();
   }
 
+
+  /**
+   * Compares notes by identifier and then by the fields shown into the list
+   */
+  private static class NotesDiffCallback extends DiffUtil.Callback {
+
+    private final List<Note> oldNotes;
+    private final List<Note> newNotes;
+    private final boolean datesChanged;
+
+    NotesDiffCallback(List<Note> oldNotes, List<Note> newNotes, boolean datesChanged) {
+      this.oldNotes = oldNotes;
+      this.newNotes = newNotes;
+      this.datesChanged = datesChanged;
+    }
+
+    @Override
+    public int getOldListSize() {
+      return oldNotes.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+      return newNotes.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+      return Objects.equals(oldNotes.get(oldItemPosition).get_id(),
+          newNotes.get(newItemPosition).get_id());
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+      Note oldNote = oldNotes.get(oldItemPosition);
+      Note newNote = newNotes.get(newItemPosition);
+      return !datesChanged && sameText(oldNote, newNote) && sameFlags(oldNote, newNote);
+    }
+
+    @Override
+    public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+      return sameText(oldNotes.get(oldItemPosition), newNotes.get(newItemPosition))
+          ? PAYLOAD_FLAGS : null;
+    }
+
+    /**
+     * Fields used by full binding only: texts, thumbnail and category color
+     */
+    private boolean sameText(Note oldNote, Note newNote) {
+      return Objects.equals(oldNote.getTitle(), newNote.getTitle())
+          && Objects.equals(oldNote.getContent(), newNote.getContent())
+          && Objects.equals(oldNote.isChecklist(), newNote.isChecklist())
+          && Objects.equals(oldNote.isLocked(), newNote.isLocked())
+          && Objects.equals(getThumbnailUri(oldNote), getThumbnailUri(newNote))
+          && Objects.equals(getColor(oldNote.getCategory()), getColor(newNote.getCategory()));
+    }
+
+    private boolean sameFlags(Note oldNote, Note newNote) {
+      return Objects.equals(oldNote.isArchived(), newNote.isArchived())
+          && Objects.equals(oldNote.getAlarm(), newNote.getAlarm())
+          && Objects.equals(oldNote.getLongitude(), newNote.getLongitude())
+          && Objects.equals(oldNote.getCreation(), newNote.getCreation())
+          && Objects.equals(oldNote.getLastModification(), newNote.getLastModification());
+    }
+
+    private Uri getThumbnailUri(Note note) {
+      return note.getAttachmentsList().isEmpty() ? null
+          : note.getAttachmentsList().get(0).getUri();
+    }
+
+    private String getColor(Category category) {
+      return category != null ? category.getColor() : null;
+    }
+  }
+
 }
\ No newline at end of file
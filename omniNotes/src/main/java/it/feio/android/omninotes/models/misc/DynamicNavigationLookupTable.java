@@ -17,14 +17,20 @@
 
 package it.feio.android.omninotes.models.misc;
 
+import static it.feio.android.omninotes.db.DbHelper.KEY_ARCHIVED;
+import static it.feio.android.omninotes.db.DbHelper.KEY_CATEGORY;
+import static it.feio.android.omninotes.db.DbHelper.KEY_REMINDER;
+import static it.feio.android.omninotes.db.DbHelper.KEY_TRASHED;
 
+import android.content.ContentValues;
 import de.greenrobot.event.EventBus;
 import it.feio.android.omninotes.async.bus.DynamicNavigationReadyEvent;
-import it.feio.android.omninotes.async.bus.NotesUpdatedEvent;
+import it.feio.android.omninotes.async.bus.NotesChangedEvent;
 import it.feio.android.omninotes.db.DbHelper;
 import it.feio.android.omninotes.helpers.LogDelegate;
-import it.feio.android.omninotes.models.Note;
-import java.util.List;
+import it.feio.android.omninotes.models.NavigationCounts;
+import it.feio.android.omninotes.models.NoteChange;
+import java.util.Arrays;
 
 
 public class DynamicNavigationLookupTable {
@@ -51,29 +57,58 @@ public class DynamicNavigationLookupTable {
 
 
   public void update() {
-    ((Runnable) () -> {
-      archived = trashed = uncategorized = reminders = 0;
-      List<Note> notes = DbHelper.getInstance().getAllNotes(false);
-      for (int i = 0; i < notes.size(); i++) {
-        if (notes.get(i).isTrashed()) {
-          trashed++;
-        } else if (notes.get(i).isArchived()) {
-          archived++;
-        } else if (notes.get(i).getAlarm() != null) {
-          reminders++;
-        }
-        if (notes.get(i).getCategory() == null || notes.get(i).getCategory().getId().equals(0L)) {
-          uncategorized++;
-        }
+    NavigationCounts counts = DbHelper.getInstance().getNavigationCounts();
+    synchronized (this) {
+      archived = counts.getArchived();
+      trashed = counts.getTrashed();
+      uncategorized = counts.getUncategorized();
+      reminders = counts.getReminders();
+    }
+    EventBus.getDefault().post(new DynamicNavigationReadyEvent());
+    LogDelegate.d("Dynamic menu finished counting items");
+  }
+
+
+  /**
+   * Counters are updated with the values notes had before and after changes, without counting them
+   * again. Menu is notified only when some counter changed.
+   */
+  public void onEvent(NotesChangedEvent event) {
+    boolean changed;
+    synchronized (this) {
+      int[] previousCounts = {archived, trashed, uncategorized, reminders};
+      for (NoteChange change : event.getChanges()) {
+        count(change.getPreviousValues(), -1);
+        count(change.getValues(), 1);
       }
+      changed = !Arrays.equals(previousCounts,
+          new int[]{archived, trashed, uncategorized, reminders});
+    }
+    if (changed) {
       EventBus.getDefault().post(new DynamicNavigationReadyEvent());
-      LogDelegate.d("Dynamic menu finished counting items");
-    }).run();
+    }
   }
 
 
-  public void onEventAsync(NotesUpdatedEvent event) {
-    update();
+  /**
+   * Adds delta to the counters including a note with the given navigation values
+   */
+  private void count(ContentValues values, int delta) {
+    if (values == null) {
+      return;
+    }
+    boolean noteArchived = Boolean.TRUE.equals(values.getAsBoolean(KEY_ARCHIVED));
+    boolean noteTrashed = Boolean.TRUE.equals(values.getAsBoolean(KEY_TRASHED));
+    if (noteTrashed) {
+      trashed += delta;
+    } else if (noteArchived) {
+      archived += delta;
+    } else if (values.get(KEY_REMINDER) != null) {
+      reminders += delta;
+    }
+    if (values.get(KEY_CATEGORY) == null) {
+      uncategorized += delta;
+    }
   }
 
 
@@ -64,6 +64,8 @@ public class AlarmReceiver extends BroadcastReceiver {
   }
 
   private void updateNote(Note note) {
+    // Reminders set from notes list are scheduled with the partial note retrieved for it
+    DbHelper.getInstance().hydrateNote(note);
     note.setArchived(false);
     if (!NotificationListener.isRunning()) {
       note.setReminderFired(true);
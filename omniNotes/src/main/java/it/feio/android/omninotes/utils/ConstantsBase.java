@@ -110,6 +110,7 @@ public interface ConstantsBase {
   String PREF_PRETTIFIED_DATES = "settings_prettified_dates";
   String PREF_ENABLE_AUTOBACKUP = "settings_enable_autobackup";
   String PREF_ENABLE_FILE_LOGGING = "settings_enable_file_logging";
+  String PREF_SLOW_QUERY_THRESHOLD = "settings_slow_query_threshold";
 
   String MIME_TYPE_IMAGE = "image/jpeg";
   String MIME_TYPE_AUDIO = "audio/amr";
@@ -38,6 +38,7 @@ import it.feio.android.omninotes.models.Note;
 import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.apache.commons.lang3.StringUtils;
 
 
 public class TextHelper {
@@ -100,15 +101,19 @@ public class TextHelper {
 
 
   /**
-   * Checks if a query conditions searches for category
+   * Checks if a widget configuration shows a category
    *
-   * @param sqlCondition query "where" condition
+   * @param widgetConfiguration category ID, or query "where" condition for widgets configured by
+   *                            previous versions
    * @return Category ID
    */
-  public static String checkIntentCategory(String sqlCondition) {
+  public static String checkIntentCategory(String widgetConfiguration) {
+    if (StringUtils.isNumeric(widgetConfiguration)) {
+      return widgetConfiguration;
+    }
     String pattern = DbHelper.KEY_CATEGORY + "\\s*=\\s*([\\d]+)";
     Pattern p = Pattern.compile(pattern);
-    Matcher matcher = p.matcher(sqlCondition);
+    Matcher matcher = p.matcher(widgetConfiguration);
     if (matcher.find() && matcher.group(1) != null) {
       return matcher.group(1).trim();
     }
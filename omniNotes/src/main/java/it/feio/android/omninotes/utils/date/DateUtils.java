@@ -149,6 +149,23 @@ public class DateUtils {
   }
 
 
+  /**
+   * Local midnight starting the day that follows the one of the date by the given days number
+   *
+   * @param days Days to add, 0 for the start of the day of the date itself
+   */
+  public static long getStartOfDay(long date, int days) {
+    Calendar cal = Calendar.getInstance();
+    cal.setTimeInMillis(date);
+    cal.set(Calendar.HOUR_OF_DAY, 0);
+    cal.set(Calendar.MINUTE, 0);
+    cal.set(Calendar.SECOND, 0);
+    cal.set(Calendar.MILLISECOND, 0);
+    cal.add(Calendar.DAY_OF_YEAR, days);
+    return cal.getTimeInMillis();
+  }
+
+
   public static long getNextMinute() {
     return Calendar.getInstance().getTimeInMillis() + 1000 * 60;
   }
@@ -33,16 +33,26 @@ import android.text.Spanned;
 import android.view.View;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService.RemoteViewsFactory;
+import de.greenrobot.event.EventBus;
 import it.feio.android.omninotes.OmniNotes;
 import it.feio.android.omninotes.R;
+import it.feio.android.omninotes.async.bus.NotesChangedEvent;
 import it.feio.android.omninotes.db.DbHelper;
+import it.feio.android.omninotes.db.NoteQuery;
+import it.feio.android.omninotes.db.NotesRepository;
 import it.feio.android.omninotes.helpers.LogDelegate;
 import it.feio.android.omninotes.models.Attachment;
 import it.feio.android.omninotes.models.Note;
+import it.feio.android.omninotes.models.NoteChange;
 import it.feio.android.omninotes.utils.BitmapHelper;
 import it.feio.android.omninotes.utils.Navigation;
 import it.feio.android.omninotes.utils.TextHelper;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
 
 
 public class ListRemoteViewsFactory implements RemoteViewsFactory {
@@ -56,6 +66,8 @@ public class ListRemoteViewsFactory implements RemoteViewsFactory {
   private int appWidgetId;
   private List<Note> notes;
   private int navigation;
+  // Notes changed since widget data was loaded
+  private final Set<Long> changedNotesIds = new HashSet<>();
 
   public ListRemoteViewsFactory(Application app, Intent intent) {
     this.app = (OmniNotes) app;
@@ -63,11 +75,15 @@ public class ListRemoteViewsFactory implements RemoteViewsFactory {
         .getIntExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, AppWidgetManager.INVALID_APPWIDGET_ID);
   }
 
-  static void updateConfiguration(Context mContext, int mAppWidgetId, String sqlCondition,
+  /**
+   * @param categoryId Category of the notes to show, null to show all active notes
+   */
+  static void updateConfiguration(Context mContext, int mAppWidgetId, Long categoryId,
       boolean thumbnails, boolean timestamps) {
     LogDelegate.d("Widget configuration updated");
     mContext.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS).edit()
-        .putString(PREF_WIDGET_PREFIX + mAppWidgetId, sqlCondition).apply();
+        .putString(PREF_WIDGET_PREFIX + mAppWidgetId,
+            categoryId != null ? String.valueOf(categoryId) : "").apply();
     showThumbnails = thumbnails;
     showTimestamps = timestamps;
   }
@@ -75,11 +91,8 @@ public class ListRemoteViewsFactory implements RemoteViewsFactory {
   @Override
   public void onCreate() {
     LogDelegate.d("Created widget " + appWidgetId);
-    String condition = app.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS)
-        .getString(
-            PREF_WIDGET_PREFIX
-                + appWidgetId, "");
-    notes = DbHelper.getInstance().getNotes(condition, true);
+    EventBus.getDefault().register(this);
+    notes = DbHelper.getInstance().getNotes(getWidgetQuery());
   }
 
   @Override
@@ -87,15 +100,74 @@ public class ListRemoteViewsFactory implements RemoteViewsFactory {
     LogDelegate.d("onDataSetChanged widget " + appWidgetId);
     navigation = Navigation.getNavigation();
 
-    String condition = app.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS)
-        .getString(
-            PREF_WIDGET_PREFIX
-                + appWidgetId, "");
-    notes = DbHelper.getInstance().getNotes(condition, true);
+    List<Long> changedIds;
+    synchronized (changedNotesIds) {
+      changedIds = new ArrayList<>(changedNotesIds);
+      changedNotesIds.clear();
+    }
+    if (changedIds.isEmpty()) {
+      // Something else than notes changed, like configuration or categories
+      notes = DbHelper.getInstance().getNotes(getWidgetQuery());
+    } else {
+      notes = getChangedNotes(changedIds);
+    }
+  }
+
+  /**
+   * Applies notes changes to the shown ones instead of retrieving all of them again
+   */
+  private List<Note> getChangedNotes(List<Long> changedIds) {
+    List<Note> changedNotes = new ArrayList<>(notes.size());
+    Set<Long> changedIdsSet = new HashSet<>(changedIds);
+    for (Note note : notes) {
+      if (!changedIdsSet.contains(note.get_id())) {
+        changedNotes.add(note);
+      }
+    }
+    SortedMap<Integer, Note> positions = NotesRepository.getInstance()
+        .getNotesPositions(getWidgetQuery(), null, changedIds);
+    for (Map.Entry<Integer, Note> entry : positions.entrySet()) {
+      changedNotes.add(Math.min(entry.getKey(), changedNotes.size()), entry.getValue());
+    }
+    return changedNotes;
+  }
+
+  /**
+   * Collects changed notes and requests the widget to reload, only them will be retrieved again
+   */
+  public void onEvent(NotesChangedEvent event) {
+    synchronized (changedNotesIds) {
+      for (NoteChange change : event.getChanges()) {
+        changedNotesIds.add(change.getNoteId());
+      }
+    }
+    AppWidgetManager.getInstance(app).notifyAppWidgetViewDataChanged(appWidgetId,
+        R.id.widget_list);
+  }
+
+  private NoteQuery getWidgetQuery() {
+    return getWidgetQuery(app.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS)
+        .getString(PREF_WIDGET_PREFIX + appWidgetId, null));
+  }
+
+  /**
+   * Builds the query of notes shown by a widget from its configuration
+   */
+  static NoteQuery getWidgetQuery(String configuration) {
+    if (configuration == null) {
+      return new NoteQuery();
+    }
+    String categoryId = TextHelper.checkIntentCategory(configuration);
+    NoteQuery query = new NoteQuery();
+    if (categoryId != null) {
+      query.category(Long.valueOf(categoryId));
+    }
+    return query.archived(false).trashed(false);
   }
 
   @Override
   public void onDestroy() {
+    EventBus.getDefault().unregister(this);
     app.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS)
         .edit()
         .remove(PREF_WIDGET_PREFIX + appWidgetId)
@@ -38,7 +38,7 @@ public class WidgetConfigurationActivity extends Activity {
 
   private Spinner categorySpinner;
   private int mAppWidgetId = AppWidgetManager.INVALID_APPWIDGET_ID;
-  private String sqlCondition;
+  private Long categoryId;
   private RadioGroup mRadioGroup;
 
 
@@ -76,16 +76,11 @@ public class WidgetConfigurationActivity extends Activity {
     configOkButton.setOnClickListener(v -> {
 
       if (mRadioGroup.getCheckedRadioButtonId() == R.id.widget_config_notes) {
-        sqlCondition =
-            " WHERE " + DbHelper.KEY_ARCHIVED + " IS NOT 1 AND " + DbHelper.KEY_TRASHED + " IS" +
-                " NOT 1 ";
+        categoryId = null;
 
       } else {
         Category tag = (Category) categorySpinner.getSelectedItem();
-        sqlCondition = " WHERE " + DbHelper.TABLE_NOTES + "."
-            + DbHelper.KEY_CATEGORY + " = " + tag.getId()
-            + " AND " + DbHelper.KEY_ARCHIVED + " IS NOT 1"
-            + " AND " + DbHelper.KEY_TRASHED + " IS NOT 1";
+        categoryId = tag.getId();
       }
 
       CheckBox showThumbnailsCheckBox = findViewById(R.id.show_thumbnails);
@@ -94,7 +89,7 @@ public class WidgetConfigurationActivity extends Activity {
       // Updating the ListRemoteViewsFactory parameter to get the list
       // of notes
       ListRemoteViewsFactory.updateConfiguration(getApplicationContext(), mAppWidgetId,
-          sqlCondition, showThumbnailsCheckBox.isChecked(), showTimestampsCheckBox.isChecked());
+          categoryId, showThumbnailsCheckBox.isChecked(), showTimestampsCheckBox.isChecked());
 
       Intent resultValue = new Intent();
       resultValue.putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID,
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static it.feio.android.omninotes.utils.Constants.DATABASE_NAME;
+import static it.feio.android.omninotes.utils.Constants.PREFS_NAME;
+import static it.feio.android.omninotes.utils.ConstantsBase.PREF_PASSWORD;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import it.feio.android.omninotes.models.Note;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+
+/**
+ * Times the main {@link DbHelper} operations on synthetic libraries of growing size, writing a JSON
+ * report and failing when an operation got slower than the stored baseline. Excluded from regular
+ * test runs, see unit tests options into the build script to run it.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class DbHelperMacroBenchmark {
+
+  private static final long SEED = 42;
+  private static final int WARMUP_ITERATIONS = 2;
+  private static final int ITERATIONS = 5;
+  private static final int UPDATED_NOTES_NUMBER = 100;
+  private static final String[] PATTERNS = {"meeting", "proj", "birthday gift"};
+  private static final String[] TAGS = {"#tag0", "#tag1,#tag2", "#tag250"};
+
+  private final MacroBenchmarkReport report = new MacroBenchmarkReport();
+  private DbHelper dbHelper;
+
+
+  @Test
+  public void databaseOperations() throws IOException, JSONException {
+    for (String notesNumber : System.getProperty("dbBenchmarks.sizes", "1000").split(",")) {
+      benchmark(Integer.parseInt(notesNumber.trim()));
+    }
+
+    File baseline = new File(System.getProperty("dbBenchmarks.baseline",
+        "src/test/benchmarks/db-baseline.json"));
+    List<String> regressions = report.compareWith(baseline,
+        Double.parseDouble(System.getProperty("dbBenchmarks.tolerance", "0.2")));
+    report.write(new File(System.getProperty("dbBenchmarks.reportDir",
+        "build/reports/db-benchmarks"), "db-benchmarks.json"));
+    // First run or explicit request sets the timings next runs are compared with
+    if (!baseline.exists() || Boolean.getBoolean("dbBenchmarks.updateBaseline")) {
+      report.write(baseline);
+    }
+
+    assertTrue("Regressions found:\n" + StringUtils.join(regressions, "\n"),
+        regressions.isEmpty());
+  }
+
+
+  private void benchmark(int notesNumber) throws JSONException {
+    Context context = ApplicationProvider.getApplicationContext();
+    context.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS).edit()
+        .putString(PREF_PASSWORD, "benchmark").commit();
+    DbHelper.getInstance(context).close();
+    context.deleteDatabase(DATABASE_NAME);
+    dbHelper = DbHelper.getInstance(true);
+    new SyntheticLibrary(SEED, System.currentTimeMillis()).populate(dbHelper, notesNumber);
+
+    measure("getNotesActive", notesNumber, 1, () -> dbHelper.getNotesActive());
+    measure("getNotesByPattern", notesNumber, PATTERNS.length, () -> {
+      for (String pattern : PATTERNS) {
+        dbHelper.getNotesByPattern(pattern);
+      }
+    });
+    // Same search without the full-text index, as a reference for the one above
+    measure("getNotesByLikePattern", notesNumber, PATTERNS.length, () -> {
+      for (String pattern : PATTERNS) {
+        dbHelper.getNotes(new NoteQuery().trashed(false).containing(pattern));
+      }
+    });
+    measure("getTags", notesNumber, 1, () -> dbHelper.getTags());
+    measure("getNotesByTag", notesNumber, TAGS.length, () -> {
+      for (String tag : TAGS) {
+        dbHelper.getNotesByTag(tag);
+      }
+    });
+    measure("getCategories", notesNumber, 1, () -> dbHelper.getCategories());
+    measure("getStats", notesNumber, 1, () -> dbHelper.getStats());
+    measureUpdateNote(notesNumber);
+    // Last one since it deletes notes
+    measureEmptyTrash(notesNumber);
+  }
+
+
+  private void measureUpdateNote(int notesNumber) throws JSONException {
+    List<Note> notes = new ArrayList<>();
+    List<Note> activeNotes = dbHelper.getNotesActive();
+    int step = Math.max(activeNotes.size() / UPDATED_NOTES_NUMBER, 1);
+    for (int i = 0; i < activeNotes.size() && notes.size() < UPDATED_NOTES_NUMBER; i += step) {
+      notes.add(dbHelper.getNote(activeNotes.get(i).get_id()));
+    }
+    measure("updateNote", notesNumber, notes.size(), () -> {
+      for (Note note : notes) {
+        note.setTitle(note.getTitle() + " #edited");
+        dbHelper.updateNote(note, true);
+      }
+    });
+  }
+
+
+  /**
+   * Each iteration trashes one twentieth of the library before emptying the trash
+   */
+  private void measureEmptyTrash(int notesNumber) throws JSONException {
+    List<Long> samples = new ArrayList<>();
+    for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+      List<Note> activeNotes = dbHelper.getNotesActive();
+      dbHelper.trashNotes(activeNotes.subList(0, Math.min(notesNumber / 20,
+          activeNotes.size())), true);
+      long start = System.nanoTime();
+      dbHelper.emptyTrash();
+      if (i >= WARMUP_ITERATIONS) {
+        samples.add(System.nanoTime() - start);
+      }
+    }
+    report.record("emptyTrash", notesNumber, samples);
+  }
+
+
+  /**
+   * @param invocations Number of operations performed by each run, timings are divided by it
+   */
+  private void measure(String operation, int notesNumber, int invocations, Runnable run)
+      throws JSONException {
+    List<Long> samples = new ArrayList<>();
+    for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+      long start = System.nanoTime();
+      run.run();
+      if (i >= WARMUP_ITERATIONS) {
+        samples.add((System.nanoTime() - start) / invocations);
+      }
+    }
+    report.record(operation, notesNumber, samples);
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+
+/**
+ * Timings of database operations, stored as JSON to be compared with the ones of a baseline run
+ */
+class MacroBenchmarkReport {
+
+  private final Map<String, JSONObject> results = new LinkedHashMap<>();
+
+
+  /**
+   * @param samples Duration of each measured invocation in nanoseconds
+   */
+  void record(String operation, int notesNumber, List<Long> samples) throws JSONException {
+    List<Long> sortedSamples = new ArrayList<>(samples);
+    Collections.sort(sortedSamples);
+    JSONObject result = new JSONObject()
+        .put("operation", operation)
+        .put("notes", notesNumber)
+        .put("iterations", sortedSamples.size())
+        .put("minMs", toMillis(sortedSamples.get(0)))
+        .put("medianMs", toMillis(getPercentile(sortedSamples, 50)))
+        .put("p90Ms", toMillis(getPercentile(sortedSamples, 90)))
+        .put("maxMs", toMillis(sortedSamples.get(sortedSamples.size() - 1)));
+    results.put(getKey(operation, notesNumber), result);
+  }
+
+
+  /**
+   * Compares medians with the ones of the baseline report, marking the slower ones
+   *
+   * @param tolerance Ratio a median can exceed the baseline one before being a regression
+   * @return Descriptions of the regressions found
+   */
+  List<String> compareWith(File baseline, double tolerance) throws IOException, JSONException {
+    List<String> regressions = new ArrayList<>();
+    if (!baseline.exists()) {
+      return regressions;
+    }
+    JSONArray baselineResults = new JSONObject(FileUtils.readFileToString(baseline,
+        StandardCharsets.UTF_8)).getJSONArray("results");
+    for (int i = 0; i < baselineResults.length(); i++) {
+      JSONObject baselineResult = baselineResults.getJSONObject(i);
+      JSONObject result = results.get(getKey(baselineResult.getString("operation"),
+          baselineResult.getInt("notes")));
+      if (result == null) {
+        continue;
+      }
+      double baselineMedian = baselineResult.getDouble("medianMs");
+      double median = result.getDouble("medianMs");
+      boolean regression = median > baselineMedian * (1 + tolerance);
+      result.put("baselineMedianMs", baselineMedian).put("regression", regression);
+      if (regression) {
+        regressions.add(String.format(Locale.US, "%s with %d notes: %.2f ms, baseline %.2f ms",
+            result.getString("operation"), result.getInt("notes"), median, baselineMedian));
+      }
+    }
+    return regressions;
+  }
+
+
+  void write(File file) throws IOException, JSONException {
+    JSONObject report = new JSONObject()
+        .put("timestamp", System.currentTimeMillis())
+        .put("results", new JSONArray(results.values()));
+    FileUtils.writeStringToFile(file, report.toString(2), StandardCharsets.UTF_8);
+  }
+
+
+  private static String getKey(String operation, int notesNumber) {
+    return operation + "@" + notesNumber;
+  }
+
+
+  private static long getPercentile(List<Long> sortedSamples, int percentile) {
+    int index = (int) Math.ceil(percentile / 100.0 * sortedSamples.size()) - 1;
+    return sortedSamples.get(Math.max(index, 0));
+  }
+
+
+  private static double toMillis(long nanos) {
+    return nanos / 1e6;
+  }
+
+}
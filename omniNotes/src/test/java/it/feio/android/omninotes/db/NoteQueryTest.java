@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+
+public class NoteQueryTest {
+
+  @Test
+  public void valuesAreBound() {
+    NoteQuery query = new NoteQuery().category(3L).trashed(false);
+
+    assertEquals(" WHERE category_id = ? AND trashed = ?", query.getWhereClause());
+    assertArrayEquals(new String[]{"3", "0"}, query.getArgs());
+  }
+
+  @Test
+  public void sameFiltersHaveSameSql() {
+    NoteQuery query = new NoteQuery().category(3L).archived(true);
+    NoteQuery otherQuery = new NoteQuery().category(7L).archived(false);
+
+    assertEquals(query.getWhereClause(), otherQuery.getWhereClause());
+  }
+
+  @Test
+  public void emptyQueryHasNoWhereClause() {
+    assertEquals("", new NoteQuery().getWhereClause());
+    assertEquals(0, new NoteQuery().getArgs().length);
+  }
+
+  @Test
+  public void rankingArgFollowsWhereArgs() {
+    NoteQuery query = new NoteQuery().trashed(false).matching("word*", "title:word*");
+
+    assertArrayEquals(new String[]{"0", "word*"}, query.getWhereArgs());
+    assertArrayEquals(new String[]{"0", "word*", "title:word*"}, query.getArgs());
+    assertArrayEquals(new String[]{"0", "word*"}, query.unsorted().getArgs());
+  }
+
+  @Test
+  public void copyDoesNotChangeOriginal() {
+    NoteQuery query = new NoteQuery().trashed(true);
+    NoteQuery copy = new NoteQuery(query).where("creation < ?", "10");
+
+    assertEquals(1, query.getWhereArgs().length);
+    assertEquals(2, copy.getWhereArgs().length);
+    assertFalse(query.getWhereClause().contains("creation"));
+  }
+
+  @Test
+  public void tagsAreBound() {
+    NoteQuery query = new NoteQuery().tags(Arrays.asList("#one", "#two"));
+
+    assertArrayEquals(new String[]{"#one", "#two"}, query.getArgs());
+  }
+
+  @Test
+  public void reminderRangeIsBound() {
+    NoteQuery query = new NoteQuery().reminderBetween(100L, 200L);
+
+    assertEquals(" WHERE alarm >= ? AND alarm < ?", query.getWhereClause());
+    assertArrayEquals(new String[]{"100", "200"}, query.getArgs());
+  }
+
+  @Test
+  public void likePatternIsEscaped() {
+    assertEquals("%50\\% off\\_\\\\%", NoteQuery.toLikePattern("50% off_\\"));
+  }
+
+}
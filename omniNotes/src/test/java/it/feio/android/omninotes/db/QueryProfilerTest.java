@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import it.feio.android.omninotes.db.QueryProfiler.QueryStats;
+import org.junit.Test;
+
+
+public class QueryProfilerTest {
+
+  @Test
+  public void literalsAreReplaced() {
+    assertEquals("SELECT * FROM notes WHERE creation IN (?) AND title = ? AND trashed = ?",
+        QueryProfiler.toShape("SELECT *  FROM notes WHERE creation IN (1, 2,3)\n"
+            + "AND title = 'it''s' AND trashed = 0"));
+  }
+
+  @Test
+  public void identifiersAreKept() {
+    assertEquals("SELECT t2.docid FROM notes_fts t2 WHERE rank > ?",
+        QueryProfiler.toShape("SELECT t2.docid FROM notes_fts t2 WHERE rank > 1.5"));
+  }
+
+  @Test
+  public void operationsAreGroupedByShape() {
+    QueryProfiler profiler = new QueryProfiler(Long.MAX_VALUE);
+    profiler.recordWrite("DELETE FROM notes WHERE creation IN (1,2)", System.nanoTime(), 2);
+    profiler.recordWrite("DELETE FROM notes WHERE creation IN (3)", System.nanoTime(), 1);
+
+    QueryStats stats = profiler.getStats("DELETE FROM notes WHERE creation IN (4)");
+    assertEquals(2, stats.getCount());
+    assertEquals(3, stats.getRows());
+    long recorded = 0;
+    for (long bucketCount : stats.getHistogram()) {
+      recorded += bucketCount;
+    }
+    assertEquals(2, recorded);
+    assertTrue(profiler.getReport().contains("DELETE FROM notes WHERE creation IN (?)"));
+  }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+
+public class SortKeysTest {
+
+  @Test
+  public void titleKeyIsCaseFolded() {
+    assertEquals("shopping listmilk", SortKeys.title("Shopping List", "MILK", false));
+    assertTrue(SortKeys.title("b", null, false).compareTo(SortKeys.title("A", null, false)) > 0);
+  }
+
+  @Test
+  public void emptyTitleFallsBackToContent() {
+    assertEquals("content", SortKeys.title(null, "Content", false));
+    assertEquals("", SortKeys.title(null, null, false));
+  }
+
+  @Test
+  public void lockedContentIsNotUsed() {
+    assertEquals("title", SortKeys.title("Title", "encrypted", true));
+  }
+
+  @Test
+  public void titleKeyIsTruncated() {
+    String key = SortKeys.title(StringUtils.repeat("\uD83D\uDE00", 100), null, false);
+
+    assertEquals(SortKeys.TITLE_KEY_LENGTH, key.codePointCount(0, key.length()));
+  }
+
+  @Test
+  public void missingRemindersComeLast() {
+    assertEquals(1000L, SortKeys.reminder("1000"));
+    assertEquals(SortKeys.NO_REMINDER_KEY, SortKeys.reminder(null));
+    assertTrue(SortKeys.reminder(null) > SortKeys.reminder(String.valueOf(Long.MAX_VALUE - 1)));
+  }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Test;
+
+
+public class SqlParserTest {
+
+  @Test
+  public void splitsStatements() throws IOException {
+    String script = "-- comment\n"
+        + "CREATE TABLE a (id INTEGER);\n"
+        + "INSERT INTO a VALUES (1);\n";
+
+    List<String> statements = parse(script);
+
+    assertEquals(2, statements.size());
+    assertEquals("CREATE TABLE a (id INTEGER)", statements.get(0));
+  }
+
+  @Test
+  public void keepsTriggerBodyInSingleStatement() throws IOException {
+    String script = "CREATE TRIGGER a_after_insert AFTER INSERT ON a\n"
+        + "BEGIN\n"
+        + "\tDELETE FROM b WHERE id = new.id;\n"
+        + "\tINSERT INTO b VALUES (new.id, CASE WHEN new.id = 1 THEN 'x;y' ELSE NULL END);\n"
+        + "END;\n"
+        + "INSERT INTO a VALUES (1);\n";
+
+    List<String> statements = parse(script);
+
+    assertEquals(2, statements.size());
+    assertTrue(statements.get(0).startsWith("CREATE TRIGGER"));
+    assertTrue(statements.get(0).endsWith("END"));
+    assertEquals("INSERT INTO a VALUES (1)", statements.get(1));
+  }
+
+  private List<String> parse(String script) throws IOException {
+    return SqlParser.parseSqlFile(new ByteArrayInputStream(script.getBytes()));
+  }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2013-2020 Federico Iosue (federico@iosue.it)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.feio.android.omninotes.db;
+
+import static it.feio.android.checklistview.interfaces.Constants.CHECKED_SYM;
+import static it.feio.android.checklistview.interfaces.Constants.UNCHECKED_SYM;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import it.feio.android.omninotes.models.Attachment;
+import it.feio.android.omninotes.models.Category;
+import it.feio.android.omninotes.models.Note;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Deterministic generator of notes libraries, the same seed always produces the same notes.
+ * Distributions resemble the ones of heavy users: few categories holding most of the notes, a long
+ * tail of rarely used tags, some long notes, a minority of notes with reminders, locations,
+ * attachments or lock.
+ */
+class SyntheticLibrary {
+
+  static final int CATEGORIES_NUMBER = 20;
+  static final int TAGS_NUMBER = 300;
+
+  private static final int BATCH_SIZE = 1000;
+  private static final String[] WORDS = {"the", "meeting", "call", "buy", "milk", "bread", "and",
+      "project", "deadline", "review", "remember", "to", "with", "about", "tomorrow", "week",
+      "book", "read", "train", "ticket", "doctor", "appointment", "birthday", "gift", "idea",
+      "draft", "email", "reply", "invoice", "pay", "garden", "water", "plants", "recipe", "pasta"};
+  private static final String[] MIME_TYPES = {"image/jpeg", "image/jpeg", "image/png", "audio/amr",
+      "video/mp4", "file/*"};
+
+  private final Random random;
+  private final long now;
+  private final List<Category> categories = new ArrayList<>();
+  private long nextCreation;
+
+
+  /**
+   * @param now Time reminders are distributed around, in the past or in the next month
+   */
+  SyntheticLibrary(long seed, long now) {
+    this.random = new Random(seed);
+    this.now = now;
+    this.nextCreation = now - TimeUnit.DAYS.toMillis(5 * 365);
+  }
+
+
+  /**
+   * Stores categories and notes into the database, in batches to avoid a transaction per note
+   */
+  void populate(DbHelper dbHelper, int notesNumber) {
+    if (categories.isEmpty()) {
+      for (int i = 1; i <= CATEGORIES_NUMBER; i++) {
+        categories.add(dbHelper.updateCategory(new Category((long) i, "Category " + i,
+            "Category number " + i, String.valueOf(0xFF000000 | random.nextInt(0xFFFFFF)))));
+      }
+    }
+    SQLiteDatabase db = dbHelper.getDatabase(true);
+    for (int stored = 0; stored < notesNumber; ) {
+      db.beginTransactionNonExclusive();
+      try {
+        for (int i = 0; i < BATCH_SIZE && stored < notesNumber; i++, stored++) {
+          dbHelper.updateNote(createNote(), false);
+        }
+        db.setTransactionSuccessful();
+      } finally {
+        db.endTransaction();
+      }
+    }
+  }
+
+
+  Note createNote() {
+    Note note = new Note();
+    note.setCreation(nextCreation);
+    note.setLastModification(nextCreation + random.nextInt((int) TimeUnit.DAYS.toMillis(30)));
+    nextCreation += TimeUnit.MINUTES.toMillis(1 + random.nextInt(60));
+
+    note.setTitle(random.nextInt(10) == 0 ? "" : words(1 + random.nextInt(6)));
+    note.setChecklist(random.nextInt(100) < 15);
+    note.setContent(note.isChecklist() ? checklist(2 + random.nextInt(15)) : content());
+    // Locked notes are encrypted with the password stored into preferences
+    note.setLocked(random.nextInt(100) < 2);
+    note.setArchived(random.nextInt(100) < 10);
+    note.setTrashed(random.nextInt(100) < 5);
+
+    // Most used categories get most of the notes, a fifth of them is uncategorized
+    if (random.nextInt(5) > 0) {
+      note.setCategory(categories.get(skewed(CATEGORIES_NUMBER, 2)));
+    }
+
+    if (random.nextInt(100) < 15) {
+      boolean past = random.nextInt(100) < 60;
+      long offset = (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(past ? 365 : 30));
+      note.setAlarm(past ? now - offset : now + offset);
+      note.setReminderFired(past);
+      if (random.nextInt(5) == 0) {
+        note.setRecurrenceRule(random.nextBoolean() ? "FREQ=WEEKLY;WKST=MO;BYDAY=MO"
+            : "FREQ=DAILY");
+      }
+    }
+
+    if (random.nextInt(100) < 8) {
+      note.setLatitude(-90 + random.nextDouble() * 180);
+      note.setLongitude(-180 + random.nextDouble() * 360);
+      note.setAddress("Street " + random.nextInt(1000));
+    }
+
+    if (random.nextInt(100) < 15) {
+      for (int i = 1 + random.nextInt(3); i > 0; i--) {
+        note.addAttachment(createAttachment());
+      }
+    }
+    return note;
+  }
+
+
+  private Attachment createAttachment() {
+    long id = nextCreation * 10 + random.nextInt(10);
+    String mimeType = MIME_TYPES[random.nextInt(MIME_TYPES.length)];
+    return new Attachment(id, Uri.parse("file:///sdcard/OmniNotes/" + id), "attachment " + id,
+        random.nextInt(5_000_000), mimeType.startsWith("image") ? 0 : random.nextInt(600_000),
+        mimeType);
+  }
+
+
+  /**
+   * Mostly short notes, one out of ten is long as some pages
+   */
+  private String content() {
+    int paragraphsNumber = random.nextInt(10) == 0 ? 10 + random.nextInt(40) : 1
+        + random.nextInt(3);
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < paragraphsNumber; i++) {
+      content.append(words(5 + random.nextInt(40))).append(tags()).append('\n');
+    }
+    return content.toString().trim();
+  }
+
+
+  private String checklist(int itemsNumber) {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < itemsNumber; i++) {
+      content.append(random.nextInt(3) == 0 ? CHECKED_SYM : UNCHECKED_SYM)
+          .append(words(1 + random.nextInt(5))).append('\n');
+    }
+    return content.toString().trim();
+  }
+
+
+  /**
+   * Half of the paragraphs have no tags, tags are picked from a long tail of rarely used ones
+   */
+  private String tags() {
+    int tagsNumber = random.nextInt(100);
+    tagsNumber = tagsNumber < 50 ? 0 : tagsNumber < 75 ? 1 : tagsNumber < 90 ? 2
+        : 3 + random.nextInt(3);
+    StringBuilder tags = new StringBuilder();
+    for (int i = 0; i < tagsNumber; i++) {
+      tags.append(" #tag").append(skewed(TAGS_NUMBER, 3));
+    }
+    return tags.toString();
+  }
+
+
+  private String words(int wordsNumber) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < wordsNumber; i++) {
+      if (i > 0) {
+        text.append(' ');
+      }
+      text.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    return text.toString();
+  }
+
+
+  /**
+   * Index from 0 to size, the higher the exponent the more the lowest ones are frequent
+   */
+  private int skewed(int size, int exponent) {
+    return (int) (size * Math.pow(random.nextDouble(), exponent));
+  }
+
+}
@@ -92,6 +92,17 @@ public class DateUtilsTest {
     assertFalse(DateUtils.isSameDay(today, tomorrow));
   }
 
+  @Test
+  public void getStartOfDay() {
+    long now = Calendar.getInstance().getTimeInMillis();
+    long today = DateUtils.getStartOfDay(now, 0);
+    long tomorrow = DateUtils.getStartOfDay(now, 1);
+    assertTrue(today <= now && now < tomorrow);
+    assertTrue(DateUtils.isSameDay(today, now));
+    assertFalse(DateUtils.isSameDay(tomorrow - 1, tomorrow));
+    assertEquals(tomorrow, DateUtils.getStartOfDay(tomorrow, 0));
+  }
+
   @Test
   public void getString_dateSignature() throws ParseException {
     String expectedDate = "15/05/2012";